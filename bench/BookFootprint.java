@@ -0,0 +1,83 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.*;
+import java.util.*;
+
+// Retained heap per Book, measured on the catalog of a generated books.dat:
+//
+//   heap:        the catalog and everything it holds, Book's symbol tables included (the
+//                baseline is taken before the file is generated, which fills the tables)
+//   heap.reload: later loads of the same file, whose symbols the tables already hold
+//
+// Each score is (heap used after GC with the books alive - before) / books, appended to the
+// CSV file in LibraryBenchmark's format. Generated authors are nearly all distinct, so most
+// of the difference comes from genre and location. Run with a heap large enough for the
+// books and nothing else going on, e.g. -Xmx3g.
+//
+//   java -Xmx3g -cp out BookFootprint [--books 1000000] [--out bench-results.csv]
+public class BookFootprint {
+    private static final int ITERATIONS = 4;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int books = Integer.parseInt(options.getOrDefault("books", "1000000"));
+        String out = options.getOrDefault("out", "bench-results.csv");
+
+        long baseline = usedAfterGc();
+        Path dir = Files.createTempDirectory("library-footprint-");
+        try {
+            new LibraryDataGenerator(books, Math.max(1, books / 50), 0, 42, 1.1, 0.9, 3650,
+                    "Fiction:30,Programming:20,History:15,AI:10,Novel:15,Technology:10", "North:55,South:45").generate(dir);
+            String file = dir.resolve("books.dat").toString();
+
+            double[] scores = new double[ITERATIONS];
+            int count = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                long before = i == 0 ? baseline : usedAfterGc();
+                List<Book> catalog = LibraryCodec.readBooks(file);
+                sink = catalog;
+                long after = usedAfterGc();
+                count = catalog.size();
+                scores[i] = (after - before) / (double) count;
+                sink = null;
+            }
+            List<String> rows = Arrays.asList(
+                    row("book.heap", count, Arrays.copyOf(scores, 1)),
+                    row("book.heap.reload", count, Arrays.copyOfRange(scores, 1, ITERATIONS)));
+            rows.forEach(System.out::println);
+
+            Path results = Paths.get(out);
+            if (!Files.exists(results)) {
+                Files.write(results, Collections.singletonList("benchmark,size,mode,cnt,score,error,unit"));
+            }
+            Files.write(results, rows, StandardOpenOption.APPEND);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static String row(String name, int count, double[] scores) {
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.length - 1);
+        return String.format(Locale.ROOT, "%s,%d,ss,%d,%.1f,%.1f,B/book", name, count, scores.length, mean,
+                Math.sqrt(variance));
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.*;
+import java.util.*;
+
+// Retained heap per BorrowRecord, measured on the loans of a generated borrow_records.dat:
+//
+//   heap:         the decoded records alone (the list holding them adds ~4 bytes each)
+//   heap.indexed: the records plus an id -> record map, keyed the way BookManager keys them
+//
+// Each score is (heap used after GC with the records alive - before) / records, over
+// several loads, appended to the CSV file in LibraryBenchmark's format. Run with a heap
+// large enough for the records and nothing else going on, e.g. -Xmx3g.
+//
+//   java -Xmx3g -cp out BorrowRecordFootprint [--records 1000000] [--out bench-results.csv]
+public class BorrowRecordFootprint {
+    private static final int ITERATIONS = 3;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int records = Integer.parseInt(options.getOrDefault("records", "1000000"));
+        String out = options.getOrDefault("out", "bench-results.csv");
+
+        Path dir = Files.createTempDirectory("library-footprint-");
+        try {
+            new LibraryDataGenerator(records / 2, Math.max(1, records / 10), records, 42, 1.1, 0.9, 3650,
+                    "Fiction:30,Programming:20,History:15,AI:10,Novel:15,Technology:10", "North:55,South:45").generate(dir);
+            String file = dir.resolve("borrow_records.dat").toString();
+
+            List<String> rows = new ArrayList<>();
+            rows.add(measure("borrowRecord.heap", file, false));
+            rows.add(measure("borrowRecord.heap.indexed", file, true));
+            rows.forEach(System.out::println);
+
+            Path results = Paths.get(out);
+            if (!Files.exists(results)) {
+                Files.write(results, Collections.singletonList("benchmark,size,mode,cnt,score,error,unit"));
+            }
+            Files.write(results, rows, StandardOpenOption.APPEND);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static String measure(String name, String file, boolean indexed) throws IOException {
+        double[] scores = new double[ITERATIONS];
+        int count = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = usedAfterGc();
+            List<BorrowRecord> records = LibraryCodec.readBorrowRecords(file);
+            Object kept = records;
+            if (indexed) {
+                Map<Object, BorrowRecord> byId = new HashMap<>(records.size() * 4 / 3 + 1);
+                for (BorrowRecord record : records) {
+                    byId.put(record.key(), record);
+                }
+                kept = Arrays.asList(records, byId);
+            }
+            sink = kept;
+            long after = usedAfterGc();
+            count = records.size();
+            scores[i] = (after - before) / (double) count;
+            sink = null;
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.length - 1);
+        return String.format(Locale.ROOT, "%s,%d,ss,%d,%.1f,%.1f,B/record", name, count, scores.length, mean,
+                Math.sqrt(variance));
+    }
+
+    private static long usedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,173 @@
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+// Whole-catalog scans over a List<Book> (as BookManager did them) against ColumnarCatalog,
+// on generated books (LibraryDataGenerator's titles, authors, genres and branches):
+//
+//   available:  count the available books
+//   genre:      books in one genre at one branch (list: comparing the strings)
+//   years:      books published in a ten-year range
+//   search:     books whose title or author contains a two-letter query, the case the
+//               trigram index can't help with (list: lower-casing as it goes)
+//   facets:     the facet bitmaps for the genre and years filters, and the sidebar's counts
+//               (per genre, location and year, each with the other facets applied) for
+//               available Programming books at North published since 2010
+//   query:      that selection as a BookQuery through QueryPlanner (genre bitmap, then the
+//               other conditions as filters), and with a two-letter text condition too
+//
+// Filters return the matching books in all versions; the counts only count. Scores are
+// microseconds per scan, averaged over timed iterations after warmup iterations, and
+// appended to the CSV file in LibraryBenchmark's format.
+//
+//   java -cp out CatalogScanBenchmark [--books 1000000] [--out bench-results.csv]
+public class CatalogScanBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int size = Integer.parseInt(options.getOrDefault("books", "1000000"));
+        String out = options.getOrDefault("out", "bench-results.csv");
+
+        LibraryDataGenerator generator = new LibraryDataGenerator(size, 1, 0, 42, 1.1, 0.9, 3650,
+                "Fiction:30,Programming:20,History:15,AI:10,Novel:15,Technology:10", "North:55,South:45");
+        Random random = new Random(7);
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Book book = generator.book(i);
+            book.setAvailable(random.nextInt(10) != 0);
+            books.add(book);
+        }
+        ColumnarCatalog columns = new ColumnarCatalog(books);
+        QueryPlanner planner = new QueryPlanner(columns, new BookSearchIndex(columns));
+        BookQuery sidebarQuery = new BookQuery().genre("Programming").location("North")
+                .publishedBetween(2010, Integer.MAX_VALUE).availableOnly();
+        BookQuery textQuery = new BookQuery().text("an").genre("Programming").location("North")
+                .publishedBetween(2010, Integer.MAX_VALUE).availableOnly();
+        int genre = Book.GENRES.find("Programming");
+        int location = Book.LOCATIONS.find("North");
+        char[] query = "an".toCharArray();
+        CatalogFacets.Selection genreSelection = new CatalogFacets.Selection(
+                Collections.singleton("Programming"), Collections.singleton("North"), Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+        CatalogFacets.Selection yearSelection = new CatalogFacets.Selection(null, null, 1990, 1999, false);
+        CatalogFacets.Selection sidebar = new CatalogFacets.Selection(
+                Collections.singleton("Programming"), Collections.singleton("North"), 2010, Integer.MAX_VALUE, true);
+        System.out.printf("# %d books on %s%n", size, ManagementFactory.getRuntimeMXBean().getVmVersion());
+
+        List<String> rows = new ArrayList<>();
+        rows.add(measure("catalogScan.available.list", size, () -> {
+            long count = 0;
+            for (Book book : books) {
+                if (book.isAvailable()) count++;
+            }
+            return count;
+        }));
+        rows.add(measure("catalogScan.available.columns", size, columns::countAvailable));
+        rows.add(measure("catalogScan.genre.list", size, () -> {
+            List<Book> found = new ArrayList<>();
+            for (Book book : books) {
+                if ("Programming".equals(book.getGenre()) && "North".equals(book.getLibraryLocation())) found.add(book);
+            }
+            return found.size();
+        }));
+        rows.add(measure("catalogScan.genre.columns", size, () -> columns.withGenreAndLocation(genre, location).size()));
+        rows.add(measure("catalogScan.years.list", size, () -> {
+            List<Book> found = new ArrayList<>();
+            for (Book book : books) {
+                if (book.getPublicationYear() >= 1990 && book.getPublicationYear() <= 1999) found.add(book);
+            }
+            return found.size();
+        }));
+        rows.add(measure("catalogScan.years.columns", size, () -> columns.publishedBetween(1990, 1999).size()));
+        rows.add(measure("catalogScan.genre.facets", size,
+                () -> columns.books(columns.facets().select(genreSelection), Integer.MAX_VALUE).size()));
+        rows.add(measure("catalogScan.years.facets", size,
+                () -> columns.books(columns.facets().select(yearSelection), Integer.MAX_VALUE).size()));
+        rows.add(measure("catalogScan.facetCounts.list", size, () -> {
+            Map<String, Integer> genres = new HashMap<>();
+            Map<String, Integer> locations = new HashMap<>();
+            Map<Integer, Integer> years = new HashMap<>();
+            for (Book book : books) {
+                boolean g = "Programming".equals(book.getGenre());
+                boolean l = "North".equals(book.getLibraryLocation());
+                boolean y = book.getPublicationYear() >= 2010;
+                boolean a = book.isAvailable();
+                if (l && y && a) genres.merge(book.getGenre(), 1, Integer::sum);
+                if (g && y && a) locations.merge(book.getLibraryLocation(), 1, Integer::sum);
+                if (g && l && a) years.merge(book.getPublicationYear(), 1, Integer::sum);
+            }
+            return genres.size() + locations.size() + years.size();
+        }));
+        rows.add(measure("catalogScan.facetCounts.facets", size, () -> columns.facets().counts(sidebar).matching));
+        rows.add(measure("catalogScan.query.list", size, () -> {
+            List<Book> found = new ArrayList<>();
+            for (Book book : books) {
+                if ("Programming".equals(book.getGenre()) && "North".equals(book.getLibraryLocation())
+                        && book.getPublicationYear() >= 2010 && book.isAvailable()) found.add(book);
+            }
+            return found.size();
+        }));
+        rows.add(measure("catalogScan.query.planned", size, () -> planner.run(planner.plan(sidebarQuery)).size()));
+        rows.add(measure("catalogScan.queryText.list", size, () -> {
+            List<Book> found = new ArrayList<>();
+            for (Book book : books) {
+                if ("Programming".equals(book.getGenre()) && "North".equals(book.getLibraryLocation())
+                        && book.getPublicationYear() >= 2010 && book.isAvailable()
+                        && (book.getTitle().toLowerCase().contains("an") || book.getAuthor().toLowerCase().contains("an"))) found.add(book);
+            }
+            return found.size();
+        }));
+        rows.add(measure("catalogScan.queryText.planned", size, () -> planner.run(planner.plan(textQuery)).size()));
+        rows.add(measure("catalogScan.search.list", size, () -> {
+            long count = 0;
+            for (Book book : books) {
+                if (book.getTitle().toLowerCase().contains("an") || book.getAuthor().toLowerCase().contains("an")) count++;
+            }
+            return count;
+        }));
+        rows.add(measure("catalogScan.search.columns", size, () -> {
+            long count = 0;
+            for (int slot = 0, slots = columns.slotCount(); slot < slots; slot++) {
+                if (columns.matches(slot, query, true, true)) count++;
+            }
+            return count;
+        }));
+
+        Path results = Paths.get(out);
+        if (!Files.exists(results)) {
+            Files.write(results, Collections.singletonList("benchmark,size,mode,cnt,score,error,unit"));
+        }
+        Files.write(results, rows, StandardOpenOption.APPEND);
+    }
+
+    private static String measure(String name, int size, LongSupplier scan) {
+        double[] scores = new double[MEASURE_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < MEASURE_ITERATIONS; i++) {
+            long ops = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += scan.getAsLong();
+                ops++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ITERATION_NANOS);
+            if (i >= 0) {
+                scores[i] = elapsed / 1e3 / ops;
+            }
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.length - 1);
+        String row = String.format(Locale.ROOT, "%s,%d,avgt,%d,%.3f,%.3f,us/op", name, size, scores.length, mean,
+                Math.sqrt(variance));
+        System.out.println(row);
+        return row;
+    }
+}
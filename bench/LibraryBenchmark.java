@@ -0,0 +1,437 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+// Benchmark harness for the BookManager and AuthManager hot paths.
+//
+// BookManager and UserDirectory are static and load their files from the working directory
+// on first use, so (as JMH does) every dataset size is measured in its own forked JVM whose
+// working directory holds a freshly generated dataset. Each fork appends its scores to one
+// CSV result file, which --baseline can compare against an earlier run.
+//
+//   javac -d out src/*.java bench/*.java
+//   java -cp out LibraryBenchmark [--sizes 10000,100000,1000000] [--out bench-results.csv]
+//                                 [--baseline previous.csv] [--forks 3] [--jvmArgs -Xmx3g]
+//
+// --stress 1,2,4,8 runs the concurrency stress instead: borrow/approve/return cycles from
+// that many threads at once, on a few contended books and on the whole catalog, failing
+// the run if a book is ever lent to two borrowers.
+public class LibraryBenchmark {
+    private static final String CSV_HEADER = "benchmark,size,mode,cnt,score,error,unit";
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+
+    private static volatile long sink; // keeps results alive so the JIT can't drop the work
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (options.containsKey("fork")) {
+            runFork(options);
+        } else {
+            runDriver(options);
+        }
+    }
+
+    // ---------------------------------------------------------------- driver
+
+    private static void runDriver(Map<String, String> options) throws Exception {
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "10000,100000,1000000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim()))
+                .toArray();
+        int forks = Integer.parseInt(options.getOrDefault("forks", "3"));
+        String jvmArgs = options.getOrDefault("jvmArgs", "-Xmx3g");
+        Path results = Paths.get(options.getOrDefault("out", "bench-results.csv")).toAbsolutePath();
+        Files.write(results, Collections.singletonList(CSV_HEADER));
+
+        for (int size : sizes) {
+            Path dataDir = Files.createTempDirectory("library-bench-" + size + "-");
+            System.out.println("# Dataset: " + size + " books/records in " + dataDir);
+            fork(dataDir, jvmArgs, "--fork", "generate", "--size", String.valueOf(size));
+            if (options.containsKey("stress")) {
+                fork(dataDir, jvmArgs, "--fork", "stress", "--size", String.valueOf(size),
+                        "--threads", options.get("stress"), "--out", results.toString());
+                continue;
+            }
+
+            // Cold start is a single shot per JVM, so it gets several fresh forks
+            for (int i = 0; i < forks; i++) {
+                fork(dataDir, jvmArgs, "--fork", "coldstart", "--size", String.valueOf(size), "--out", results.toString());
+            }
+            fork(dataDir, jvmArgs, "--fork", "measure", "--size", String.valueOf(size), "--out", results.toString());
+        }
+
+        List<String> lines = Files.readAllLines(results);
+        System.out.println();
+        System.out.println("# Results (" + results + ")");
+        lines.forEach(System.out::println);
+
+        if (options.containsKey("baseline")) {
+            compare(Paths.get(options.get("baseline")), lines);
+        }
+    }
+
+    private static void fork(Path workingDir, String jvmArgs, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        command.add(LibraryBenchmark.class.getName());
+        command.addAll(Arrays.asList(args));
+
+        Process process = new ProcessBuilder(command)
+                .directory(workingDir.toFile())
+                .inheritIO()
+                .start();
+        int exit = process.waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException("Benchmark fork failed with exit code " + exit + ": " + command);
+        }
+    }
+
+    // The fork runs in the dataset directory, so relative class path entries must be resolved first
+    private static String absoluteClassPath() {
+        StringJoiner joiner = new StringJoiner(File.pathSeparator);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            joiner.add(Paths.get(entry).toAbsolutePath().toString());
+        }
+        return joiner.toString();
+    }
+
+    // ✅ Print the relative change of every score that also appears in the baseline file
+    private static void compare(Path baselineFile, List<String> current) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(baselineFile)) {
+            String[] parts = line.split(",");
+            if (parts.length >= 7 && !line.equals(CSV_HEADER)) {
+                baseline.put(parts[0] + "@" + parts[1], Double.parseDouble(parts[4]));
+            }
+        }
+
+        System.out.println();
+        System.out.println("# Compared with " + baselineFile + " (negative = faster)");
+        for (String line : current) {
+            String[] parts = line.split(",");
+            if (parts.length < 7 || line.equals(CSV_HEADER)) continue;
+            Double before = baseline.get(parts[0] + "@" + parts[1]);
+            if (before == null) continue;
+            double after = Double.parseDouble(parts[4]);
+            System.out.printf("%-40s %9s %12.1f -> %12.1f %s (%+.1f%%)%n",
+                    parts[0], parts[1], before, after, parts[6], (after - before) * 100.0 / before);
+        }
+    }
+
+    // ---------------------------------------------------------------- forks
+
+    private static void runFork(Map<String, String> options) throws Exception {
+        int size = Integer.parseInt(options.get("size"));
+        switch (options.get("fork")) {
+            case "generate":
+                // size books and records, size / 10 users, default skews; seeded by size so reruns match
+                new LibraryDataGenerator(size, userCount(size), size, size, 1.1, 0.9, 3650,
+                        "Fiction:30,Programming:20,History:15,AI:10,Novel:15,Technology:10",
+                        "North:55,South:45").generate(Paths.get(""));
+                LibrarySnapshot.main(new String[0]); // as the first compaction would
+                break;
+            case "coldstart":
+                coldStart(size, options.get("out"));
+                break;
+            case "measure":
+                measureAll(size, options.get("out"));
+                break;
+            case "stress":
+                stress(size, options.get("threads"), options.get("out"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fork mode: " + options.get("fork"));
+        }
+    }
+
+    // ✅ First touch of BookManager runs its static loadData(); time it in a JVM that has seen nothing yet.
+    // coldStart is until the first page of the catalog can be shown, full until everything is loaded.
+    private static void coldStart(int size, String out) throws IOException {
+        long start = System.nanoTime();
+        int rows = Math.min(50, BookManager.getBookCount());
+        for (int i = 0; i < rows; i++) {
+            sink += BookManager.getBookAt(i).getId().length();
+        }
+        double loadMillis = (System.nanoTime() - start) / 1e6;
+
+        long authStart = System.nanoTime();
+        sink += AuthManager.authenticate("user0", "pw0") != null ? 1 : 0;
+        double authMillis = (System.nanoTime() - authStart) / 1e6;
+
+        sink += BookManager.getAllBooks().size();
+        double fullMillis = (System.nanoTime() - start) / 1e6;
+
+        append(out, row("loadData.coldStart", size, "ss", 1, loadMillis, 0, "ms"));
+        append(out, row("loadData.full", size, "ss", 1, fullMillis, 0, "ms"));
+        append(out, row("authenticate.coldStart", size, "ss", 1, authMillis, 0, "ms"));
+    }
+
+    private static void measureAll(int size, String out) throws IOException {
+        Random random = new Random(42);
+        List<Book> books = BookManager.getAllBooks();
+        String[] bookIds = books.stream().map(Book::getId).toArray(String[]::new);
+        String[] queries = LibraryDataGenerator.sampleQueries(random, 256);
+        int users = userCount(size);
+
+        append(out, measure("getBookById", size,
+                i -> BookManager.getBookById(bookIds[Math.floorMod(i * 7919, bookIds.length)])));
+
+        append(out, measure("searchByTitleOrAuthor", size,
+                i -> BookManager.searchByTitleOrAuthor(queries[i % queries.length])));
+
+        append(out, measure("getPendingRequests", size,
+                i -> BookManager.getPendingRequests()));
+
+        append(out, measure("authenticate", size, i -> {
+            int user = Math.floorMod(i * 7919, users);
+            return AuthManager.authenticate(LibraryDataGenerator.username(user), LibraryDataGenerator.password(user));
+        }));
+
+        // Full rebuild from LibraryData.txt and the history segments, per event replayed;
+        // on one thread and on one per core
+        append(out, measureBatch("replay", size, () -> new String[0], none -> replay(books, 1)));
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (cores > 1) {
+            append(out, measureBatch("replay.parallel", size, () -> new String[0], none -> replay(books, cores)));
+        }
+
+        // Each iteration files fresh requests (untimed), then approves them and waits for the writes;
+        // once one at a time and once as a single bulk call
+        Iterator<Book> available = books.stream().filter(Book::isAvailable).iterator();
+        int batch = Math.max(10, Math.min(500, size / 50));
+        Supplier<String[]> requests = () -> {
+            String[] requestIds = new String[batch];
+            for (int i = 0; i < batch && available.hasNext(); i++) {
+                requestIds[i] = BookManager.requestBorrow(available.next().getId(), "bench-user");
+            }
+            PersistenceExecutor.flush(1, TimeUnit.MINUTES);
+            return requestIds;
+        };
+        append(out, measureBatch("approveBorrow+persist", size, requests, requestIds -> {
+            int ops = 0;
+            for (String requestId : requestIds) {
+                if (requestId == null) break;
+                sink += BookManager.approveBorrow(requestId) ? 1 : 0;
+                ops++;
+            }
+            return ops;
+        }));
+        append(out, measureBatch("approveBorrows+persist", size, requests, requestIds -> {
+            List<String> ids = new ArrayList<>();
+            for (String requestId : requestIds) {
+                if (requestId == null) break;
+                ids.add(requestId);
+            }
+            sink += BookManager.approveBorrows(ids).size();
+            return ids.size();
+        }));
+    }
+
+    private static int replay(List<Book> snapshot, int threads) {
+        try {
+            return (int) LibraryReplay.rebuild(snapshot, threads).events;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int userCount(int size) {
+        return Math.max(1, size / 10);
+    }
+
+    // ---------------------------------------------------------------- concurrency stress
+
+    private static void stress(int size, String threadCounts, String out) throws Exception {
+        List<Book> available = new ArrayList<>();
+        for (Book book : BookManager.getAllBooks()) {
+            if (book.isAvailable()) available.add(book);
+        }
+        Book[] contended = available.subList(0, Math.min(16, available.size())).toArray(new Book[0]);
+        Book[] spread = available.toArray(new Book[0]);
+
+        for (String threads : threadCounts.split(",")) {
+            int n = Integer.parseInt(threads.trim());
+            append(out, stressRun("stress.contended.t" + n, size, n, contended));
+            append(out, stressRun("stress.spread.t" + n, size, n, spread));
+        }
+        PersistenceExecutor.flush(1, TimeUnit.MINUTES);
+        checkNoDoubleLending(spread);
+    }
+
+    // ✅ Each thread requests, approves and returns random books from the pool. holders counts
+    // the approved loans per book as the workers see them; it must never go above one.
+    private static String stressRun(String name, int size, int threads, Book[] pool) throws InterruptedException {
+        AtomicIntegerArray holders = new AtomicIntegerArray(pool.length);
+        AtomicLong cycles = new AtomicLong();
+        AtomicLong lostRaces = new AtomicLong();
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + 2 * ITERATION_NANOS;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String user = "stress-" + t;
+            workers.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline && failures.isEmpty()) {
+                    int slot = random.nextInt(pool.length);
+                    String borrowId = BookManager.requestBorrow(pool[slot].getId(), user);
+                    if (borrowId == null) {
+                        lostRaces.incrementAndGet();
+                        continue;
+                    }
+                    if (!BookManager.approveBorrow(borrowId)) {
+                        BookManager.rejectBorrow(borrowId); // another borrower got the book first
+                        lostRaces.incrementAndGet();
+                        continue;
+                    }
+                    if (holders.incrementAndGet(slot) != 1) {
+                        failures.add("Book " + pool[slot].getId() + " was lent twice");
+                    }
+                    if (!BookManager.requestReturn(borrowId)) {
+                        failures.add("Return request failed for " + borrowId);
+                    }
+                    holders.decrementAndGet(slot);
+                    if (!BookManager.approveReturn(borrowId)) {
+                        failures.add("Return approval failed for " + borrowId);
+                    }
+                    cycles.incrementAndGet();
+                }
+            }, "stress-" + t));
+        }
+
+        // A reader alongside the writers: none of these may throw while the catalog changes
+        Thread reader = new Thread(() -> {
+            try {
+                while (System.nanoTime() < deadline) {
+                    sink += BookManager.getAllBooks().size();
+                    sink += BookManager.getPendingRequests().size();
+                    sink += BookManager.searchByTitleOrAuthor("the", 50).size();
+                    sink += BookManager.getBorrowRecordViews("stress-0", null, 0, 100).size();
+                }
+            } catch (RuntimeException e) {
+                failures.add("Reader failed: " + e);
+            }
+        }, "stress-reader");
+
+        long start = System.nanoTime();
+        workers.forEach(Thread::start);
+        reader.start();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        reader.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(name + ": " + failures.get(0));
+        }
+        String line = row(name, size, "thrpt", threads, cycles.get() / seconds, 0, "cycles/s");
+        System.out.println(line + "   (" + lostRaces.get() + " lost races)");
+        return line;
+    }
+
+    // ✅ Afterwards every book must have at most one open loan, and be unavailable exactly when it has one
+    private static void checkNoDoubleLending(Book[] books) {
+        Map<String, Integer> openLoans = new HashMap<>();
+        for (BorrowRecordView view : BookManager.getBorrowRecordViews(null, Arrays.asList("APPROVED", "RETURN_PENDING"))) {
+            openLoans.merge(view.getBookId(), 1, Integer::sum);
+        }
+        for (Book book : books) {
+            int loans = openLoans.getOrDefault(book.getId(), 0);
+            if (loans > 1 || book.isAvailable() != (loans == 0)) {
+                throw new IllegalStateException("Book " + book.getId() + " has " + loans
+                        + " open loans but available=" + book.isAvailable());
+            }
+        }
+        System.out.println("# No double lending across " + books.length + " books");
+    }
+
+    // ---------------------------------------------------------------- measurement
+
+    // Average time per call, over timed iterations after untimed warmup iterations
+    private static String measure(String name, int size, IntFunction<Object> op) {
+        int[] counter = {0};
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runFor(op, counter);
+        }
+        double[] scores = new double[MEASURE_ITERATIONS];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            scores[i] = runFor(op, counter);
+        }
+        return summarize(name, size, scores);
+    }
+
+    private static double runFor(IntFunction<Object> op, int[] counter) {
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_NANOS;
+        long ops = 0;
+        long now;
+        do {
+            for (int k = 0; k < 64; k++) {
+                Object result = op.apply(counter[0]++);
+                sink += result != null ? 1 : 0;
+            }
+            ops += 64;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return (now - start) / (double) ops;
+    }
+
+    // For operations that consume state: the setup runs untimed, the batch plus the flush is
+    // timed, and the score is per item the batch handled
+    private static String measureBatch(String name, int size, Supplier<String[]> setup, ToIntFunction<String[]> batch) {
+        double[] scores = new double[MEASURE_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < MEASURE_ITERATIONS; i++) {
+            String[] inputs = setup.get();
+            long start = System.nanoTime();
+            int ops = batch.applyAsInt(inputs);
+            PersistenceExecutor.flush(1, TimeUnit.MINUTES);
+            LibraryAuditLog.flush();
+            if (i >= 0) {
+                scores[i] = (System.nanoTime() - start) / (double) Math.max(1, ops);
+            }
+        }
+        return summarize(name, size, scores);
+    }
+
+    private static String summarize(String name, int size, double[] scores) {
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.length - 1);
+        String line = row(name, size, "avgt", scores.length, mean, Math.sqrt(variance), "ns/op");
+        System.out.println(line);
+        return line;
+    }
+
+    private static String row(String name, int size, String mode, int count, double score, double error, String unit) {
+        return String.format(Locale.ROOT, "%s,%d,%s,%d,%.3f,%.3f,%s", name, size, mode, count, score, error, unit);
+    }
+
+    private static synchronized void append(String file, String line) throws IOException {
+        Files.write(Paths.get(file), Collections.singletonList(line), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            String value = i + 1 < args.length && !args[i + 1].startsWith("--") ? args[++i] : "true";
+            options.put(key, value);
+        }
+        return options;
+    }
+}
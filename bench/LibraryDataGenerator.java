@@ -0,0 +1,316 @@
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+// Synthetic library for load and scale testing, written in the app's own formats:
+// books.dat, borrow_records.dat, LibraryData.txt (USER and BOOK lines) and LibraryHistory.txt
+// (BORROW, RETURN_REQUEST and RETURN events).
+//
+// Everything is streamed to disk. Book i and user i are re-derived from (seed, i) whenever
+// they are needed, so the only per-row state held in memory is the day each book is next
+// free (an int per book).
+//
+// Popularity is Zipf-shaped: --title-skew controls how strongly loans pile onto popular
+// titles, --borrower-skew how strongly they pile onto heavy borrowers (0 = uniform).
+// Genre and branch mixes are weighted lists such as "North:60,South:40".
+//
+//   java -cp out LibraryDataGenerator --dir data --books 1000000 --users 100000 --records 5000000
+//        [--seed 1] [--title-skew 1.1] [--borrower-skew 0.9] [--days 3650]
+//        [--genres Fiction:30,Programming:15,...] [--locations North:55,South:45]
+public class LibraryDataGenerator {
+    private static final String[] WORDS = {
+            "the", "history", "of", "java", "midnight", "library", "journey", "ancient", "code", "clean",
+            "future", "intelligence", "river", "garden", "shadow", "empire", "silent", "ocean", "winter",
+            "modern", "approach", "secret", "light", "stone", "whispers", "city", "machine", "learning"
+    };
+    private static final String[] FIRST_NAMES = {
+            "Thabo", "Lerato", "Anna", "Robert", "Jane", "Sipho", "Matt", "Laila", "Peter", "Zanele",
+            "Lisakhanya", "Thabisile", "Siphosethu", "Beverley", "Stuart", "Naledi", "Kagiso", "Ayanda"
+    };
+    private static final String[] LAST_NAMES = {
+            "Mokoena", "Naidoo", "Martin", "Haig", "Stone", "Russell", "Norvig", "Dlamini", "Smith",
+            "Khumalo", "Tembani", "Mtshweni", "Mlomo", "Bolo", "Nkosi", "Botha", "Pillay", "Van Wyk"
+    };
+    private static final String DEFAULT_GENRES =
+            "Fiction:30,Programming:15,History:12,AI:8,Novel:15,Technology:10,Historical Fiction:5,Fiction / Fantasy:5";
+    private static final String DEFAULT_LOCATIONS = "North:55,South:45";
+
+    // Requests filed in the final week may still be waiting for a librarian
+    private static final int PENDING_WINDOW_DAYS = 7;
+
+    private final int books;
+    private final int users;
+    private final long records;
+    private final long seed;
+    private final double titleSkew;
+    private final double borrowerSkew;
+    private final int days;
+    private final WeightedChoice genres;
+    private final WeightedChoice locations;
+
+    public LibraryDataGenerator(int books, int users, long records, long seed, double titleSkew,
+                                double borrowerSkew, int days, String genres, String locations) {
+        this.books = books;
+        this.users = users;
+        this.records = records;
+        this.seed = seed;
+        this.titleSkew = titleSkew;
+        this.borrowerSkew = borrowerSkew;
+        this.days = days;
+        this.genres = new WeightedChoice(genres);
+        this.locations = new WeightedChoice(locations);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int books = Integer.parseInt(options.getOrDefault("books", "100000"));
+        LibraryDataGenerator generator = new LibraryDataGenerator(
+                books,
+                Integer.parseInt(options.getOrDefault("users", String.valueOf(Math.max(1, books / 10)))),
+                Long.parseLong(options.getOrDefault("records", String.valueOf(books))),
+                Long.parseLong(options.getOrDefault("seed", "1")),
+                Double.parseDouble(options.getOrDefault("title-skew", "1.1")),
+                Double.parseDouble(options.getOrDefault("borrower-skew", "0.9")),
+                Integer.parseInt(options.getOrDefault("days", "3650")),
+                options.getOrDefault("genres", DEFAULT_GENRES),
+                options.getOrDefault("locations", DEFAULT_LOCATIONS));
+
+        Path dir = Paths.get(options.getOrDefault("dir", "."));
+        Files.createDirectories(dir);
+        long start = System.nanoTime();
+        generator.generate(dir);
+        System.out.printf("Generated %d books, %d users and %d borrow records in %s (%.1fs)%n",
+                generator.books, generator.users, generator.records, dir.toAbsolutePath(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    // Matches the user rows written by generate(): user<N> / pw<N>
+    public static String username(int user) {
+        return "user" + user;
+    }
+
+    public static String password(int user) {
+        return "pw" + user;
+    }
+
+    public static String bookId(int book) {
+        return String.format("B%07d", book);
+    }
+
+    public void generate(Path dir) throws IOException {
+        if (records > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("borrow_records.dat holds at most " + Integer.MAX_VALUE + " records");
+        }
+        int[] freeFromDay = new int[books]; // epoch day each book is next on the shelf
+        boolean[] onLoan = new boolean[books];
+
+        // Pass 1: borrow records in request order, with their event lines
+        try (LibraryCodec.StreamWriter out = LibraryCodec.streamBorrowRecords(dir.resolve("borrow_records.dat"), (int) records);
+             BufferedWriter eventLines = Files.newBufferedWriter(dir.resolve("LibraryHistory.txt"))) {
+            writeBorrowRecords(out, eventLines, freeFromDay, onLoan);
+        }
+
+        // Pass 2: books (availability now known) and LibraryData.txt in its section order
+        try (LibraryCodec.StreamWriter out = LibraryCodec.streamBooks(dir.resolve("books.dat"), books);
+             BufferedWriter data = Files.newBufferedWriter(dir.resolve("LibraryData.txt"))) {
+            for (int u = 0; u < users; u++) {
+                data.write(userLine(u));
+                data.newLine();
+            }
+            data.newLine();
+
+            for (int b = 0; b < books; b++) {
+                Book book = book(b);
+                book.setAvailable(!onLoan[b]);
+                out.write(book);
+                data.write(String.format("BOOK|%s|%s|%s|available", book.getTitle(), book.getAuthor(), book.getId()));
+                data.newLine();
+            }
+            data.newLine();
+        }
+    }
+
+    private void writeBorrowRecords(LibraryCodec.StreamWriter out, BufferedWriter events,
+                                    int[] freeFromDay, boolean[] onLoan) throws IOException {
+        Random random = new Random(seed);
+        int today = (int) LocalDate.now().toEpochDay();
+        int firstDay = today - days;
+        ZipfSampler titles = new ZipfSampler(books, titleSkew);
+        ZipfSampler borrowers = new ZipfSampler(users, borrowerSkew);
+
+        for (long i = 0; i < records; i++) {
+            int day = firstDay + (int) (i * days / Math.max(1, records));
+            int book = titles.next(random);
+            String userId = username(borrowers.next(random));
+            String id = new UUID(random.nextLong(), random.nextLong()).toString();
+            LocalDate requested = LocalDate.ofEpochDay(day);
+            int none = BorrowRecord.NO_DATE;
+
+            BorrowRecord record;
+            if (day >= today - PENDING_WINDOW_DAYS && random.nextInt(4) == 0) {
+                record = new BorrowRecord(id, bookId(book), userId, day, none, none, none, BorrowRecord.Status.PENDING);
+            } else if (day < freeFromDay[book] || random.nextInt(20) == 0) {
+                record = new BorrowRecord(id, bookId(book), userId, day, none, none, none, BorrowRecord.Status.REJECTED);
+            } else {
+                int loanDays = 3 + random.nextInt(26);
+                LocalDate borrowed = requested.plusDays(random.nextInt(2));
+                LocalDate returned = borrowed.plusDays(loanDays);
+                freeFromDay[book] = (int) returned.toEpochDay() + 1;
+                events.write(event("BORROW", userId, book, borrowed, random));
+                events.newLine();
+
+                if (returned.toEpochDay() < today) {
+                    record = new BorrowRecord(id, bookId(book), userId, day, BorrowRecord.epochDay(borrowed),
+                            BorrowRecord.epochDay(borrowed.plusWeeks(2)), BorrowRecord.epochDay(returned),
+                            BorrowRecord.Status.RETURNED);
+                    events.write(event("RETURN", userId, book, returned, random));
+                    events.newLine();
+                    onLoan[book] = false;
+                } else {
+                    boolean returnRequested = random.nextInt(5) == 0;
+                    record = new BorrowRecord(id, bookId(book), userId, day, BorrowRecord.epochDay(borrowed),
+                            BorrowRecord.epochDay(borrowed.plusWeeks(2)), none,
+                            returnRequested ? BorrowRecord.Status.RETURN_PENDING : BorrowRecord.Status.APPROVED);
+                    if (returnRequested) {
+                        events.write(event("RETURN_REQUEST", userId, book, LocalDate.ofEpochDay(today), random));
+                        events.newLine();
+                    }
+                    onLoan[book] = true;
+                }
+            }
+            out.write(record);
+        }
+    }
+
+    private String event(String type, String userId, int book, LocalDate day, Random random) {
+        long millis = day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                + (8 * 3600 + random.nextInt(10 * 3600)) * 1000L; // opening hours
+        return LibraryAuditLog.line(type, userId, bookId(book), millis);
+    }
+
+    private String userLine(int user) {
+        Random random = new Random(seed * 31 + user);
+        String fullName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        String contact = String.format("0%d%08d", 6 + random.nextInt(3), random.nextInt(100_000_000));
+        String membershipId = String.format("%013d", Math.floorMod(random.nextLong(), 10_000_000_000_000L));
+        return String.join("|", "USER", username(user), password(user), fullName, contact,
+                user == 0 ? "admin" : "user", membershipId);
+    }
+
+    // ✅ Book i is a pure function of (seed, i), so it can be rebuilt anywhere without storing it
+    public Book book(int index) {
+        Random random = new Random(seed * 1_000_003 + index);
+        int words = 1 + random.nextInt(5);
+        StringBuilder title = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (w > 0) title.append(' ');
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        }
+        if (random.nextInt(3) == 0) {
+            title.append(' ').append(1 + random.nextInt(12)); // series volume
+        }
+        String author = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        if (books > 10_000) {
+            author += " " + random.nextInt(Math.max(1, books / 50)); // keep the author pool growing with the catalog
+        }
+        return new Book(bookId(index), title.toString(), author, genres.pick(random),
+                1900 + (int) Math.round(Math.min(124, Math.abs(random.nextGaussian()) * 25 + 80)),
+                locations.pick(random));
+    }
+
+    // ✅ Search terms drawn from the same vocabulary as the generated titles and authors
+    public static String[] sampleQueries(Random random, int count) {
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0:
+                    queries[i] = WORDS[random.nextInt(WORDS.length)];
+                    break;
+                case 1:
+                    queries[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+                    break;
+                case 2:
+                    queries[i] = LAST_NAMES[random.nextInt(LAST_NAMES.length)].toLowerCase();
+                    break;
+                default:
+                    queries[i] = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                            + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            }
+        }
+        return queries;
+    }
+
+    // Zipf-like ranks via the inverse CDF of a continuous power law (O(1) memory), scattered
+    // over the id space so the most popular books and borrowers aren't simply ids 0, 1, 2...
+    private static class ZipfSampler {
+        private final int n;
+        private final double skew;
+        private final long stride;
+
+        ZipfSampler(int n, double skew) {
+            this.n = n;
+            this.skew = skew;
+            long stride = 1_000_003;
+            while (gcd(stride, n) != 1) {
+                stride += 2;
+            }
+            this.stride = stride;
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            double rank;
+            if (skew <= 0) {
+                rank = u * n;
+            } else if (Math.abs(skew - 1.0) < 1e-9) {
+                rank = Math.pow(n + 1, u) - 1;
+            } else {
+                double oneMinusS = 1 - skew;
+                rank = Math.pow((Math.pow(n + 1, oneMinusS) - 1) * u + 1, 1 / oneMinusS) - 1;
+            }
+            int r = Math.min(n - 1, (int) rank);
+            return (int) ((r * stride + n / 2) % n); // rank 0 lands mid-range, not on user0 / the admin
+        }
+
+        private static long gcd(long a, long b) {
+            return b == 0 ? a : gcd(b, a % b);
+        }
+    }
+
+    private static class WeightedChoice {
+        private final String[] values;
+        private final double[] cumulative;
+
+        WeightedChoice(String spec) {
+            String[] entries = spec.split(",");
+            values = new String[entries.length];
+            cumulative = new double[entries.length];
+            double total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                int colon = entries[i].lastIndexOf(':');
+                values[i] = entries[i].substring(0, colon).trim();
+                total += Double.parseDouble(entries[i].substring(colon + 1));
+                cumulative[i] = total;
+            }
+            for (int i = 0; i < cumulative.length; i++) {
+                cumulative[i] /= total;
+            }
+        }
+
+        String pick(Random random) {
+            double u = random.nextDouble();
+            for (int i = 0; i < cumulative.length; i++) {
+                if (u < cumulative[i]) {
+                    return values[i];
+                }
+            }
+            return values[values.length - 1];
+        }
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Load test for LibraryServer: thousands of simulated patrons, each on its own virtual
+// thread with its own session, against one server JVM on a generated dataset.
+//
+// Every patron logs in and then, until the time is up, searches, looks at its loans and
+// now and then asks to borrow a book it found, with a random think time between actions.
+// One librarian approves pending requests as they come in. Throughput and p50/p99 latency
+// per action are printed and appended to the CSV file.
+//
+//   javac -encoding UTF-8 -d out src/*.java bench/*.java
+//   java -cp out LibraryLoadTest [--size 100000] [--patrons 2000] [--seconds 30] [--think-ms 200]
+//                                [--out bench-results.csv] [--jvmArgs -Xmx3g]
+public class LibraryLoadTest {
+    private static final String[] ACTIONS = {"login", "search", "myLoans", "requestBorrow", "approveBorrow"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int size = Integer.parseInt(options.getOrDefault("size", "100000"));
+        int patrons = Integer.parseInt(options.getOrDefault("patrons", "2000"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int thinkMillis = Integer.parseInt(options.getOrDefault("think-ms", "200"));
+        String out = options.getOrDefault("out", "bench-results.csv");
+        int users = Math.max(patrons, size / 10);
+
+        Path dataDir = Files.createTempDirectory("library-load-" + size + "-");
+        System.out.println("# Dataset: " + size + " books, " + users + " users in " + dataDir);
+        new LibraryDataGenerator(size, users, size, 42, 1.1, 0.9, 3650,
+                "Fiction:30,Programming:20,History:15,AI:10,Novel:15,Technology:10", "North:55,South:45")
+                .generate(dataDir);
+
+        int port;
+        try (java.net.ServerSocket socket = new java.net.ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Process server = startServer(dataDir, port, options.getOrDefault("jvmArgs", "-Xmx3g"));
+        try {
+            String url = "http://localhost:" + port;
+            waitForServer(url);
+            run(url, size, patrons, seconds, thinkMillis, out);
+        } finally {
+            server.destroy(); // SIGTERM: the server's shutdown hook flushes pending writes
+            server.waitFor(30, TimeUnit.SECONDS);
+            try (java.util.stream.Stream<Path> files = Files.walk(dataDir)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static void run(String url, int size, int patrons, int seconds, int thinkMillis, String out)
+            throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+        for (String action : ACTIONS) {
+            latencies.put(action, new ConcurrentLinkedQueue<>());
+        }
+        AtomicLong failures = new AtomicLong();
+        String[] queries = LibraryDataGenerator.sampleQueries(new Random(7), 256);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch loggedIn = new CountDownLatch(patrons);
+
+        List<RemoteLibraryService> sessions = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int p = 0; p < patrons; p++) {
+                int patron = p + 1; // user0 is the admin
+                threads.submit(() -> {
+                    RemoteLibraryService library = new RemoteLibraryService(url, client);
+                    sessions.add(library);
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    String username = LibraryDataGenerator.username(patron);
+                    User user = timed(latencies, "login",
+                            () -> library.authenticate(username, LibraryDataGenerator.password(patron)));
+                    loggedIn.countDown();
+                    if (user == null) {
+                        failures.incrementAndGet();
+                        return;
+                    }
+                    while (System.nanoTime() < deadline) {
+                        List<Book> found = timed(latencies, "search",
+                                () -> library.searchByTitleOrAuthor(queries[random.nextInt(queries.length)], 50));
+                        think(random, thinkMillis);
+                        if (!found.isEmpty() && random.nextInt(5) == 0) {
+                            Book book = found.get(random.nextInt(found.size()));
+                            if (book.isAvailable()) {
+                                timed(latencies, "requestBorrow", () -> library.requestBorrow(book.getId(), username));
+                            }
+                            think(random, thinkMillis);
+                        }
+                        timed(latencies, "myLoans", () -> library.getBorrowRecordViews(username, null, 0, 20));
+                        think(random, thinkMillis);
+                    }
+                });
+            }
+
+            threads.submit(() -> {
+                RemoteLibraryService admin = new RemoteLibraryService(url, client);
+                sessions.add(admin);
+                admin.authenticate(LibraryDataGenerator.username(0), LibraryDataGenerator.password(0));
+                while (System.nanoTime() < deadline) {
+                    for (BorrowRecordView view : admin.getBorrowRecordViews(null, List.of("PENDING"), 0, 100)) {
+                        timed(latencies, "approveBorrow", () -> admin.approveBorrow(view.getId()));
+                    }
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+
+            loggedIn.await();
+            System.out.printf("# %d patrons logged in after %.1fs%n", patrons, (System.nanoTime() - start) / 1e9);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        for (RemoteLibraryService session : sessions) {
+            failures.addAndGet(session.getFailedCalls());
+        }
+
+        System.out.println();
+        System.out.printf("# %d patrons for %.1fs, %d failed calls%n", patrons, elapsed, failures.get());
+        List<String> rows = new ArrayList<>();
+        for (String action : ACTIONS) {
+            long[] samples = latencies.get(action).stream().mapToLong(Long::longValue).sorted().toArray();
+            if (samples.length == 0) continue;
+            double p50 = samples[samples.length / 2] / 1e6;
+            double p99 = samples[Math.min(samples.length - 1, (int) (samples.length * 0.99))] / 1e6;
+            System.out.printf("%-15s %9d calls %10.1f/s   p50 %8.2f ms   p99 %8.2f ms%n",
+                    action, samples.length, samples.length / elapsed, p50, p99);
+            rows.add(row("load." + action, size, "thrpt", patrons, samples.length / elapsed, "ops/s"));
+            rows.add(row("load." + action + ".p50", size, "sample", patrons, p50, "ms"));
+            rows.add(row("load." + action + ".p99", size, "sample", patrons, p99, "ms"));
+        }
+        rows.add(row("load.failedCalls", size, "ss", patrons, failures.get(), "calls"));
+
+        Path results = Paths.get(out);
+        if (!Files.exists(results)) {
+            Files.write(results, Collections.singletonList("benchmark,size,mode,cnt,score,error,unit"));
+        }
+        Files.write(results, rows, StandardOpenOption.APPEND);
+    }
+
+    private static <T> T timed(Map<String, Queue<Long>> latencies, String action, Callable<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            latencies.get(action).add(System.nanoTime() - start);
+        }
+    }
+
+    private static void think(ThreadLocalRandom random, int thinkMillis) {
+        try {
+            Thread.sleep(random.nextInt(2 * thinkMillis + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String row(String name, int size, String mode, int count, double score, String unit) {
+        return String.format(Locale.ROOT, "%s,%d,%s,%d,%.3f,%.3f,%s", name, size, mode, count, score, 0.0, unit);
+    }
+
+    private static Process startServer(Path dataDir, int port, String jvmArgs) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        command.add("-cp");
+        StringJoiner classPath = new StringJoiner(File.pathSeparator);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classPath.add(Paths.get(entry).toAbsolutePath().toString());
+        }
+        command.add(classPath.toString());
+        command.addAll(Arrays.asList("Main", "--server", "--port", String.valueOf(port)));
+        return new ProcessBuilder(command).directory(dataDir.toFile()).inheritIO().start();
+    }
+
+    private static void waitForServer(String url) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest ping = HttpRequest.newBuilder(URI.create(url + "/api/userExists"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"user0\"}")).build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(ping, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                    return;
+                }
+            } catch (java.io.IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new IllegalStateException("Library server did not start");
+    }
+}
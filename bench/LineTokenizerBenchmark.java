@@ -0,0 +1,165 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.*;
+
+// String.split parsing (as UserDirectory and LibraryDataFile did it) against LineTokenizer,
+// on a generated LibraryData.txt-style file: USER rows, BOOK rows and old event lines.
+//
+//   parse: build a User from every USER row, as UserDirectory.load does
+//   scan:  classify every line by prefix only, as LibraryDataFile.countLooseLines does
+//
+// Scores are ns and allocated bytes per line, averaged over timed passes after warmup
+// passes, and appended to the CSV file in LibraryBenchmark's format.
+//
+//   javac -encoding UTF-8 -d out src/*.java bench/*.java
+//   java -cp out LineTokenizerBenchmark [--lines 1000000] [--out bench-results.csv]
+public class LineTokenizerBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+
+    private static final byte[] USER = LineTokenizer.ascii("USER|");
+    private static final byte[] BOOK = LineTokenizer.ascii("BOOK|");
+
+    private static volatile long sink;
+
+    private interface Pass {
+        long run(File file) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        int lines = Integer.parseInt(options.getOrDefault("lines", "1000000"));
+        String out = options.getOrDefault("out", "bench-results.csv");
+
+        File file = File.createTempFile("library-data-", ".txt");
+        try {
+            generate(file, lines);
+            System.out.printf("# %d lines, %.1f MB%n", lines, file.length() / 1e6);
+            List<String> rows = new ArrayList<>();
+            rows.addAll(measure("tokenizer.parse.split", lines, file, LineTokenizerBenchmark::parseSplit));
+            rows.addAll(measure("tokenizer.parse.tokenizer", lines, file, LineTokenizerBenchmark::parseTokenizer));
+            rows.addAll(measure("tokenizer.scan.readLine", lines, file, LineTokenizerBenchmark::scanReadLine));
+            rows.addAll(measure("tokenizer.scan.tokenizer", lines, file, LineTokenizerBenchmark::scanTokenizer));
+
+            Path results = Paths.get(out);
+            if (!Files.exists(results)) {
+                Files.write(results, Collections.singletonList("benchmark,size,mode,cnt,score,error,unit"));
+            }
+            Files.write(results, rows, StandardOpenOption.APPEND);
+        } finally {
+            file.delete();
+        }
+    }
+
+    // 10% USER rows, 60% BOOK rows, 30% old event lines, in that order
+    private static void generate(File file, int lines) throws IOException {
+        Random random = new Random(42);
+        int users = lines / 10;
+        int books = lines * 6 / 10;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < users; i++) {
+                writer.write(String.join("|", "USER", LibraryDataGenerator.username(i), LibraryDataGenerator.password(i),
+                        "Member " + i, "user" + i + "@example.com", i == 0 ? "admin" : "user", "M" + i));
+                writer.newLine();
+            }
+            for (int i = 0; i < books; i++) {
+                writer.write(String.join("|", "BOOK", "Title " + i, "Author " + random.nextInt(5000),
+                        LibraryDataGenerator.bookId(i), "available"));
+                writer.newLine();
+            }
+            for (int i = users + books; i < lines; i++) {
+                String type = i % 3 == 0 ? "BORROW" : i % 3 == 1 ? "RETURN_REQUEST" : "RETURN";
+                writer.write(String.join("|", type, LibraryDataGenerator.username(random.nextInt(users)),
+                        LibraryDataGenerator.bookId(random.nextInt(books)), "Mon Oct 18 09:31:55 UTC 2021"));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static long parseSplit(File file) throws IOException {
+        long found = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                if (line.startsWith("USER|")) {
+                    String[] parts = line.split("\\|");
+                    if (parts.length >= 7) {
+                        found += new User(parts[1].trim(), parts[2].trim(), parts[3].trim(),
+                                parts[4].trim(), parts[5].trim(), parts[6].trim()).getUsername().length();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static long parseTokenizer(File file) throws IOException {
+        long found = 0;
+        try (LineTokenizer lines = new LineTokenizer(new FileInputStream(file))) {
+            while (lines.next()) {
+                if (lines.isBlank()) continue;
+                if (lines.startsWith(USER) && lines.split('|') >= 7) {
+                    found += new User(lines.trimmedField(1), lines.trimmedField(2), lines.trimmedField(3),
+                            lines.trimmedField(4), lines.trimmedField(5), lines.trimmedField(6)).getUsername().length();
+                }
+            }
+        }
+        return found;
+    }
+
+    private static long scanReadLine(File file) throws IOException {
+        long books = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("BOOK|")) books++;
+            }
+        }
+        return books;
+    }
+
+    private static long scanTokenizer(File file) throws IOException {
+        long books = 0;
+        try (LineTokenizer lines = new LineTokenizer(new FileInputStream(file))) {
+            while (lines.next()) {
+                if (lines.startsWith(BOOK)) books++;
+            }
+        }
+        return books;
+    }
+
+    private static List<String> measure(String name, int lines, File file, Pass pass) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        double[] nanos = new double[MEASURE_ITERATIONS];
+        double[] bytes = new double[MEASURE_ITERATIONS];
+        for (int i = -WARMUP_ITERATIONS; i < MEASURE_ITERATIONS; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            sink += pass.run(file);
+            long elapsed = System.nanoTime() - start;
+            long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            if (i >= 0) {
+                nanos[i] = elapsed / (double) lines;
+                bytes[i] = allocated / (double) lines;
+            }
+        }
+        List<String> rows = Arrays.asList(
+                row(name, lines, "avgt", nanos, "ns/line"),
+                row(name + ".alloc", lines, "avgt", bytes, "B/line"));
+        rows.forEach(System.out::println);
+        return rows;
+    }
+
+    private static String row(String name, int lines, String mode, double[] scores, String unit) {
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum() / Math.max(1, scores.length - 1);
+        return String.format(Locale.ROOT, "%s,%d,%s,%d,%.3f,%.3f,%s", name, lines, mode, scores.length, mean,
+                Math.sqrt(variance), unit);
+    }
+}
@@ -1,6 +1,8 @@
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.time.format.DateTimeFormatter;
@@ -10,7 +12,7 @@ public class AdminDashboard extends JFrame {
     private JTable bookTable;
     private JTable borrowRequestsTable;
     private JTable userTable;
-    private DefaultTableModel bookTableModel;
+    private BookTableModel bookTableModel;
     private DefaultTableModel borrowRequestsModel;
     private DefaultTableModel userTableModel;
     private JTextField idField, titleField, authorField, genreField, yearField, locationField;
@@ -84,6 +86,7 @@ public class AdminDashboard extends JFrame {
         };
         JTable borrowRequestsTable = new JTable(borrowRequestsModel);
         styleTable(borrowRequestsTable);
+        borrowRequestsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         // Return Requests Tab
         JPanel returnRequestsPanel = new JPanel(new BorderLayout());
@@ -93,6 +96,7 @@ public class AdminDashboard extends JFrame {
         };
         JTable returnRequestsTable = new JTable(returnRequestsModel);
         styleTable(returnRequestsTable);
+        returnRequestsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
 
         // Add tabs
         requestsTabbedPane.addTab("Borrow Requests", new JScrollPane(borrowRequestsTable));
@@ -105,18 +109,18 @@ public class AdminDashboard extends JFrame {
         JButton approveButton = createStyledButton("Approve");
         approveButton.addActionListener(e -> {
             if (requestsTabbedPane.getSelectedIndex() == 0) {
-                approveBorrowRequest(borrowRequestsTable);
+                approveBorrowRequests(borrowRequestsTable);
             } else {
-                approveReturnRequest(returnRequestsTable);
+                approveReturnRequests(returnRequestsTable);
             }
         });
 
         JButton rejectButton = createStyledButton("Reject");
         rejectButton.addActionListener(e -> {
             if (requestsTabbedPane.getSelectedIndex() == 0) {
-                rejectBorrowRequest(borrowRequestsTable);
+                rejectBorrowRequests(borrowRequestsTable);
             } else {
-                rejectReturnRequest(returnRequestsTable);
+                rejectReturnRequests(returnRequestsTable);
             }
         });
 
@@ -140,49 +144,94 @@ public class AdminDashboard extends JFrame {
         return panel;
     }
 
-    private void approveReturnRequest(JTable returnRequestsTable) {
-        int selectedRow = returnRequestsTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            DefaultTableModel model = (DefaultTableModel) returnRequestsTable.getModel();
-            String requestId = (String) model.getValueAt(selectedRow, 0);
-            if (BookManager.approveReturn(requestId)) {
-                JOptionPane.showMessageDialog(this, "Return approved successfully!");
-                refreshReturnRequests(model);
-                updateDashboardStats();
-            }
-        } else {
+    private void approveReturnRequests(JTable returnRequestsTable) {
+        List<String> requestIds = selectedRequestIds(returnRequestsTable);
+        if (requestIds.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Please select a return request to approve.");
+            return;
         }
+        UIUtils.inBackground(() -> LibraryService.get().approveReturns(requestIds), outcomes -> {
+            showOutcomes(outcomes, "Return approved successfully!", "return requests approved");
+            refreshReturnRequests((DefaultTableModel) returnRequestsTable.getModel());
+            updateDashboardStats();
+        });
     }
 
-    private void rejectReturnRequest(JTable returnRequestsTable) {
-        int selectedRow = returnRequestsTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            DefaultTableModel model = (DefaultTableModel) returnRequestsTable.getModel();
-            String requestId = (String) model.getValueAt(selectedRow, 0);
-            if (BookManager.rejectReturn(requestId)) {
-                JOptionPane.showMessageDialog(this, "Return request rejected.");
-                refreshReturnRequests(model);
-            }
+    private void rejectReturnRequests(JTable returnRequestsTable) {
+        List<String> requestIds = selectedRequestIds(returnRequestsTable);
+        if (requestIds.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select a return request to reject.");
+            return;
+        }
+        UIUtils.inBackground(() -> LibraryService.get().rejectReturns(requestIds), outcomes -> {
+            showOutcomes(outcomes, "Return request rejected.", "return requests rejected");
+            refreshReturnRequests((DefaultTableModel) returnRequestsTable.getModel());
+            updateDashboardStats();
+        });
+    }
+
+    private void approveBorrowRequests(JTable borrowRequestsTable) {
+        List<String> requestIds = selectedRequestIds(borrowRequestsTable);
+        if (requestIds.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select a borrow request to approve.");
+            return;
+        }
+        UIUtils.inBackground(() -> LibraryService.get().approveBorrows(requestIds), outcomes -> {
+            showOutcomes(outcomes, "Borrow request approved successfully!", "borrow requests approved");
+            refreshBorrowRequests((DefaultTableModel) borrowRequestsTable.getModel());
+            updateDashboardStats();
+        });
+    }
+
+    private void rejectBorrowRequests(JTable borrowRequestsTable) {
+        List<String> requestIds = selectedRequestIds(borrowRequestsTable);
+        if (requestIds.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select a borrow request to reject.");
+            return;
+        }
+        UIUtils.inBackground(() -> LibraryService.get().rejectBorrows(requestIds), outcomes -> {
+            showOutcomes(outcomes, "Borrow request rejected.", "borrow requests rejected");
+            refreshBorrowRequests((DefaultTableModel) borrowRequestsTable.getModel());
+            updateDashboardStats();
+        });
+    }
+
+    // ✅ Request ids of every selected row (column 0)
+    private List<String> selectedRequestIds(JTable table) {
+        List<String> requestIds = new ArrayList<>();
+        for (int row : table.getSelectedRows()) {
+            requestIds.add((String) table.getModel().getValueAt(table.convertRowIndexToModel(row), 0));
+        }
+        return requestIds;
+    }
+
+    private void showOutcomes(Map<String, Boolean> outcomes, String singleMessage, String done) {
+        long applied = outcomes.values().stream().filter(Boolean::booleanValue).count();
+        if (outcomes.size() == 1 && applied == 1) {
+            JOptionPane.showMessageDialog(this, singleMessage);
+        } else if (applied == outcomes.size()) {
+            JOptionPane.showMessageDialog(this, applied + " " + done + ".");
+        } else {
+            JOptionPane.showMessageDialog(this, applied + " of " + outcomes.size() + " " + done + ".\n"
+                    + (outcomes.size() - applied) + " could not be changed (already handled, or the book is not available).");
         }
     }
 
     private void refreshReturnRequests(DefaultTableModel model) {
-        model.setRowCount(0);
-        for (BorrowRecord record : BookManager.getPendingReturnRequests()) {
-            Book book = BookManager.getBookById(record.getBookId());
-            if (book != null) {
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        UIUtils.inBackground(() -> LibraryService.get().getBorrowRecordViews(null, List.of("RETURN_PENDING")), views -> {
+            model.setRowCount(0);
+            for (BorrowRecordView view : views) {
                 model.addRow(new Object[]{
-                        record.getId(),
-                        record.getUserId(),
-                        book.getId(),
-                        book.getTitle(),
-                        record.getBorrowDate() != null ? record.getBorrowDate().format(formatter) : "",
-                        record.getDueDate() != null ? record.getDueDate().format(formatter) : ""
+                        view.getId(),
+                        view.getUserId(),
+                        view.getBookId(),
+                        view.getTitle(),
+                        view.getBorrowDate() != null ? view.getBorrowDate().format(formatter) : "",
+                        view.getDueDate() != null ? view.getDueDate().format(formatter) : ""
                 });
             }
-        }
+        });
     }
 
 
@@ -288,12 +337,9 @@ public class AdminDashboard extends JFrame {
         buttonPanel.add(deleteButton);
         buttonPanel.add(clearButton);
 
-        String[] columnNames = {"ID", "Title", "Author", "Genre", "Year", "Available", "Location"};
-        bookTableModel = new DefaultTableModel(columnNames, 0) {
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        bookTableModel = new BookTableModel(BookTableModel.Column.ID, BookTableModel.Column.TITLE,
+                BookTableModel.Column.AUTHOR, BookTableModel.Column.GENRE, BookTableModel.Column.YEAR,
+                BookTableModel.Column.AVAILABLE, BookTableModel.Column.LOCATION);
         bookTable = new JTable(bookTableModel);
         styleTable(bookTable);
         bookTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -312,7 +358,7 @@ public class AdminDashboard extends JFrame {
         panel.add(northPanel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
 
-        refreshBookTable();
+        updateDashboardStats();
         return panel;
     }
 
@@ -353,51 +399,29 @@ public class AdminDashboard extends JFrame {
         return panel;
     }
 
+    // The book table follows the catalog by itself; only the counters need refreshing
     private void refreshBookTable() {
-        bookTableModel.setRowCount(0);
-        for (Book book : BookManager.getAllBooks()) {
-            bookTableModel.addRow(new Object[]{
-                    book.getId(),
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getGenre(),
-                    book.getPublicationYear(),
-                    book.isAvailable() ? "Yes" : "No",
-                    book.getLibraryLocation()
-            });
-        }
         updateDashboardStats();
     }
 
     private void refreshBorrowRequests() {
-        borrowRequestsModel.setRowCount(0);
-        for (BorrowRecord record : BookManager.getPendingRequests()) {
-            Book book = BookManager.getBookById(record.getBookId());
-            if (book != null) {
-                borrowRequestsModel.addRow(new Object[]{
-                        record.getId(),
-                        record.getUserId(),
-                        book.getId(),
-                        book.getTitle(),
-                        record.getRequestDate(),
-                        record.getStatus()
-                });
-            }
-        }
+        refreshBorrowRequests(borrowRequestsModel);
         updateDashboardStats();
     }
 
     private void refreshUserTable() {
-        userTableModel.setRowCount(0);
-        for (User user : UserFileManager.loadUsers()) {
-            userTableModel.addRow(new Object[]{
-                    user.getUsername(),
-                    user.getFullName(),
-                    user.getContact(),
-                    user.getRole(),
-                    user.getMembershipId()
-            });
-        }
+        UIUtils.inBackground(() -> LibraryService.get().loadUsers(), users -> {
+            userTableModel.setRowCount(0);
+            for (User user : users) {
+                userTableModel.addRow(new Object[]{
+                        user.getUsername(),
+                        user.getFullName(),
+                        user.getContact(),
+                        user.getRole(),
+                        user.getMembershipId()
+                });
+            }
+        });
     }
 
    private void deleteUser() {
@@ -421,17 +445,27 @@ public class AdminDashboard extends JFrame {
             JOptionPane.YES_NO_OPTION);
 
     if (confirm == JOptionPane.YES_OPTION) {
-        UserFileManager.deleteUser(username);
-        JOptionPane.showMessageDialog(this, "User deleted successfully.");
-        refreshUserTable();
+        UIUtils.inBackground(() -> {
+            LibraryService.get().deleteUser(username);
+            return null;
+        }, done -> {
+            JOptionPane.showMessageDialog(this, "User deleted successfully.");
+            refreshUserTable();
+        });
     }
 }
 
     private void logoutAction(ActionEvent e) {
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to logout?", "Confirm Logout", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            dispose();
-            new LoginFrame().setVisible(true);
+            bookTableModel.detach();
+            UIUtils.inBackground(() -> {
+                LibraryService.get().logout();
+                return null;
+            }, done -> {
+                dispose();
+                new LoginFrame().setVisible(true);
+            });
         }
     }
 
@@ -445,42 +479,55 @@ public class AdminDashboard extends JFrame {
                     Integer.parseInt(yearField.getText()),
                     locationField.getText()
             );
-            BookManager.addBook(book);
-            JOptionPane.showMessageDialog(this, "Book added successfully!");
-            refreshBookTable();
-            clearFields();
+            UIUtils.inBackground(() -> {
+                LibraryService.get().addBook(book);
+                return null;
+            }, done -> {
+                JOptionPane.showMessageDialog(this, "Book added successfully!");
+                refreshBookTable();
+                clearFields();
+            });
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
         }
     }
 
+    // Deleting the old book is queued ahead of adding the edited one, so they still run in order
     private void editBook(ActionEvent e) {
-        int selectedRow = bookTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            BookManager.deleteBook((String) bookTableModel.getValueAt(selectedRow, 0));
+        Book selected = selectedBook();
+        if (selected != null) {
+            UIUtils.inBackground(() -> LibraryService.get().deleteBook(selected.getId()), deleted -> {});
             addBook(e);
         }
     }
 
     private void deleteBook(ActionEvent e) {
-        int selectedRow = bookTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            if (BookManager.deleteBook((String) bookTableModel.getValueAt(selectedRow, 0))) {
-                JOptionPane.showMessageDialog(this, "Book deleted.");
-                refreshBookTable();
-            }
+        Book selected = selectedBook();
+        if (selected != null) {
+            UIUtils.inBackground(() -> LibraryService.get().deleteBook(selected.getId()), deleted -> {
+                if (deleted) {
+                    JOptionPane.showMessageDialog(this, "Book deleted.");
+                    refreshBookTable();
+                }
+            });
         }
     }
 
+    // The selected book, or null when nothing is selected or its row is still loading
+    private Book selectedBook() {
+        int selectedRow = bookTable.getSelectedRow();
+        return selectedRow >= 0 ? bookTableModel.getBookAt(selectedRow) : null;
+    }
+
     private void populateFieldsFromSelectedBook() {
-        int row = bookTable.getSelectedRow();
-        if (row >= 0) {
-            idField.setText((String) bookTableModel.getValueAt(row, 0));
-            titleField.setText((String) bookTableModel.getValueAt(row, 1));
-            authorField.setText((String) bookTableModel.getValueAt(row, 2));
-            genreField.setText((String) bookTableModel.getValueAt(row, 3));
-            yearField.setText(String.valueOf(bookTableModel.getValueAt(row, 4)));
-            locationField.setText((String) bookTableModel.getValueAt(row, 6));
+        Book book = selectedBook();
+        if (book != null) {
+            idField.setText(book.getId());
+            titleField.setText(book.getTitle());
+            authorField.setText(book.getAuthor());
+            genreField.setText(book.getGenre());
+            yearField.setText(String.valueOf(book.getPublicationYear()));
+            locationField.setText(book.getLibraryLocation());
         }
     }
 
@@ -497,11 +544,13 @@ public class AdminDashboard extends JFrame {
         int selectedRow = borrowRequestsTable.getSelectedRow();
         if (selectedRow >= 0) {
             String requestId = (String) borrowRequestsModel.getValueAt(selectedRow, 0);
-            if (BookManager.approveBorrow(requestId)) {
-                JOptionPane.showMessageDialog(this, "Request approved successfully!");
-                refreshBorrowRequests();
-                refreshBookTable();
-            }
+            UIUtils.inBackground(() -> LibraryService.get().approveBorrow(requestId), approved -> {
+                if (approved) {
+                    JOptionPane.showMessageDialog(this, "Request approved successfully!");
+                    refreshBorrowRequests();
+                    refreshBookTable();
+                }
+            });
         } else {
             JOptionPane.showMessageDialog(this, "Please select a request to approve.");
         }
@@ -511,12 +560,14 @@ public class AdminDashboard extends JFrame {
         int selectedRow = borrowRequestsTable.getSelectedRow();
         if (selectedRow >= 0) {
             String requestId = (String) borrowRequestsModel.getValueAt(selectedRow, 0);
-            if (BookManager.updateRequestStatus(requestId, "REJECTED")) {
-                JOptionPane.showMessageDialog(this, "Request rejected.");
-                refreshBorrowRequests();
-                refreshBookTable();
-                updateDashboardStats();
-            }
+            UIUtils.inBackground(() -> LibraryService.get().rejectBorrow(requestId), rejected -> {
+                if (rejected) {
+                    JOptionPane.showMessageDialog(this, "Request rejected.");
+                    refreshBorrowRequests();
+                    refreshBookTable();
+                    updateDashboardStats();
+                }
+            });
         }
     }
 
@@ -553,57 +604,29 @@ public class AdminDashboard extends JFrame {
         table.setSelectionForeground(BG_WHITE);
     }
     private void updateDashboardStats() {
-        List<Book> books = BookManager.getAllBooks();
-        int totalBooks = books.size();
-        int availableBooks = (int) books.stream().filter(Book::isAvailable).count();
-        int pendingRequests = BookManager.getPendingRequests().size() +
-                BookManager.getPendingReturnRequests().size();
-
-        totalBooksLabel.setText(String.valueOf(totalBooks));
-        availableBooksLabel.setText(String.valueOf(availableBooks));
-        pendingRequestsLabel.setText(String.valueOf(pendingRequests));
-    }
-    private void approveBorrowRequest(JTable borrowRequestsTable) {
-        int selectedRow = borrowRequestsTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            DefaultTableModel model = (DefaultTableModel) borrowRequestsTable.getModel();
-            String requestId = (String) model.getValueAt(selectedRow, 0);
-            if (BookManager.approveBorrow(requestId)) {
-                JOptionPane.showMessageDialog(this, "Borrow request approved successfully!");
-                refreshBorrowRequests(model);
-                updateDashboardStats();
-            }
-        } else {
-            JOptionPane.showMessageDialog(this, "Please select a borrow request to approve.");
-        }
-    }
-    private void rejectBorrowRequest(JTable borrowRequestsTable) {
-        int selectedRow = borrowRequestsTable.getSelectedRow();
-        if (selectedRow >= 0) {
-            DefaultTableModel model = (DefaultTableModel) borrowRequestsTable.getModel();
-            String requestId = (String) model.getValueAt(selectedRow, 0);
-            if (BookManager.rejectBorrow(requestId)) {
-                JOptionPane.showMessageDialog(this, "Borrow request rejected.");
-                refreshBorrowRequests(model);
-                updateDashboardStats();
-            }
-        }
+        UIUtils.inBackground(() -> new int[] {
+                LibraryService.get().getBookCount(),
+                LibraryService.get().getAvailableBookCount(),
+                LibraryService.get().countBorrowRecords(null, List.of("PENDING", "RETURN_PENDING"))
+        }, stats -> {
+            totalBooksLabel.setText(String.valueOf(stats[0]));
+            availableBooksLabel.setText(String.valueOf(stats[1]));
+            pendingRequestsLabel.setText(String.valueOf(stats[2]));
+        });
     }
-
     private void refreshBorrowRequests(DefaultTableModel model) {
-        model.setRowCount(0);
-        for (BorrowRecord record : BookManager.getPendingRequests()) {
-            Book book = BookManager.getBookById(record.getBookId());
-            if (book != null) {
+        UIUtils.inBackground(() -> LibraryService.get().getBorrowRecordViews(null, List.of("PENDING")), views -> {
+            model.setRowCount(0);
+            for (BorrowRecordView view : views) {
                 model.addRow(new Object[]{
-                        record.getId(),
-                        record.getUserId(),
-                        book.getId(),
-                        book.getTitle(),
-                        record.getRequestDate(),
-                        record.getStatus()
+                        view.getId(),
+                        view.getUserId(),
+                        view.getBookId(),
+                        view.getTitle(),
+                        view.getRequestDate(),
+                        view.getStatus()
                 });
             }
-        }
+        });
     }
 }
@@ -1,16 +1,31 @@
-import java.io.Serializable;
+import java.io.*;
 
+// Author, genre and location repeat across a catalog (a few dozen genres and branches, authors
+// with many books), so a book keeps them as codes in the shared symbol tables below and the
+// getters turn them back into the strings.
 public class Book implements Serializable {
+    // Pinned to the value of the original class, so legacy books.dat files still deserialize
+    private static final long serialVersionUID = -2656879925221648815L;
+
+    public static final SymbolTable AUTHORS = new SymbolTable();
+    public static final SymbolTable GENRES = new SymbolTable();
+    public static final SymbolTable LOCATIONS = new SymbolTable();
+
     private String id;
     private String title;
-    private String author;
-    private String genre;
+    private int author;   // codes in the tables above (SymbolTable.NONE = null)
+    private int genre;
     private int publicationYear;
-    private boolean available;
-    private String libraryLocation;
+    private volatile boolean available; // flipped by borrow/return transitions, read without locks
+    private int libraryLocation;
 
     public Book(String id, String title, String author, String genre,
                 int publicationYear, String libraryLocation) {
+        this(id, title, AUTHORS.code(author), GENRES.code(genre), publicationYear, LOCATIONS.code(libraryLocation));
+    }
+
+    // Same, for values that are already codes (used when decoding)
+    Book(String id, String title, int author, int genre, int publicationYear, int libraryLocation) {
         this.id = id;
         this.title = title;
         this.author = author;
@@ -23,10 +38,51 @@ public class Book implements Serializable {
     // Getters and setters
     public String getId() { return id; }
     public String getTitle() { return title; }
-    public String getAuthor() { return author; }
-    public String getGenre() { return genre; }
+    public String getAuthor() { return AUTHORS.symbol(author); }
+    public String getGenre() { return GENRES.symbol(genre); }
     public int getPublicationYear() { return publicationYear; }
     public boolean isAvailable() { return available; }
-    public String getLibraryLocation() { return libraryLocation; }
+    public String getLibraryLocation() { return LOCATIONS.symbol(libraryLocation); }
     public void setAvailable(boolean available) { this.available = available; }
+
+    public int getAuthorCode() { return author; }
+    public int getGenreCode() { return genre; }
+    public int getLocationCode() { return libraryLocation; }
+
+    // ---------------------------------------------------------------- Java serialization
+
+    // Legacy books.dat files are serialized lists of the original class, which had the
+    // strings themselves, so that stays the serialized form
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("title", String.class),
+            new ObjectStreamField("author", String.class),
+            new ObjectStreamField("genre", String.class),
+            new ObjectStreamField("publicationYear", int.class),
+            new ObjectStreamField("available", boolean.class),
+            new ObjectStreamField("libraryLocation", String.class),
+    };
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("title", title);
+        fields.put("author", getAuthor());
+        fields.put("genre", getGenre());
+        fields.put("publicationYear", publicationYear);
+        fields.put("available", available);
+        fields.put("libraryLocation", getLibraryLocation());
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        title = (String) fields.get("title", null);
+        author = AUTHORS.code((String) fields.get("author", null));
+        genre = GENRES.code((String) fields.get("genre", null));
+        publicationYear = fields.get("publicationYear", 0);
+        available = fields.get("available", false);
+        libraryLocation = LOCATIONS.code((String) fields.get("libraryLocation", null));
+    }
 }
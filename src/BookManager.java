@@ -1,333 +1,906 @@
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class BookManager {
     private static final String BOOKS_FILE = "books.dat";
     private static final String BORROW_RECORDS_FILE = "borrow_records.dat";
-    private static final String LIBRARY_DATA_FILE = "LibraryData.txt";
+    private static final String JOURNAL_FILE = "library.journal";
+
+    private static final LibraryJournal journal = new LibraryJournal(JOURNAL_FILE);
+
+    // Locking: a borrow/return transition holds the catalog read lock plus the stripe lock
+    // of its book, so transitions on different books run in parallel while the
+    // check-then-act on one book (is it available? is the record still PENDING?) is atomic.
+    // Adding/deleting books and compaction take the write lock. The books list is a plain
+    // list, so its readers take the read lock; the other collections below are safe to read
+    // without locks while they are being changed. The columns, search index and list are
+    // replaced when loading finishes or the columns are compacted, hence volatile.
+    private static final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+    private static final Object[] bookLocks = new Object[64];
+
+    private static volatile List<Book> books = new ArrayList<>();
+    private static final Map<Object, BorrowRecord> borrowRecords = new ConcurrentHashMap<>(); // by BorrowRecord.key()
+    private static final Queue<BorrowRecord> borrowRecordsInOrder = new ConcurrentLinkedQueue<>(); // creation order
+
+    // Hash indexes kept in step with every mutation, so lookups don't scan the lists
+    private static final Map<String, Book> booksById = new ConcurrentHashMap<>();
+    // Rows in books by id, for the listeners. A delete moves every later row up one, so it
+    // only lowers rowsValidBelow; the next lookup past that renumbers the rest in one pass.
+    private static final Map<String, Integer> rowsById = new HashMap<>();
+    private static int rowsValidBelow; // both guarded by rowsById
+    private static final Map<String, List<BorrowRecord>> borrowRecordsByUser = new ConcurrentHashMap<>();
+    private static final Map<BorrowRecord.Status, Set<BorrowRecord>> borrowRecordsByStatus = new ConcurrentHashMap<>();
+    private static volatile ColumnarCatalog columns = new ColumnarCatalog(books); // counts, filters, scans
+    private static volatile BookSearchIndex searchIndex = new BookSearchIndex(columns);
+    private static volatile boolean snapshotsStale; // rebuilt at startup: write fresh snapshots at the next compaction
+
+    // Set while the collections above are being built in the background from library.snapshot.
+    // Until then getBookCount, getBookAt and getBookById answer from the mapped file through
+    // it, and everything else waits for the load to finish.
+    private static volatile SnapshotCatalog loading;
+    private static final CountDownLatch loaded = new CountDownLatch(1);
+
+    // Told about every catalog change, with the book's row in getAllBooks() order
+    public interface CatalogListener {
+        void bookAdded(int index, Book book);
+        void bookRemoved(int index, Book book);
+        void bookChanged(int index, Book book);
+
+        // The whole catalog may have changed (a remote catalog was re-read)
+        default void catalogReloaded() {}
+
+        // Rows a remote catalog had not fetched yet have arrived
+        default void rowsLoaded(int fromIndex, int toIndex) {}
+    }
 
-    private static List<Book> books = new ArrayList<>();
-    private static List<BorrowRecord> borrowRecords = new ArrayList<>();
+    private static final List<CatalogListener> catalogListeners = new CopyOnWriteArrayList<>();
 
     static {
+        for (int i = 0; i < bookLocks.length; i++) {
+            bookLocks[i] = new Object();
+        }
         loadData();
+        journal.startCompactor(BookManager::compact);
     }
 
     private static void appendReturnRequestToLibraryData(BorrowRecord record) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(LIBRARY_DATA_FILE, true))) {
-            String line = String.format("RETURN_REQUEST|%s|%s|%s",
-                    record.getUserId(), record.getBookId(), new Date().toString());
-            bw.write(line);
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        LibraryAuditLog.append("RETURN_REQUEST", record.getUserId(), record.getBookId());
     }
 
 
 
 
+    // ✅ Map library.snapshot and finish loading in the background if it is current; otherwise
+    // read the .dat snapshots and replay the journal before returning
     private static void loadData() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(BOOKS_FILE))) {
-            books = (List<Book>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            books = new ArrayList<>();
-        }
-
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(BORROW_RECORDS_FILE))) {
-            borrowRecords = (List<BorrowRecord>) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            borrowRecords = new ArrayList<>();
+        LibrarySnapshot snapshot = LibrarySnapshot.open();
+        if (snapshot != null && snapshot.matchesDatFiles()) {
+            SnapshotCatalog catalog = new SnapshotCatalog(snapshot);
+            journal.replay(catalog);
+            loading = catalog;
+            Thread loader = new Thread(() -> finishLoading(catalog), "library-loader");
+            loader.setDaemon(true);
+            loader.start();
+            return;
         }
+        loadDatFiles(journal::replay);
+        snapshotsStale = true; // so the next compaction writes library.snapshot
     }
 
-    private static void saveBooks() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(BOOKS_FILE))) {
-            oos.writeObject(books);
-        } catch (IOException e) {
+    // Runs on the loader thread: decode the rest of the snapshot and build the collections.
+    // Books and loans are separate sections, so they are decoded side by side.
+    private static void finishLoading(SnapshotCatalog catalog) {
+        try {
+            FutureTask<Collection<BorrowRecord>> records = inBackground("library-loader-records",
+                    SnapshotCatalog::borrowRecords, catalog);
+            List<Book> catalogBooks = catalog.books();
+            publish(catalogBooks, result(records));
+        } catch (IOException | RuntimeException e) {
+            // A damaged record in the mapped file: fall back to the .dat files
             e.printStackTrace();
+            loadDatFiles(catalog::replayJournal);
+            snapshotsStale = true;
+            for (CatalogListener listener : catalogListeners) {
+                listener.catalogReloaded();
+            }
+        } finally {
+            loading = null;
+            loaded.countDown();
         }
     }
 
-    private static void saveBorrowRecords() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(BORROW_RECORDS_FILE))) {
-            oos.writeObject(borrowRecords);
-        } catch (IOException e) {
-            e.printStackTrace();
+    // ✅ Block until the background load has published the collections (no-op once it has)
+    public static void awaitLoaded() {
+        if (loading == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                loaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    public static boolean requestReturn(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "APPROVED".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
-
-        if (record != null) {
-            record.requestReturn();
-            saveBorrowRecords();
-            appendReturnRequestToLibraryData(record);
-            return true;
-        }
-        return false;
+    private interface Work<A, T> {
+        T apply(A argument) throws IOException;
     }
 
-    public static boolean approveReturn(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "RETURN_PENDING".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
+    // ✅ Run work(argument) on its own daemon thread; result() waits for it where it is needed.
+    // loadData() runs inside BookManager's class initialization, which a lambda written here
+    // would wait for, so work is a method of another class and is called through this one.
+    private static final class Background<A, T> implements Callable<T> {
+        private final Work<A, T> work;
+        private final A argument;
 
-        if (record != null) {
-            Book book = getBookById(record.getBookId());
-            if (book != null) {
-                record.approveReturn();
-                book.setAvailable(true);
-                saveBooks();
-                saveBorrowRecords();
-                appendReturnToLibraryData(record);
-                return true;
-            }
+        Background(Work<A, T> work, A argument) {
+            this.work = work;
+            this.argument = argument;
         }
-        return false;
-    }
 
-    public static boolean rejectReturn(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "RETURN_PENDING".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
-
-        if (record != null) {
-            record.rejectReturn();
-            saveBorrowRecords();
-            return true;
+        public T call() throws IOException {
+            return work.apply(argument);
         }
-        return false;
     }
 
-    public static List<BorrowRecord> getPendingReturnRequests() {
-        return borrowRecords.stream()
-                .filter(r -> "RETURN_PENDING".equals(r.getStatus()))
-                .collect(Collectors.toList());
+    private static <A, T> FutureTask<T> inBackground(String name, Work<A, T> work, A argument) {
+        FutureTask<T> task = new FutureTask<>(new Background<>(work, argument));
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
     }
 
-    private static void appendBookToLibraryData(Book book) {
+    // Waits without giving up on interrupts (a half-built catalog is no use) and rethrows
+    // what the work threw
+    private static <T> T result(FutureTask<T> task) throws IOException {
+        boolean interrupted = false;
         try {
-            List<String> lines = new ArrayList<>();
-            File file = new File(LIBRARY_DATA_FILE);
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ✅ Load the .dat snapshots and replay the journal into plain collections, then publish them.
+    // borrow_records.dat is read on a second thread while books.dat is read on this one.
+    private static void loadDatFiles(Consumer<LibraryJournal.Handler> journalEntries) {
+        FutureTask<List<BorrowRecord>> recordsRead = inBackground("library-loader-records",
+                LibraryCodec::readBorrowRecords, BORROW_RECORDS_FILE);
+        List<Book> loadedBooks;
+        try {
+            loadedBooks = LibraryCodec.readBooks(BOOKS_FILE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            loadedBooks = null;
+        }
 
-            if (file.exists()) {
-                lines = new ArrayList<>(Files.readAllLines(file.toPath()));
+        Map<Object, BorrowRecord> loadedRecords = new LinkedHashMap<>(); // keeps creation order on replace
+        boolean recordsLoaded = true;
+        try {
+            for (BorrowRecord record : result(recordsRead)) {
+                loadedRecords.put(record.key(), record);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            loadedRecords.clear();
+            recordsLoaded = false;
+        }
 
-            String bookLine = String.format("BOOK|%s|%s|%s|available",
-                    book.getTitle(), book.getAuthor(), book.getId());
+        // An unreadable snapshot is rebuilt from LibraryData.txt and the event history
+        if (loadedBooks == null || !recordsLoaded) {
+            try {
+                LibraryReplay.Result rebuilt = LibraryReplay.rebuild(
+                        loadedBooks != null ? loadedBooks : new ArrayList<>(), Runtime.getRuntime().availableProcessors());
+                if (loadedBooks == null) {
+                    keepCorruptCopy(BOOKS_FILE);
+                    loadedBooks = rebuilt.books;
+                }
+                if (!recordsLoaded) {
+                    keepCorruptCopy(BORROW_RECORDS_FILE);
+                    for (BorrowRecord record : rebuilt.records) {
+                        loadedRecords.put(record.key(), record);
+                    }
+                }
+                snapshotsStale = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                if (loadedBooks == null) {
+                    loadedBooks = new ArrayList<>();
+                }
+            }
+        }
+
+        List<Book> catalog = loadedBooks;
+        Map<String, Book> byId = new HashMap<>();
+        for (Book book : catalog) {
+            byId.put(book.getId(), book);
+        }
 
-            int insertIndex = 0;
-            for (int i = 0; i < lines.size(); i++) {
-                if (lines.get(i).startsWith("BOOK|")) {
-                    insertIndex = i + 1;
+        // Replay mutations made since the last snapshot
+        journalEntries.accept(new LibraryJournal.Handler() {
+            public void putBook(Book book) {
+                Book existing = byId.put(book.getId(), book);
+                if (existing != null) {
+                    catalog.set(catalog.indexOf(existing), book);
+                } else {
+                    catalog.add(book);
                 }
             }
 
-            lines.add(insertIndex, bookLine);
+            public void deleteBook(String bookId) {
+                Book existing = byId.remove(bookId);
+                if (existing != null) {
+                    catalog.remove(existing);
+                }
+            }
 
-            int blankLineIndex = insertIndex + 1;
-            if (blankLineIndex >= lines.size() || !lines.get(blankLineIndex).isEmpty()) {
-                lines.add(blankLineIndex, "");
+            public void setAvailable(String bookId, boolean available) {
+                Book book = byId.get(bookId);
+                if (book != null) {
+                    book.setAvailable(available);
+                }
             }
 
-            Files.write(file.toPath(), lines);
+            public void putBorrowRecord(BorrowRecord record) {
+                loadedRecords.put(record.key(), record);
+            }
+        });
 
+        publish(catalog, loadedRecords.values());
+    }
+
+    // The columns and search index (the slowest part) are built on another thread while the maps fill
+    private static void publish(List<Book> catalog, Collection<BorrowRecord> records) {
+        List<Book> published = new ArrayList<>(catalog);
+        FutureTask<BookSearchIndex> index = inBackground("library-loader-search", BookSearchIndex::build, published);
+        books = published;
+        for (Book book : catalog) {
+            booksById.put(book.getId(), book);
+        }
+        synchronized (rowsById) {
+            rowsById.clear();
+            rowsValidBelow = 0; // numbered at the first lookup
+        }
+        for (BorrowRecord record : records) {
+            borrowRecords.put(record.key(), record);
+            borrowRecordsInOrder.add(record);
+        }
+        Map<String, List<BorrowRecord>> byUser = new HashMap<>();
+        for (BorrowRecord record : borrowRecordsInOrder) {
+            byUser.computeIfAbsent(record.getUserId(), k -> new ArrayList<>()).add(record);
+            statusIndex(record.getStatus()).add(record);
+        }
+        byUser.forEach((user, list) -> borrowRecordsByUser.put(user, new CopyOnWriteArrayList<>(list)));
+        try {
+            searchIndex = result(index);
+            columns = searchIndex.catalog();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalStateException(e); // building the index throws nothing checked
         }
     }
 
-    private static void appendBorrowToLibraryData(BorrowRecord record) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(LIBRARY_DATA_FILE, true))) {
-            String line = String.format("BORROW|%s|%s|%s",
-                    record.getUserId(), record.getBookId(), new Date().toString());
-            bw.write(line);
-            bw.newLine();
+    // ✅ Keep the unreadable file for inspection before the next compaction replaces it
+    private static void keepCorruptCopy(String fileName) {
+        try {
+            Path file = Paths.get(fileName);
+            if (Files.exists(file)) {
+                Files.copy(file, Paths.get(fileName + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private static void appendReturnToLibraryData(BorrowRecord record) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(LIBRARY_DATA_FILE, true))) {
-            String line = String.format("RETURN|%s|%s|%s",
-                    record.getUserId(), record.getBookId(), new Date().toString());
-            bw.write(line);
-            bw.newLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void indexBorrowRecord(BorrowRecord record) {
+        borrowRecords.put(record.key(), record);
+        borrowRecordsInOrder.add(record);
+        borrowRecordsByUser.computeIfAbsent(record.getUserId(), k -> new CopyOnWriteArrayList<>()).add(record);
+        statusIndex(record.getStatus()).add(record);
+    }
+
+    // Status sets keep creation order; readers copy them under the set's own monitor
+    private static Set<BorrowRecord> statusIndex(BorrowRecord.Status status) {
+        return borrowRecordsByStatus.computeIfAbsent(status, k -> Collections.synchronizedSet(new LinkedHashSet<>()));
+    }
+
+    private static Object lockFor(String bookId) {
+        return bookLocks[Math.floorMod(bookId.hashCode(), bookLocks.length)];
+    }
+
+    // ✅ Run a check-then-act on one book: shared catalog lock plus that book's stripe
+    private static boolean withBookLock(String bookId, BooleanSupplier action) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            synchronized (lockFor(bookId)) {
+                return action.getAsBoolean();
+            }
+        } finally {
+            catalogLock.readLock().unlock();
         }
     }
 
-    private static void removeBookFromLibraryData(String bookId) {
+    // ✅ Apply a transition to a borrow record, only if it is still in the expected status once locked
+    private static boolean withRecord(String borrowId, BorrowRecord.Status status, Predicate<BorrowRecord> action) {
+        awaitLoaded();
+        BorrowRecord record = borrowRecords.get(BorrowRecord.keyOf(borrowId));
+        if (record == null) {
+            return false;
+        }
+        return withBookLock(record.getBookId(), () -> record.getStatus() == status && action.test(record));
+    }
+
+    // ✅ Apply a transition to each record still in the expected status, all under the exclusive
+    // catalog lock so the batch is seen whole, and hand the files one write for the lot.
+    // Returns every borrow id with whether its transition was applied.
+    private static Map<String, Boolean> withRecords(Collection<String> borrowIds, BorrowRecord.Status status,
+                                                    Predicate<BorrowRecord> action) {
+        awaitLoaded();
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        catalogLock.writeLock().lock();
         try {
-            List<String> lines = new ArrayList<>();
-            try (BufferedReader reader = new BufferedReader(new FileReader(LIBRARY_DATA_FILE))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (!line.startsWith("BOOK|")) {
-                        lines.add(line);
-                        continue;
-                    }
-                    String[] parts = line.split("\\|");
-                    if (parts.length >= 4 && !parts[3].equals(bookId)) {
-                        lines.add(line);
+            PersistenceExecutor.batch(() -> {
+                for (String borrowId : borrowIds) {
+                    if (outcomes.containsKey(borrowId)) {
+                        continue; // listed twice: the first outcome stands
                     }
+                    BorrowRecord record = borrowRecords.get(BorrowRecord.keyOf(borrowId));
+                    outcomes.put(borrowId, record != null && record.getStatus() == status && action.test(record));
                 }
-            }
+            });
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        return outcomes;
+    }
+
+    // ✅ Move the record on (the callers have checked its status under the lock) and over to
+    // the matching status index
+    private static void transition(BorrowRecord record, BorrowRecord.Status next) {
+        statusIndex(record.getStatus()).remove(record);
+        record.moveTo(next);
+        statusIndex(record.getStatus()).add(record);
+    }
 
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(LIBRARY_DATA_FILE))) {
-                for (String updatedLine : lines) {
-                    writer.write(updatedLine);
-                    writer.newLine();
+    private static List<BorrowRecord> recordsWithStatus(BorrowRecord.Status status) {
+        awaitLoaded();
+        Set<BorrowRecord> records = borrowRecordsByStatus.get(status);
+        if (records == null) {
+            return new ArrayList<>();
+        }
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    // ✅ Fold the journal into fresh books.dat / borrow_records.dat snapshots (runs on the compactor thread)
+    private static void compact() {
+        awaitLoaded();
+        byte[] booksSnapshot;
+        byte[] borrowRecordsSnapshot;
+        try {
+            catalogLock.writeLock().lock();
+            try {
+                if (!journal.hasPendingEntries() && !snapshotsStale) {
+                    return;
                 }
+                snapshotsStale = false;
+                booksSnapshot = LibraryCodec.encodeBooks(books);
+                borrowRecordsSnapshot = LibraryCodec.encodeBorrowRecords(new ArrayList<>(borrowRecordsInOrder));
+                journal.rotate();
+            } finally {
+                catalogLock.writeLock().unlock();
             }
-
+            LibraryJournal.writeSnapshot(BOOKS_FILE, booksSnapshot);
+            LibraryJournal.writeSnapshot(BORROW_RECORDS_FILE, borrowRecordsSnapshot);
+            journal.discardRotated();
+            LibrarySnapshot.write(booksSnapshot, borrowRecordsSnapshot, UserDirectory.state());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    public static boolean requestReturn(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.APPROVED, record -> {
+            transition(record, BorrowRecord.Status.RETURN_PENDING);
+            journal.putBorrowRecord(record);
+            appendReturnRequestToLibraryData(record);
+            return true;
+        });
+    }
+
+    public static boolean approveReturn(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.RETURN_PENDING, BookManager::approveReturn);
+    }
+
+    public static boolean rejectReturn(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.RETURN_PENDING, BookManager::rejectReturn);
+    }
+
+    public static Map<String, Boolean> approveReturns(Collection<String> borrowIds) {
+        return withRecords(borrowIds, BorrowRecord.Status.RETURN_PENDING, BookManager::approveReturn);
+    }
+
+    public static Map<String, Boolean> rejectReturns(Collection<String> borrowIds) {
+        return withRecords(borrowIds, BorrowRecord.Status.RETURN_PENDING, BookManager::rejectReturn);
+    }
+
+    private static boolean approveReturn(BorrowRecord record) {
+        Book book = getBookById(record.getBookId());
+        if (book == null) {
+            return false;
+        }
+        transition(record, BorrowRecord.Status.RETURNED);
+        setAvailable(book, true);
+        journal.putBorrowRecord(record);
+        appendReturnToLibraryData(record);
+        return true;
+    }
+
+    private static boolean rejectReturn(BorrowRecord record) {
+        transition(record, BorrowRecord.Status.APPROVED);
+        journal.putBorrowRecord(record);
+        return true;
+    }
+
+    public static List<BorrowRecord> getPendingReturnRequests() {
+        return recordsWithStatus(BorrowRecord.Status.RETURN_PENDING);
+    }
+
+    private static void appendBookToLibraryData(Book book) {
+        LibraryDataFile.insertBook(String.format("BOOK|%s|%s|%s|available",
+                book.getTitle(), book.getAuthor(), book.getId()));
+    }
+
+    private static void appendBorrowToLibraryData(BorrowRecord record) {
+        LibraryAuditLog.append("BORROW", record.getUserId(), record.getBookId());
+    }
+
+    private static void appendReturnToLibraryData(BorrowRecord record) {
+        LibraryAuditLog.append("RETURN", record.getUserId(), record.getBookId());
+    }
+
+    private static void removeBookFromLibraryData(String bookId) {
+        LibraryDataFile.removeBook(bookId);
+    }
+
+    private static void setAvailable(Book book, boolean available) {
+        book.setAvailable(available);
+        columns.setAvailable(book.getId(), available);
+        journal.setAvailable(book.getId(), available);
+        if (!catalogListeners.isEmpty()) {
+            int index = rowOf(book);
+            for (CatalogListener listener : catalogListeners) {
+                listener.bookChanged(index, book);
+            }
+        }
+    }
+
+    // ✅ O(1) unless books were deleted since the last lookup; callers hold the catalog lock
+    private static int rowOf(Book book) {
+        synchronized (rowsById) {
+            Integer row = rowsById.get(book.getId());
+            if (row == null || row >= rowsValidBelow) {
+                for (int i = rowsValidBelow; i < books.size(); i++) {
+                    rowsById.put(books.get(i).getId(), i);
+                }
+                rowsValidBelow = books.size();
+                row = rowsById.get(book.getId());
+            }
+            return row;
+        }
+    }
+
     public static void addBook(Book book) {
-        books.add(book);
-        saveBooks();
-        appendBookToLibraryData(book);
+        awaitLoaded();
+        catalogLock.writeLock().lock();
+        try {
+            books.add(book);
+            booksById.put(book.getId(), book);
+            synchronized (rowsById) {
+                rowsById.put(book.getId(), books.size() - 1);
+                if (rowsValidBelow == books.size() - 1) {
+                    rowsValidBelow++;
+                }
+            }
+            searchIndex.add(columns.add(book));
+            journal.putBook(book);
+            appendBookToLibraryData(book);
+            for (CatalogListener listener : catalogListeners) {
+                listener.bookAdded(books.size() - 1, book);
+            }
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
     }
 
     public static boolean deleteBook(String bookId) {
-        boolean removed = books.removeIf(book -> book.getId().equals(bookId));
-        if (removed) {
-            saveBooks();
-            removeBookFromLibraryData(bookId);
+        awaitLoaded();
+        catalogLock.writeLock().lock();
+        try {
+            Book book = booksById.remove(bookId);
+            if (book != null) {
+                int index;
+                synchronized (rowsById) {
+                    Integer row = rowsById.remove(bookId);
+                    index = row != null && row < rowsValidBelow ? row : books.indexOf(book);
+                    rowsValidBelow = Math.min(rowsValidBelow, index);
+                }
+                books.remove(index);
+                columns.remove(bookId);
+                if (columns.compactIfSparse()) {
+                    searchIndex = new BookSearchIndex(columns); // the slots were renumbered
+                }
+                journal.deleteBook(bookId);
+                removeBookFromLibraryData(bookId);
+                for (CatalogListener listener : catalogListeners) {
+                    listener.bookRemoved(index, book);
+                }
+            }
+            return book != null;
+        } finally {
+            catalogLock.writeLock().unlock();
         }
-        return removed;
     }
 
     public static String requestBorrow(String bookId, String userId) {
-        Book book = getBookById(bookId);
+        String[] borrowId = new String[1];
+        withBookLock(bookId, () -> {
+            Book book = getBookById(bookId);
+            if (book == null || !book.isAvailable()) {
+                return false;
+            }
+            BorrowRecord record = new BorrowRecord(bookId, userId);
+            record.setId(UUID.randomUUID().toString());
+            indexBorrowRecord(record);
+            journal.putBorrowRecord(record);
+            borrowId[0] = record.getId();
+            return true;
+        });
+        return borrowId[0];
+    }
+
+    public static boolean approveBorrow(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.PENDING, BookManager::approveBorrow);
+    }
+
+    public static boolean rejectBorrow(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.PENDING, BookManager::rejectBorrow);
+    }
+
+    public static Map<String, Boolean> approveBorrows(Collection<String> borrowIds) {
+        return withRecords(borrowIds, BorrowRecord.Status.PENDING, BookManager::approveBorrow);
+    }
+
+    public static Map<String, Boolean> rejectBorrows(Collection<String> borrowIds) {
+        return withRecords(borrowIds, BorrowRecord.Status.PENDING, BookManager::rejectBorrow);
+    }
+
+    private static boolean approveBorrow(BorrowRecord record) {
+        Book book = getBookById(record.getBookId());
         if (book == null || !book.isAvailable()) {
-            return null;
+            return false;
         }
-
-        BorrowRecord record = new BorrowRecord(bookId, userId);
-        record.setId(UUID.randomUUID().toString());
-        borrowRecords.add(record);
-        saveBorrowRecords();
-        return record.getId();
+        transition(record, BorrowRecord.Status.APPROVED);
+        setAvailable(book, false);
+        journal.putBorrowRecord(record);
+        appendBorrowToLibraryData(record);
+        return true;
     }
 
-    public static boolean approveBorrow(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "PENDING".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
+    private static boolean rejectBorrow(BorrowRecord record) {
+        transition(record, BorrowRecord.Status.REJECTED);
+        journal.putBorrowRecord(record);
+        return true;
+    }
 
-        if (record != null) {
+    public static boolean returnBook(String borrowId) {
+        return withRecord(borrowId, BorrowRecord.Status.APPROVED, record -> {
             Book book = getBookById(record.getBookId());
-            if (book != null && book.isAvailable()) {
-                record.approve();
-                book.setAvailable(false);
-                saveBooks();
-                saveBorrowRecords();
-                appendBorrowToLibraryData(record);
-                return true;
+            if (book == null) {
+                return false;
             }
+            transition(record, BorrowRecord.Status.RETURNED);
+            setAvailable(book, true);
+            journal.putBorrowRecord(record);
+            appendReturnToLibraryData(record);
+            return true;
+        });
+    }
+
+    public static List<Book> getAllBooks() {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            return new ArrayList<>(books);
+        } finally {
+            catalogLock.readLock().unlock();
         }
-        return false;
     }
 
-    public static boolean rejectBorrow(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "PENDING".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
-
-        if (record != null) {
-            record.reject();
-            saveBorrowRecords();
-            return true;
+    public static void addCatalogListener(CatalogListener listener) {
+        catalogListeners.add(listener);
+    }
+
+    public static void removeCatalogListener(CatalogListener listener) {
+        catalogListeners.remove(listener);
+    }
+
+    // ✅ Row access for table models, without copying the catalog
+    public static int getBookCount() {
+        SnapshotCatalog catalog = loading;
+        if (catalog != null) {
+            return catalog.getBookCount();
+        }
+        catalogLock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            catalogLock.readLock().unlock();
         }
-        return false;
     }
 
-    public static boolean returnBook(String borrowId) {
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> r.getId().equals(borrowId) && "APPROVED".equals(r.getStatus()))
-                .findFirst()
-                .orElse(null);
+    public static Book getBookAt(int index) {
+        SnapshotCatalog catalog = loading;
+        if (catalog != null) {
+            return catalog.getBookAt(index);
+        }
+        catalogLock.readLock().lock();
+        try {
+            return index >= 0 && index < books.size() ? books.get(index) : null; // null: removed since the caller read the count
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
 
-        if (record != null) {
-            Book book = getBookById(record.getBookId());
-            if (book != null) {
-                record.markReturned();
-                book.setAvailable(true);
-                saveBooks();
-                saveBorrowRecords();
-                appendReturnToLibraryData(record);
-                return true;
-            }
+    // Counts come from the columns, under the read lock like queries
+    public static int getAvailableBookCount() {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            return columns.countAvailable();
+        } finally {
+            catalogLock.readLock().unlock();
         }
-        return false;
     }
 
-    public static List<Book> getAllBooks() {
-        return new ArrayList<>(books);
+    // ✅ Books in a genre and at a location (null = any), through the planner like every
+    // other filter and search below
+    public static List<Book> getBooksByGenreAndLocation(String genre, String location) {
+        BookQuery query = new BookQuery();
+        if (genre != null) query.genre(genre);
+        if (location != null) query.location(location);
+        return query(query);
+    }
+
+    public static List<Book> getBooksPublishedBetween(int fromYear, int toYear) {
+        return query(new BookQuery().publishedBetween(fromYear, toYear));
+    }
+
+    // ✅ Planned and run under one read lock, so the plan's statistics still hold when it runs
+    public static List<Book> query(BookQuery query) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            QueryPlanner planner = new QueryPlanner(columns, searchIndex);
+            return planner.run(planner.plan(query));
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    // ✅ Text and facets in one planned pass, the first page handed over as soon as it is
+    // found (see LibraryService.search)
+    public static List<Book> search(String text, CatalogFacets.Selection selection, int firstPageSize,
+            Consumer<List<Book>> firstPage) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            QueryPlanner planner = new QueryPlanner(columns, searchIndex);
+            return planner.run(planner.plan(new BookQuery().text(text).within(selection)), firstPageSize, firstPage);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    public static QueryPlanner.Plan explain(BookQuery query) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            return new QueryPlanner(columns, searchIndex).plan(query);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    // ✅ Faceted browsing: the selection is answered from the facet bitmaps, in catalog order
+    public static List<Book> browse(CatalogFacets.Selection selection, int limit) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            return columns.books(columns.facets().select(selection), limit);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    public static List<Book> browse(CatalogFacets.Selection selection) {
+        return browse(selection, Integer.MAX_VALUE);
+    }
+
+    public static CatalogFacets.Counts getFacetCounts(CatalogFacets.Selection selection) {
+        awaitLoaded();
+        catalogLock.readLock().lock();
+        try {
+            return columns.facets().counts(selection);
+        } finally {
+            catalogLock.readLock().unlock();
+        }
     }
 
     public static Book getBookById(String bookId) {
-        return books.stream()
-                .filter(book -> book.getId().equals(bookId))
-                .findFirst()
-                .orElse(null);
+        SnapshotCatalog catalog = loading;
+        return catalog != null ? catalog.getBookById(bookId) : booksById.get(bookId);
     }
 
     public static List<Book> searchByTitle(String title) {
-        return books.stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()))
-                .collect(Collectors.toList());
+        return query(new BookQuery().title(title));
     }
 
     public static List<Book> searchByAuthor(String author) {
-        return books.stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .collect(Collectors.toList());
+        return query(new BookQuery().author(author));
     }
 
     public static List<Book> searchByTitleOrAuthor(String query) {
-        String lowerQuery = query.toLowerCase();
-        return books.stream()
-                .filter(book -> book.getTitle().toLowerCase().contains(lowerQuery)
-                        || book.getAuthor().toLowerCase().contains(lowerQuery))
-                .collect(Collectors.toList());
+        return searchByTitleOrAuthor(query, Integer.MAX_VALUE);
+    }
+
+    public static List<Book> searchByTitleOrAuthor(String query, int limit) {
+        return query(new BookQuery().text(query).limit(limit));
+    }
+
+    public static BorrowRecord getBorrowRecord(String borrowId) {
+        awaitLoaded();
+        return borrowRecords.get(BorrowRecord.keyOf(borrowId));
     }
 
     public static List<BorrowRecord> getPendingRequests() {
-        return borrowRecords.stream()
-                .filter(r -> "PENDING".equals(r.getStatus()))
-                .collect(Collectors.toList());
+        return recordsWithStatus(BorrowRecord.Status.PENDING);
     }
 
     public static List<BorrowRecord> getUserBorrowedBooks(String userId) {
-        return borrowRecords.stream()
-                .filter(r -> r.getUserId().equals(userId)
-                        && ("APPROVED".equals(r.getStatus()) || "PENDING".equals(r.getStatus())))
+        return getBorrowHistory(userId).stream()
+                .filter(r -> r.getStatus() == BorrowRecord.Status.APPROVED || r.getStatus() == BorrowRecord.Status.PENDING)
                 .collect(Collectors.toList());
     }
 
     public static List<BorrowRecord> getBorrowHistory(String userId) {
-        return borrowRecords.stream()
-                .filter(r -> r.getUserId().equals(userId))
-                .collect(Collectors.toList());
+        awaitLoaded();
+        List<BorrowRecord> records = borrowRecordsByUser.get(userId);
+        return records != null ? new ArrayList<>(records) : new ArrayList<>();
+    }
+
+    // ✅ Borrow records joined with their books in one pass over the narrowest index.
+    // userId and statuses are optional filters (null = any); records whose book has been
+    // deleted are left out, and offset/limit count only the rows that are returned.
+    public static List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses,
+                                                              int offset, int limit) {
+        awaitLoaded();
+        Set<BorrowRecord.Status> wanted = statusSet(statuses);
+        Collection<BorrowRecord> source;
+        if (userId != null) {
+            source = borrowRecordsByUser.getOrDefault(userId, Collections.emptyList());
+        } else if (wanted != null && wanted.size() == 1) {
+            source = recordsWithStatus(wanted.iterator().next());
+        } else {
+            source = borrowRecordsInOrder;
+        }
+
+        List<BorrowRecordView> views = new ArrayList<>();
+        int skipped = 0;
+        for (BorrowRecord record : source) {
+            if (views.size() >= limit) {
+                break;
+            }
+            if (wanted != null && !wanted.contains(record.getStatus())) {
+                continue;
+            }
+            Book book = booksById.get(record.getBookId());
+            if (book == null) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            views.add(new BorrowRecordView(record, book));
+        }
+        return views;
+    }
+
+    public static List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses) {
+        return getBorrowRecordViews(userId, statuses, 0, Integer.MAX_VALUE);
+    }
+
+    // ✅ How many rows getBorrowRecordViews would return, without building them; a status
+    // filter with no user is counted straight off the status index
+    public static int countBorrowRecords(String userId, Collection<String> statuses) {
+        awaitLoaded();
+        Set<BorrowRecord.Status> wanted = statusSet(statuses);
+        int count = 0;
+        if (userId == null && wanted != null) {
+            for (BorrowRecord.Status status : wanted) {
+                Set<BorrowRecord> records = borrowRecordsByStatus.get(status);
+                if (records == null) {
+                    continue;
+                }
+                synchronized (records) {
+                    for (BorrowRecord record : records) {
+                        if (booksById.containsKey(record.getBookId())) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+        Collection<BorrowRecord> source = userId != null
+                ? borrowRecordsByUser.getOrDefault(userId, Collections.emptyList())
+                : borrowRecordsInOrder;
+        for (BorrowRecord record : source) {
+            if ((wanted == null || wanted.contains(record.getStatus())) && booksById.containsKey(record.getBookId())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // null = any status
+    private static Set<BorrowRecord.Status> statusSet(Collection<String> statuses) {
+        if (statuses == null) {
+            return null;
+        }
+        Set<BorrowRecord.Status> wanted = EnumSet.noneOf(BorrowRecord.Status.class);
+        for (BorrowRecord.Status status : BorrowRecord.Status.values()) {
+            if (statuses.contains(status.name())) {
+                wanted.add(status);
+            }
+        }
+        return wanted;
     }
 
     public static boolean updateRequestStatus(String requestId, String string) {
@@ -0,0 +1,134 @@
+import java.util.Comparator;
+import java.util.StringJoiner;
+
+// A catalog query: any mix of the conditions below, all of which a book must meet, plus an
+// order and a limit. Unset conditions match every book. Built by chaining:
+//
+//   new BookQuery().genre("Programming").location("North").publishedBetween(2011, Integer.MAX_VALUE)
+//           .availableOnly().sortBy(BookQuery.Sort.NEWEST).limit(20)
+//
+// BookManager.query() runs it through QueryPlanner, and BookManager.explain() shows the plan.
+public class BookQuery {
+    public enum Sort {
+        CATALOG(null),
+        TITLE(Comparator.comparing(Book::getTitle, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))),
+        AUTHOR(Comparator.comparing(Book::getAuthor, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))),
+        OLDEST(Comparator.comparingInt(Book::getPublicationYear)),
+        NEWEST(Comparator.comparingInt(Book::getPublicationYear).reversed());
+
+        final Comparator<Book> order; // null: catalog order, which the planner produces anyway
+
+        Sort(Comparator<Book> order) {
+            this.order = order;
+        }
+    }
+
+    String text;      // title or author contains, ignoring case
+    String title;     // title contains, ignoring case
+    String author;    // author contains, ignoring case
+    String genre;
+    String location;
+    boolean anyGenre = true;    // genre(null) asks for books with no genre
+    boolean anyLocation = true;
+    int fromYear = Integer.MIN_VALUE;
+    int toYear = Integer.MAX_VALUE;
+    boolean availableOnly;
+    CatalogFacets.Selection selection; // null: no facet selection
+    Sort sort = Sort.CATALOG;
+    int limit = Integer.MAX_VALUE;
+
+    public BookQuery text(String text) {
+        this.text = blankToNull(text);
+        return this;
+    }
+
+    public BookQuery title(String title) {
+        this.title = blankToNull(title);
+        return this;
+    }
+
+    public BookQuery author(String author) {
+        this.author = blankToNull(author);
+        return this;
+    }
+
+    public BookQuery genre(String genre) {
+        this.genre = genre;
+        this.anyGenre = false;
+        return this;
+    }
+
+    public BookQuery location(String location) {
+        this.location = location;
+        this.anyLocation = false;
+        return this;
+    }
+
+    // Both ends inclusive
+    public BookQuery publishedBetween(int fromYear, int toYear) {
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        return this;
+    }
+
+    public BookQuery availableOnly() {
+        this.availableOnly = true;
+        return this;
+    }
+
+    // The sidebar's facets: any of several genres / locations, answered from the facet bitmaps
+    public BookQuery within(CatalogFacets.Selection selection) {
+        this.selection = selection == null || selection.selectsAll() ? null : selection;
+        return this;
+    }
+
+    public BookQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public BookQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    boolean hasYearRange() {
+        return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+    }
+
+    // An empty contains condition matches every book, as the search methods always have
+    private static String blankToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        if (text != null) out.append(" text~\"").append(text).append('"');
+        if (title != null) out.append(" title~\"").append(title).append('"');
+        if (author != null) out.append(" author~\"").append(author).append('"');
+        if (!anyGenre) out.append(" genre=").append(quoted(genre));
+        if (!anyLocation) out.append(" location=").append(quoted(location));
+        if (fromYear != Integer.MIN_VALUE) out.append(" year>=").append(fromYear);
+        if (toYear != Integer.MAX_VALUE) out.append(" year<=").append(toYear);
+        if (availableOnly) out.append(" available");
+        if (selection != null) out.append(" within ").append(describe(selection));
+        if (sort != Sort.CATALOG) out.append(" sort=").append(sort.name().toLowerCase());
+        if (limit != Integer.MAX_VALUE) out.append(" limit=").append(limit);
+        return out.length() == 0 ? "all books" : out.substring(1);
+    }
+
+    static String describe(CatalogFacets.Selection selection) {
+        StringJoiner facets = new StringJoiner(", ", "[", "]");
+        if (!selection.genres.isEmpty()) facets.add("genre in " + selection.genres);
+        if (!selection.locations.isEmpty()) facets.add("location in " + selection.locations);
+        if (selection.fromYear != Integer.MIN_VALUE) facets.add("year>=" + selection.fromYear);
+        if (selection.toYear != Integer.MAX_VALUE) facets.add("year<=" + selection.toYear);
+        if (selection.availableOnly) facets.add("available");
+        return facets.toString();
+    }
+
+    static String quoted(String value) {
+        return value == null ? "null" : '"' + value + '"';
+    }
+}
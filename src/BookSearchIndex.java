@@ -0,0 +1,158 @@
+import java.util.*;
+
+// Trigram inverted index over the lower-cased title and author of every book in a
+// ColumnarCatalog, by catalog slot, so results come back in catalog order. A substring
+// query's candidates are the intersection of the posting lists of its trigrams; QueryPlanner
+// confirms each against the catalog's text, so results match the plain scan.
+//
+// Posting lists keep deleted slots (the catalog says they no longer match); when the
+// catalog renumbers its slots the index is built again.
+public class BookSearchIndex {
+    private final ColumnarCatalog catalog;
+    private final Map<Long, PostingList> titlePostings = new HashMap<>();
+    private final Map<Long, PostingList> authorPostings = new HashMap<>();
+
+    public BookSearchIndex(ColumnarCatalog catalog) {
+        this.catalog = catalog;
+        for (int slot = 0; slot < catalog.slotCount(); slot++) {
+            if (catalog.book(slot) != null) {
+                add(slot);
+            }
+        }
+    }
+
+    // ✅ Columns for the books and the index over them, built together (off the caller's thread
+    // while loading)
+    public static BookSearchIndex build(List<Book> books) {
+        return new BookSearchIndex(new ColumnarCatalog(books));
+    }
+
+    public ColumnarCatalog catalog() {
+        return catalog;
+    }
+
+    // ✅ Index a slot the catalog has just filled
+    public void add(int slot) {
+        index(titlePostings, slot, catalog.text(slot, true));
+        index(authorPostings, slot, catalog.text(slot, false));
+    }
+
+    // ✅ For the planner: at most how many slots candidateSlots() returns (the shortest posting
+    // list among the needle's trigrams, per field), or -1 when the needle is too short to look up
+    public int estimate(String query, boolean title, boolean author) {
+        String needle = ColumnarCatalog.normalize(query);
+        if (needle.length() < 3) {
+            return -1;
+        }
+        return (title ? shortestList(titlePostings, needle) : 0) + (author ? shortestList(authorPostings, needle) : 0);
+    }
+
+    // ✅ The slots whose title or author (as asked) has every trigram of the needle, ascending.
+    // Some may not contain the needle itself, or be deleted; the caller confirms each against
+    // the catalog. Needles under three characters are the caller's to scan for.
+    public int[] candidateSlots(String query, boolean title, boolean author) {
+        String needle = ColumnarCatalog.normalize(query);
+        if (needle.length() < 3) {
+            throw new IllegalArgumentException("Needle too short for trigrams: " + query);
+        }
+        int[] candidates = title ? candidates(titlePostings, needle) : new int[0];
+        if (author) {
+            candidates = union(candidates, candidates(authorPostings, needle));
+        }
+        return candidates;
+    }
+
+    private int shortestList(Map<Long, PostingList> postings, String needle) {
+        int shortest = Integer.MAX_VALUE;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            PostingList list = postings.get(trigram(needle, i));
+            if (list == null) {
+                return 0;
+            }
+            shortest = Math.min(shortest, list.size);
+        }
+        return shortest;
+    }
+
+    // ✅ Intersect the posting lists of every trigram in the needle, shortest list first
+    private int[] candidates(Map<Long, PostingList> postings, String needle) {
+        List<PostingList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            PostingList list = postings.get(trigram(needle, i));
+            if (list == null) {
+                return new int[0];
+            }
+            if (!lists.contains(list)) {
+                lists.add(list);
+            }
+        }
+        lists.sort(Comparator.comparingInt(l -> l.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).slots, lists.get(0).size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            resultSize = intersect(result, resultSize, lists.get(l));
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    // Intersects result[0..size) with the posting list in place and returns the new size
+    private static int intersect(int[] result, int size, PostingList list) {
+        int out = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < list.size; i++) {
+            int slot = result[i];
+            while (j < list.size && list.slots[j] < slot) {
+                j++;
+            }
+            if (j < list.size && list.slots[j] == slot) {
+                result[out++] = slot;
+            }
+        }
+        return out;
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++];
+                j++;
+            }
+            merged[n++] = next;
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    private void index(Map<Long, PostingList> postings, int slot, String value) {
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            PostingList list = postings.computeIfAbsent(trigram(value, i), k -> new PostingList());
+            // Repeated trigrams within one value only need one entry
+            if (list.size == 0 || list.slots[list.size - 1] != slot) {
+                list.add(slot);
+            }
+        }
+    }
+
+    private static long trigram(String value, int i) {
+        return ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+    }
+
+    private static class PostingList {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+// Table model that reads rows straight from the catalog instead of copying it.
+// JTable only asks for the rows it paints, so a large catalog costs nothing up front, and
+// catalog changes arrive as single-row insert/update/delete events.
+//
+// It can also show a fixed list of books (search results); those rows still follow
+// availability changes and deletions.
+//
+// A remote catalog may not have a row yet (see RemoteLibraryService.getBookAt); the row
+// shows as loading and is repainted when its page arrives.
+public class BookTableModel extends AbstractTableModel implements BookManager.CatalogListener {
+    public enum Column {
+        ID("ID", Book::getId),
+        TITLE("Title", Book::getTitle),
+        AUTHOR("Author", Book::getAuthor),
+        GENRE("Genre", Book::getGenre),
+        YEAR("Year", Book::getPublicationYear),
+        AVAILABLE("Available", book -> book.isAvailable() ? "Yes" : "No"),
+        LOCATION("Location", Book::getLibraryLocation);
+
+        private final String header;
+        private final Function<Book, Object> value;
+
+        Column(String header, Function<Book, Object> value) {
+            this.header = header;
+            this.value = value;
+        }
+    }
+
+    private static final String LOADING = "Loading...";
+
+    private final Column[] columns;
+    private List<Book> results; // null while the whole catalog is shown
+    private int catalogRows;    // row count as of the last event this model has fired
+
+    public BookTableModel(Column... columns) {
+        this.columns = columns;
+        this.catalogRows = LibraryService.get().getBookCount();
+        LibraryService.get().addCatalogListener(this);
+    }
+
+    // ✅ Stop following the catalog (call when the owning window goes away)
+    public void detach() {
+        LibraryService.get().removeCatalogListener(this);
+    }
+
+    public void showCatalog() {
+        results = null;
+        catalogRows = LibraryService.get().getBookCount();
+        fireTableDataChanged();
+    }
+
+    public void showResults(List<Book> books) {
+        results = new ArrayList<>(books);
+        fireTableDataChanged();
+    }
+
+    // null while a remote row is still loading
+    public Book getBookAt(int row) {
+        if (results != null) {
+            return row < results.size() ? results.get(row) : null;
+        }
+        return LibraryService.get().getBookAt(row);
+    }
+
+    @Override
+    public int getRowCount() {
+        return results != null ? results.size() : catalogRows;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].header;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Book book = getBookAt(row);
+        if (book == null) {
+            return column == 0 ? LOADING : null;
+        }
+        return columns[column].value.apply(book);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public void bookAdded(int index, Book book) {
+        onEventThread(() -> {
+            catalogRows++;
+            if (results == null) {
+                fireTableRowsInserted(index, index);
+            }
+        });
+    }
+
+    @Override
+    public void bookRemoved(int index, Book book) {
+        onEventThread(() -> {
+            catalogRows--;
+            if (results == null) {
+                fireTableRowsDeleted(index, index);
+                return;
+            }
+            int row = resultRow(book);
+            if (row >= 0) {
+                results.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void bookChanged(int index, Book book) {
+        onEventThread(() -> {
+            int row = results == null ? index : resultRow(book);
+            if (row >= 0) {
+                if (results != null) {
+                    results.set(row, book); // a remote catalog sends a fresh copy
+                }
+                fireTableRowsUpdated(row, row);
+            }
+        });
+    }
+
+    @Override
+    public void catalogReloaded() {
+        onEventThread(() -> {
+            catalogRows = LibraryService.get().getBookCount();
+            fireTableDataChanged();
+        });
+    }
+
+    @Override
+    public void rowsLoaded(int fromIndex, int toIndex) {
+        onEventThread(() -> {
+            if (results == null && fromIndex < catalogRows) {
+                fireTableRowsUpdated(fromIndex, Math.min(toIndex, catalogRows - 1));
+            }
+        });
+    }
+
+    private int resultRow(Book book) {
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).getId().equals(book.getId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void onEventThread(Runnable update) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            update.run();
+        } else {
+            SwingUtilities.invokeLater(update);
+        }
+    }
+}
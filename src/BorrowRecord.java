@@ -1,59 +1,205 @@
-import java.io.Serializable;
+import java.io.*;
 import java.time.LocalDate;
+import java.util.UUID;
 
+// One loan, kept small because a library holds millions of them: the status is an enum,
+// dates are epoch days (NO_DATE when unset) and the id, a UUID everywhere this project
+// makes one, is its two longs. An id in any other form is kept as it was given.
+//
+// A loan moves through its statuses with moveTo(); Status.allows() says which moves exist.
 public class BorrowRecord implements Serializable {
-    private String id;
+    private static final long serialVersionUID = 3448151837713458350L;
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    static final int LOAN_DAYS = 14;
+
+    // Declaration order is the status code in the data files, so only append to it
+    public enum Status {
+        PENDING, APPROVED, REJECTED, RETURN_PENDING, RETURNED;
+
+        // ✅ The loan lifecycle: requested, then approved or rejected; an approved loan is
+        // returned directly or through a return request, which the librarian can turn down
+        public boolean allows(Status next) {
+            switch (this) {
+                case PENDING:
+                    return next == APPROVED || next == REJECTED;
+                case APPROVED:
+                    return next == RETURN_PENDING || next == RETURNED;
+                case RETURN_PENDING:
+                    return next == RETURNED || next == APPROVED;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    private long idHigh;
+    private long idLow;
+    private String otherId; // the id when it isn't a UUID (then idHigh/idLow are unused)
     private String bookId;
     private String userId;
-    private LocalDate requestDate;
-    private LocalDate borrowDate;
-    private LocalDate dueDate;
-    private LocalDate returnDate;
-    private String status; // "PENDING", "APPROVED", "REJECTED", "RETURNED"
+    private int requestDay;
+    private int borrowDay;
+    private int dueDay;
+    private int returnDay;
+    private volatile Status status; // written last in each move
 
     public BorrowRecord(String bookId, String userId) {
         this.bookId = bookId;
         this.userId = userId;
-        this.requestDate = LocalDate.now();
-        this.status = "PENDING";
+        this.requestDay = today();
+        this.borrowDay = NO_DATE;
+        this.dueDay = NO_DATE;
+        this.returnDay = NO_DATE;
+        this.status = Status.PENDING;
+    }
+
+    // Restores a record exactly as it was persisted (used when loading and replaying)
+    BorrowRecord(String id, String bookId, String userId, int requestDay, int borrowDay, int dueDay,
+                 int returnDay, Status status) {
+        setId(id);
+        this.bookId = bookId;
+        this.userId = userId;
+        this.requestDay = requestDay;
+        this.borrowDay = borrowDay;
+        this.dueDay = dueDay;
+        this.returnDay = returnDay;
+        this.status = status;
+    }
+
+    // Same, for an id that is already a UUID's two halves
+    BorrowRecord(long idHigh, long idLow, String bookId, String userId, int requestDay, int borrowDay, int dueDay,
+                 int returnDay, Status status) {
+        this(null, bookId, userId, requestDay, borrowDay, dueDay, returnDay, status);
+        this.idHigh = idHigh;
+        this.idLow = idLow;
     }
 
     // Getters and setters
-    public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
+    public String getId() {
+        if (otherId != null || (idHigh == 0 && idLow == 0)) {
+            return otherId;
+        }
+        return new UUID(idHigh, idLow).toString();
+    }
+
+    public void setId(String id) {
+        UUID uuid = parseUuid(id);
+        idHigh = uuid != null ? uuid.getMostSignificantBits() : 0;
+        idLow = uuid != null ? uuid.getLeastSignificantBits() : 0;
+        otherId = uuid != null ? null : id;
+    }
+
     public String getBookId() { return bookId; }
     public String getUserId() { return userId; }
-    public LocalDate getRequestDate() { return requestDate; }
-    public LocalDate getBorrowDate() { return borrowDate; }
-    public LocalDate getDueDate() { return dueDate; }
-    public LocalDate getReturnDate() { return returnDate; }
-    public String getStatus() { return status; }
+    public LocalDate getRequestDate() { return date(requestDay); }
+    public LocalDate getBorrowDate() { return date(borrowDay); }
+    public LocalDate getDueDate() { return date(dueDay); }
+    public LocalDate getReturnDate() { return date(returnDay); }
+    public int getRequestDay() { return requestDay; }
+    public int getBorrowDay() { return borrowDay; }
+    public int getDueDay() { return dueDay; }
+    public int getReturnDay() { return returnDay; }
+    public Status getStatus() { return status; }
 
-    public void approve() {
-        this.status = "APPROVED";
-        this.borrowDate = LocalDate.now();
-        this.dueDate = LocalDate.now().plusWeeks(2);
+    // ✅ Move the loan on if its status allows it, stamping the dates the move sets: approval
+    // starts a two-week loan, a return records the day. False (nothing changed) otherwise.
+    public boolean moveTo(Status next) {
+        Status current = status;
+        if (!current.allows(next)) {
+            return false;
+        }
+        if (current == Status.PENDING && next == Status.APPROVED) {
+            borrowDay = today();
+            dueDay = borrowDay + LOAN_DAYS;
+        } else if (next == Status.RETURNED) {
+            returnDay = today();
+        }
+        status = next;
+        return true;
     }
 
-    public void requestReturn() {
-        this.status = "RETURN_PENDING";
+    // ✅ The key BookManager indexes this record under: the UUID, or the id string itself
+    public Object key() {
+        return otherId != null ? otherId : new UUID(idHigh, idLow);
     }
 
-    public void approveReturn() {
-        this.status = "RETURNED";
-        this.returnDate = LocalDate.now();
+    // ✅ The key() of the record with this id
+    public static Object keyOf(String id) {
+        UUID uuid = parseUuid(id);
+        return uuid != null ? uuid : id;
     }
 
-    public void rejectReturn() {
-        this.status = "APPROVED"; // Revert back to approved status
+    public static int epochDay(LocalDate date) {
+        return date != null ? (int) date.toEpochDay() : NO_DATE;
     }
 
-    public void reject() {
-        this.status = "REJECTED";
+    private static LocalDate date(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static int today() {
+        return (int) LocalDate.now().toEpochDay();
+    }
+
+    // Only the lower-case form UUID.toString() writes, so the id reads back unchanged (and
+    // not the all-zero UUID, which stands for "no id yet")
+    private static UUID parseUuid(String id) {
+        if (id == null || id.length() != 36 || id.equals("00000000-0000-0000-0000-000000000000")) {
+            return null;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return null;
+            }
+        }
+        return UUID.fromString(id);
+    }
+
+    // ---------------------------------------------------------------- Java serialization
+
+    // Older borrow_records.dat files are serialized lists of the original class (String id
+    // and status, LocalDate dates), so that stays the serialized form
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("bookId", String.class),
+            new ObjectStreamField("userId", String.class),
+            new ObjectStreamField("requestDate", LocalDate.class),
+            new ObjectStreamField("borrowDate", LocalDate.class),
+            new ObjectStreamField("dueDate", LocalDate.class),
+            new ObjectStreamField("returnDate", LocalDate.class),
+            new ObjectStreamField("status", String.class),
+    };
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", getId());
+        fields.put("bookId", bookId);
+        fields.put("userId", userId);
+        fields.put("requestDate", getRequestDate());
+        fields.put("borrowDate", getBorrowDate());
+        fields.put("dueDate", getDueDate());
+        fields.put("returnDate", getReturnDate());
+        fields.put("status", status.name());
+        out.writeFields();
     }
 
-    public void markReturned() {
-        this.status = "RETURNED";
-        this.returnDate = LocalDate.now();
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        setId((String) fields.get("id", null));
+        bookId = (String) fields.get("bookId", null);
+        userId = (String) fields.get("userId", null);
+        requestDay = epochDay((LocalDate) fields.get("requestDate", null));
+        borrowDay = epochDay((LocalDate) fields.get("borrowDate", null));
+        dueDay = epochDay((LocalDate) fields.get("dueDate", null));
+        returnDay = epochDay((LocalDate) fields.get("returnDate", null));
+        String name = (String) fields.get("status", null);
+        try {
+            status = Status.valueOf(name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new InvalidObjectException("Unknown borrow status: " + name);
+        }
     }
 }
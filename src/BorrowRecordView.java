@@ -0,0 +1,29 @@
+import java.time.LocalDate;
+
+// A borrow record joined with the book it refers to, as returned by
+// BookManager.getBorrowRecordViews for the dashboard tables.
+public class BorrowRecordView {
+    private final BorrowRecord record;
+    private final Book book;
+
+    public BorrowRecordView(BorrowRecord record, Book book) {
+        this.record = record;
+        this.book = book;
+    }
+
+    public BorrowRecord getRecord() { return record; }
+    public Book getBook() { return book; }
+
+    public String getId() { return record.getId(); }
+    public String getUserId() { return record.getUserId(); }
+    public String getStatus() { return record.getStatus().name(); }
+    public LocalDate getRequestDate() { return record.getRequestDate(); }
+    public LocalDate getBorrowDate() { return record.getBorrowDate(); }
+    public LocalDate getDueDate() { return record.getDueDate(); }
+    public LocalDate getReturnDate() { return record.getReturnDate(); }
+
+    public String getBookId() { return book.getId(); }
+    public String getTitle() { return book.getTitle(); }
+    public String getAuthor() { return book.getAuthor(); }
+    public String getLibraryLocation() { return book.getLibraryLocation(); }
+}
@@ -0,0 +1,278 @@
+import java.util.*;
+
+// Bitmap indexes over ColumnarCatalog's slots for faceted browsing: one RoaringBitmap of
+// slots per genre, per location and per publication year, plus the live and available
+// slots. A selection ORs the bitmaps of the values picked within a facet and ANDs the
+// facets; the sidebar's counts are the cardinalities of each value's bitmap ANDed with the
+// other facets' selection, so picking a genre still shows how many books the other genres
+// have.
+//
+// The catalog adds and removes slots under its caller's exclusive lock, and queries run
+// under the shared lock. Availability flips run alongside the queries, so the available
+// bitmap is only touched under this object's monitor.
+public class CatalogFacets {
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final RoaringBitmap available = new RoaringBitmap();
+    private final Map<Integer, RoaringBitmap> genres = new HashMap<>();    // by Book.GENRES code
+    private final Map<Integer, RoaringBitmap> locations = new HashMap<>(); // by Book.LOCATIONS code
+    private final TreeMap<Integer, RoaringBitmap> years = new TreeMap<>();
+
+    // What the sidebar has picked. Within a facet any of the values matches (null stands for
+    // books with no genre or location) and an empty set matches every value.
+    public static class Selection {
+        public static final Selection ALL = new Selection(null, null, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+
+        public final Set<String> genres;
+        public final Set<String> locations;
+        public final int fromYear;  // inclusive
+        public final int toYear;    // inclusive
+        public final boolean availableOnly;
+
+        public Selection(Collection<String> genres, Collection<String> locations, int fromYear, int toYear,
+                boolean availableOnly) {
+            this.genres = genres == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(genres));
+            this.locations = locations == null ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(locations));
+            this.fromYear = fromYear;
+            this.toYear = toYear;
+            this.availableOnly = availableOnly;
+        }
+
+        public boolean hasYearRange() {
+            return fromYear != Integer.MIN_VALUE || toYear != Integer.MAX_VALUE;
+        }
+
+        public boolean selectsAll() {
+            return genres.isEmpty() && locations.isEmpty() && !hasYearRange() && !availableOnly;
+        }
+
+        // The same test book by book, for results that didn't come from the bitmaps
+        public boolean matches(Book book) {
+            return (genres.isEmpty() || genres.contains(book.getGenre()))
+                    && (locations.isEmpty() || locations.contains(book.getLibraryLocation()))
+                    && book.getPublicationYear() >= fromYear && book.getPublicationYear() <= toYear
+                    && (!availableOnly || book.isAvailable());
+        }
+    }
+
+    // Books per facet value, each with the other facets of the selection applied
+    public static class Counts {
+        public final Map<String, Integer> genres;         // by name, null (no genre) last
+        public final Map<String, Integer> locations;
+        public final SortedMap<Integer, Integer> years;
+        public final int available;  // books matching the rest of the selection that are available
+        public final int matching;   // books matching the whole selection
+
+        public Counts(Map<String, Integer> genres, Map<String, Integer> locations, SortedMap<Integer, Integer> years,
+                int available, int matching) {
+            this.genres = genres;
+            this.locations = locations;
+            this.years = years;
+            this.available = available;
+            this.matching = matching;
+        }
+    }
+
+    // ---------------------------------------------------------------- maintenance
+
+    void add(int slot, int genre, int location, int year, boolean isAvailable) {
+        live.add(slot);
+        genres.computeIfAbsent(genre, code -> new RoaringBitmap()).add(slot);
+        locations.computeIfAbsent(location, code -> new RoaringBitmap()).add(slot);
+        years.computeIfAbsent(year, y -> new RoaringBitmap()).add(slot);
+        if (isAvailable) {
+            setAvailable(slot, true);
+        }
+    }
+
+    void remove(int slot, int genre, int location, int year) {
+        live.remove(slot);
+        removeFrom(genres, genre, slot);
+        removeFrom(locations, location, slot);
+        removeFrom(years, year, slot);
+        setAvailable(slot, false);
+    }
+
+    // ✅ O(1): one bit in one container (or one entry in a sorted array of at most 4096)
+    synchronized void setAvailable(int slot, boolean isAvailable) {
+        if (isAvailable) {
+            available.add(slot);
+        } else {
+            available.remove(slot);
+        }
+    }
+
+    public synchronized int availableCount() {
+        return available.size();
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> index, int key, int slot) {
+        RoaringBitmap slots = index.get(key);
+        if (slots != null && slots.remove(slot) && slots.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    // ---------------------------------------------------------------- queries
+
+    // ✅ The slots matching the whole selection: OR within each facet, AND across them
+    public RoaringBitmap select(Selection selection) {
+        RoaringBitmap slots = intersect(union(genres, codes(Book.GENRES, selection.genres)),
+                union(locations, codes(Book.LOCATIONS, selection.locations)),
+                intersect(selection.hasYearRange() ? yearSlots(selection) : null,
+                        selection.availableOnly ? availableSlots() : null, null));
+        return slots != null ? slots : live.copy();
+    }
+
+    // ✅ Each value's count ANDs its bitmap with the other facets' slots, without building
+    // the intersection
+    public Counts counts(Selection selection) {
+        RoaringBitmap genreSlots = union(genres, codes(Book.GENRES, selection.genres));
+        RoaringBitmap locationSlots = union(locations, codes(Book.LOCATIONS, selection.locations));
+        RoaringBitmap yearSlots = selection.hasYearRange() ? yearSlots(selection) : null;
+        RoaringBitmap availableSlots = selection.availableOnly ? availableSlots() : null;
+
+        Map<String, Integer> genreCounts = count(Book.GENRES, genres,
+                intersect(locationSlots, yearSlots, availableSlots));
+        Map<String, Integer> locationCounts = count(Book.LOCATIONS, locations,
+                intersect(genreSlots, yearSlots, availableSlots));
+        SortedMap<Integer, Integer> yearCounts = new TreeMap<>();
+        RoaringBitmap yearBase = intersect(genreSlots, locationSlots, availableSlots);
+        for (Map.Entry<Integer, RoaringBitmap> year : years.entrySet()) {
+            yearCounts.put(year.getKey(), cardinality(yearBase, year.getValue()));
+        }
+        RoaringBitmap rest = intersect(genreSlots, locationSlots, yearSlots);
+        int availableCount;
+        synchronized (this) {
+            availableCount = cardinality(rest, available);
+        }
+        RoaringBitmap all = intersect(rest, availableSlots, null);
+        return new Counts(genreCounts, locationCounts, yearCounts, availableCount,
+                all != null ? all.size() : live.size());
+    }
+
+    private RoaringBitmap yearSlots(Selection selection) {
+        return yearSlots(selection.fromYear, selection.toYear);
+    }
+
+    // The codes of the picked names (null when nothing is picked); names no book has ever
+    // had have no code and match nothing
+    private static List<Integer> codes(SymbolTable table, Set<String> names) {
+        if (names.isEmpty()) {
+            return null;
+        }
+        List<Integer> codes = new ArrayList<>();
+        for (String name : names) {
+            int code = table.find(name);
+            if (name == null || code != SymbolTable.NONE) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+
+    private static RoaringBitmap union(Map<Integer, RoaringBitmap> index, List<Integer> codes) {
+        if (codes == null) {
+            return null;
+        }
+        RoaringBitmap slots = new RoaringBitmap();
+        for (int code : codes) {
+            RoaringBitmap value = index.get(code);
+            if (value != null) {
+                slots = codes.size() == 1 ? value.copy() : RoaringBitmap.or(slots, value);
+            }
+        }
+        return slots;
+    }
+
+    // AND of the bitmaps that aren't null (null when all are)
+    private static RoaringBitmap intersect(RoaringBitmap a, RoaringBitmap b, RoaringBitmap c) {
+        RoaringBitmap result = null;
+        for (RoaringBitmap slots : new RoaringBitmap[] { a, b, c }) {
+            if (slots != null) {
+                result = result == null ? slots : RoaringBitmap.and(result, slots);
+            }
+        }
+        return result;
+    }
+
+    private static int cardinality(RoaringBitmap base, RoaringBitmap value) {
+        return base == null ? value.size() : RoaringBitmap.andCardinality(base, value);
+    }
+
+    private static Map<String, Integer> count(SymbolTable table, Map<Integer, RoaringBitmap> index, RoaringBitmap base) {
+        TreeMap<String, Integer> counts = new TreeMap<>();
+        Integer none = null;
+        for (Map.Entry<Integer, RoaringBitmap> value : index.entrySet()) {
+            int count = cardinality(base, value.getValue());
+            if (value.getKey() == SymbolTable.NONE) {
+                none = count;
+            } else {
+                counts.put(table.symbol(value.getKey()), count);
+            }
+        }
+        Map<String, Integer> ordered = new LinkedHashMap<>(counts);
+        if (none != null) {
+            ordered.put(null, none);
+        }
+        return ordered;
+    }
+
+    // ---------------------------------------------------------------- planner statistics
+
+    // ✅ Exact counts of live books per value, which QueryPlanner uses as selectivities
+    public int size() {
+        return live.size();
+    }
+
+    public int genreCount(String genre) {
+        RoaringBitmap slots = value(genres, Book.GENRES, genre);
+        return slots != null ? slots.size() : 0;
+    }
+
+    public int locationCount(String location) {
+        RoaringBitmap slots = value(locations, Book.LOCATIONS, location);
+        return slots != null ? slots.size() : 0;
+    }
+
+    public int yearCount(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return 0;
+        }
+        int count = 0;
+        for (RoaringBitmap year : years.subMap(fromYear, true, toYear, true).values()) {
+            count += year.size();
+        }
+        return count;
+    }
+
+    public RoaringBitmap genreSlots(String genre) {
+        RoaringBitmap slots = value(genres, Book.GENRES, genre);
+        return slots != null ? slots.copy() : new RoaringBitmap();
+    }
+
+    public RoaringBitmap locationSlots(String location) {
+        RoaringBitmap slots = value(locations, Book.LOCATIONS, location);
+        return slots != null ? slots.copy() : new RoaringBitmap();
+    }
+
+    public RoaringBitmap yearSlots(int fromYear, int toYear) {
+        if (fromYear > toYear) {
+            return new RoaringBitmap();
+        }
+        RoaringBitmap slots = new RoaringBitmap();
+        for (RoaringBitmap year : years.subMap(fromYear, true, toYear, true).values()) {
+            slots = RoaringBitmap.or(slots, year);
+        }
+        return slots;
+    }
+
+    public synchronized RoaringBitmap availableSlots() {
+        return available.copy();
+    }
+
+    // The bitmap of one value, or null when no live book has it
+    private static RoaringBitmap value(Map<Integer, RoaringBitmap> index, SymbolTable table, String name) {
+        int code = table.find(name);
+        return name != null && code == SymbolTable.NONE ? null : index.get(code);
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.*;
+
+// The catalog as columns, for counts, filters and searches that look at every book. Each
+// book has a slot, assigned in insertion order so scans come back in catalog order:
+//
+//   books               the Book in each slot (null once deleted), to hand results back
+//   years               publication year
+//   genres, locations   Book's symbol codes (DEAD for a deleted slot)
+//   text                lower-cased titles and authors packed into one char[]: slot s's title
+//                       is text[textAt[2s], textAt[2s + 1]), its author runs on to textAt[2s + 2]
+//   facets              bitmap indexes of the slots by genre, location, year and availability
+//
+// A deleted slot stays (matching nothing) until more than half of them are dead and
+// compactIfSparse() renumbers the rest. Adding, removing and compacting need the caller's
+// exclusive lock and reads its shared lock; setAvailable runs alongside reads (a count may
+// or may not see a flip in progress), and the facets keep availability under their monitor.
+public class ColumnarCatalog {
+    public static final int ANY = Integer.MIN_VALUE; // a filter code matching every book
+    private static final int DEAD = -2;              // no symbol code, not even SymbolTable.NONE
+
+    private Book[] books;
+    private int[] years;
+    private int[] genres;
+    private int[] locations;
+    private char[] text;
+    private int[] textAt;
+    private CatalogFacets facets;
+    private int slotCount;
+    private int deadSlots;
+    private final Map<String, Integer> slotById = new HashMap<>();
+
+    public ColumnarCatalog(List<Book> catalog) {
+        allocate(Math.max(64, catalog.size()));
+        for (Book book : catalog) {
+            add(book);
+        }
+    }
+
+    // ✅ Give the book the next slot (replacing one with the same id) and return the slot
+    public int add(Book book) {
+        remove(book.getId());
+        int slot = slotCount;
+        if (slot == books.length) {
+            grow(slot * 2);
+        }
+        books[slot] = book;
+        years[slot] = book.getPublicationYear();
+        genres[slot] = book.getGenreCode();
+        locations[slot] = book.getLocationCode();
+        facets.add(slot, genres[slot], locations[slot], years[slot], book.isAvailable());
+        textAt[2 * slot + 1] = pack(textAt[2 * slot], normalize(book.getTitle()));
+        textAt[2 * slot + 2] = pack(textAt[2 * slot + 1], normalize(book.getAuthor()));
+        slotById.put(book.getId(), slot);
+        slotCount = slot + 1;
+        return slot;
+    }
+
+    public boolean remove(String bookId) {
+        Integer slot = slotById.remove(bookId);
+        if (slot == null) {
+            return false;
+        }
+        facets.remove(slot, genres[slot], locations[slot], years[slot]);
+        books[slot] = null;
+        genres[slot] = DEAD;
+        locations[slot] = DEAD;
+        deadSlots++;
+        return true;
+    }
+
+    // ✅ Renumber the live slots from 0 once more than half the slots are dead; true if it
+    // did, so slot numbers held elsewhere (the search index's) are stale
+    public boolean compactIfSparse() {
+        if (deadSlots <= 1024 || deadSlots <= slotCount / 2) {
+            return false;
+        }
+        List<Book> remaining = new ArrayList<>(slotById.size());
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (books[slot] != null) {
+                remaining.add(books[slot]);
+            }
+        }
+        allocate(Math.max(64, remaining.size() * 2));
+        slotCount = 0;
+        deadSlots = 0;
+        slotById.clear();
+        for (Book book : remaining) {
+            add(book);
+        }
+        return true;
+    }
+
+    public synchronized void setAvailable(String bookId, boolean isAvailable) {
+        Integer slot = slotById.get(bookId);
+        if (slot == null) {
+            return;
+        }
+        facets.setAvailable(slot, isAvailable);
+    }
+
+    // ---------------------------------------------------------------- scans
+
+    public int slotCount() {
+        return slotCount;
+    }
+
+    public Book book(int slot) {
+        return books[slot];
+    }
+
+    // A slot's columns, for the query planner's filters (DEAD codes once deleted)
+    int year(int slot) {
+        return years[slot];
+    }
+
+    int genre(int slot) {
+        return genres[slot];
+    }
+
+    int location(int slot) {
+        return locations[slot];
+    }
+
+    public int countAvailable() {
+        return facets.availableCount();
+    }
+
+    public CatalogFacets facets() {
+        return facets;
+    }
+
+    // The books in the slots, in slot (catalog) order, at most limit of them
+    public List<Book> books(RoaringBitmap slots, int limit) {
+        int[] found = slots.toArray();
+        List<Book> result = new ArrayList<>(Math.min(found.length, limit));
+        for (int i = 0; i < found.length && result.size() < limit; i++) {
+            result.add(books[found[i]]);
+        }
+        return result;
+    }
+
+    // ✅ Books with these symbol codes (SymbolTable.NONE stands for null, ANY for every value).
+    // The loops read locals only, so the JIT can keep them in registers across the adds.
+    public List<Book> withGenreAndLocation(int genre, int location) {
+        Book[] b = books;
+        int[] g = genres;
+        int[] l = locations;
+        int n = slotCount;
+        List<Book> found = new ArrayList<>();
+        if (genre == ANY && location == ANY) {
+            for (int slot = 0; slot < n; slot++) {
+                if (g[slot] != DEAD) {
+                    found.add(b[slot]);
+                }
+            }
+        } else if (location == ANY) {
+            for (int slot = 0; slot < n; slot++) {
+                if (g[slot] == genre) {
+                    found.add(b[slot]);
+                }
+            }
+        } else if (genre == ANY) {
+            for (int slot = 0; slot < n; slot++) {
+                if (l[slot] == location) {
+                    found.add(b[slot]);
+                }
+            }
+        } else {
+            for (int slot = 0; slot < n; slot++) {
+                if (g[slot] == genre & l[slot] == location) {
+                    found.add(b[slot]);
+                }
+            }
+        }
+        return found;
+    }
+
+    public List<Book> publishedBetween(int fromYear, int toYear) {
+        Book[] b = books;
+        int[] y = years;
+        int n = slotCount;
+        List<Book> found = new ArrayList<>();
+        for (int slot = 0; slot < n; slot++) {
+            int year = y[slot];
+            if (year >= fromYear && year <= toYear && b[slot] != null) {
+                found.add(b[slot]);
+            }
+        }
+        return found;
+    }
+
+    // ✅ Whether the slot's book is live and its title or author contains needle (lower-cased
+    // as normalize() does)
+    public boolean matches(int slot, char[] needle, boolean title, boolean author) {
+        if (books[slot] == null) {
+            return false;
+        }
+        int titleAt = textAt[2 * slot];
+        int authorAt = textAt[2 * slot + 1];
+        return (title && contains(titleAt, authorAt, needle))
+                || (author && contains(authorAt, textAt[2 * slot + 2], needle));
+    }
+
+    // The lower-cased title or author of a slot, for the search index
+    String text(int slot, boolean title) {
+        int from = textAt[2 * slot + (title ? 0 : 1)];
+        int to = textAt[2 * slot + (title ? 1 : 2)];
+        return new String(text, from, to - from);
+    }
+
+    // Checks a needle's first and last characters before the ones between
+    private boolean contains(int from, int to, char[] needle) {
+        int length = needle.length;
+        if (length == 0) {
+            return true;
+        }
+        char[] t = text;
+        char first = needle[0];
+        char last = needle[length - 1];
+        for (int i = from, end = to - length; i <= end; i++) {
+            if (t[i] != first || t[i + length - 1] != last) {
+                continue;
+            }
+            int j = 1;
+            while (j < length - 1 && t[i + j] == needle[j]) {
+                j++;
+            }
+            if (j >= length - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase();
+    }
+
+    private int pack(int at, String value) {
+        if (at + value.length() > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, at + value.length()));
+        }
+        value.getChars(0, value.length(), text, at);
+        return at + value.length();
+    }
+
+    private void allocate(int capacity) {
+        books = new Book[capacity];
+        years = new int[capacity];
+        genres = new int[capacity];
+        locations = new int[capacity];
+        facets = new CatalogFacets();
+        text = new char[capacity * 32];
+        textAt = new int[2 * capacity + 1];
+    }
+
+    private void grow(int capacity) {
+        books = Arrays.copyOf(books, capacity);
+        years = Arrays.copyOf(years, capacity);
+        genres = Arrays.copyOf(genres, capacity);
+        locations = Arrays.copyOf(locations, capacity);
+        textAt = Arrays.copyOf(textAt, 2 * capacity + 1);
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Append-only log of BORROW / RETURN_REQUEST / RETURN events, one line each:
+//
+//   BORROW|<user>|<book id>|2026-10-18T09:31:55.120Z|1792316915120
+//
+// (ISO-8601 instant for people, epoch millis for parsers). Callers only queue the line on
+// a lock-free queue; one background thread group-commits whatever has queued up through a
+// single FileChannel that stays open, and fsyncs on its own, longer interval. When the live
+// file passes the segment size it is renamed to LibraryHistory.000001.txt, .000002.txt, ...
+// and a fresh LibraryHistory.txt is started.
+//
+// Tuning (system properties): library.audit.commitMillis (default 50),
+// library.audit.fsyncMillis (default 1000; 0 = fsync every commit, -1 = never),
+// library.audit.segmentBytes (default 64 MB).
+public class LibraryAuditLog {
+    private static final String FILE_NAME = "LibraryHistory.txt";
+    private static final String SEGMENT_PREFIX = "LibraryHistory.";
+
+    private static final long COMMIT_MILLIS = Long.getLong("library.audit.commitMillis", 50);
+    private static final long FSYNC_MILLIS = Long.getLong("library.audit.fsyncMillis", 1000);
+    private static final long SEGMENT_BYTES = Long.getLong("library.audit.segmentBytes", 64L << 20);
+
+    private static final Queue<String> lines = new ConcurrentLinkedQueue<>();
+    private static final Path file = Paths.get(FILE_NAME);
+    private static FileChannel channel;
+    private static ByteBuffer unwritten = ByteBuffer.allocate(0); // encoded, not yet on disk
+    private static long lastFsync = System.nanoTime();
+    private static boolean dirty; // written since the last fsync
+
+    static {
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-audit-log");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(LibraryAuditLog::commit, COMMIT_MILLIS, COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Events still queued when the app exits go out with a final fsync
+        Runtime.getRuntime().addShutdownHook(new Thread(LibraryAuditLog::close));
+    }
+
+    // ✅ Queue an event stamped with the current time; never touches the disk
+    public static void append(String type, String userId, String bookId) {
+        lines.add(line(type, userId, bookId, System.currentTimeMillis()));
+    }
+
+    public static String line(String type, String userId, String bookId, long epochMillis) {
+        return type + "|" + userId + "|" + bookId + "|" + Instant.ofEpochMilli(epochMillis) + "|" + epochMillis;
+    }
+
+    // ✅ Write everything queued so far (benchmarks and tests; the app relies on the timer)
+    public static void flush() {
+        commit();
+    }
+
+    // ✅ Rolled segments oldest first, then the live file: the whole event history in order
+    public static List<Path> segments() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(Paths.get("."), SEGMENT_PREFIX + "[0-9]*.txt")) {
+            for (Path segment : dir) {
+                if (!segment.getFileName().toString().equals(FILE_NAME)) {
+                    segments.add(segment.normalize());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        segments.sort(Comparator.comparing(segment -> segment.getFileName().toString()));
+        if (Files.exists(file)) {
+            segments.add(file);
+        }
+        return segments;
+    }
+
+    // Runs on the audit thread (and from flush/close): one write for everything queued
+    private static synchronized void commit() {
+        try {
+            drain();
+            if (unwritten.hasRemaining()) {
+                if (channel == null) {
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                }
+                while (unwritten.hasRemaining()) {
+                    channel.write(unwritten);
+                }
+                dirty = true;
+            }
+            if (dirty && FSYNC_MILLIS >= 0
+                    && System.nanoTime() - lastFsync >= TimeUnit.MILLISECONDS.toNanos(FSYNC_MILLIS)) {
+                fsync();
+            }
+            if (channel != null && channel.size() >= SEGMENT_BYTES) {
+                roll();
+            }
+        } catch (IOException e) {
+            // Bytes not yet written stay in the buffer and are retried on the next commit
+            e.printStackTrace();
+        }
+    }
+
+    private static void drain() {
+        if (lines.isEmpty()) {
+            return;
+        }
+        StringBuilder batch = new StringBuilder();
+        String line;
+        while ((line = lines.poll()) != null) {
+            batch.append(line).append(System.lineSeparator());
+        }
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(unwritten.remaining() + bytes.length);
+        buffer.put(unwritten).put(bytes).flip();
+        unwritten = buffer;
+    }
+
+    private static void fsync() throws IOException {
+        channel.force(false);
+        dirty = false;
+        lastFsync = System.nanoTime();
+    }
+
+    // ✅ Close the full live file under the next segment number and start a new one
+    private static void roll() throws IOException {
+        fsync();
+        channel.close();
+        channel = null;
+        int next = 1;
+        for (Path segment : segments()) {
+            String name = segment.getFileName().toString();
+            if (!name.equals(FILE_NAME)) {
+                String number = name.substring(SEGMENT_PREFIX.length(), name.length() - ".txt".length());
+                next = Math.max(next, Integer.parseInt(number) + 1);
+            }
+        }
+        Files.move(file, Paths.get(String.format("%s%06d.txt", SEGMENT_PREFIX, next)), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static synchronized void close() {
+        commit();
+        try {
+            if (channel != null) {
+                if (dirty) {
+                    fsync();
+                }
+                channel.close();
+                channel = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
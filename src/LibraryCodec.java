@@ -0,0 +1,602 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary format for books.dat and borrow_records.dat.
+//
+//   header : magic "LIBR" | u16 schema version | u8 record kind | i32 record count
+//   string : varint (byte length + 1, 0 = null) | UTF-8 bytes
+//   date   : i32 epoch day (Integer.MIN_VALUE = null)
+//   status : u8 BorrowRecord.Status ordinal
+//   symbol : varint (number in the file's dictionary + 1, 0 = null)
+//
+// A books file ends with its dictionary: the authors, genres and locations its books use,
+// numbered per field in order of first use, then an i32 saying where the dictionary starts.
+//
+//   dictionary : for authors, genres, locations: varint count | strings
+//
+// Schema version 1 books files (the three fields as strings) are still read.
+//
+// Files still in the old Java-serialization format are detected by their stream magic,
+// read once and rewritten in this format.
+public class LibraryCodec {
+    private static final byte[] MAGIC = {'L', 'I', 'B', 'R'};
+    private static final int SCHEMA_VERSION = 2;
+    private static final byte BOOKS = 1;
+    private static final byte BORROW_RECORDS = 2;
+
+    private static final BorrowRecord.Status[] STATUSES = BorrowRecord.Status.values();
+    private static final SymbolTable[] SYMBOL_TABLES = {Book.AUTHORS, Book.GENRES, Book.LOCATIONS};
+    private static final int AUTHOR = 0;
+    private static final int GENRE = 1;
+    private static final int LOCATION = 2;
+
+    // ✅ Load books.dat, migrating a legacy file on first use; a missing file is an empty catalog
+    public static List<Book> readBooks(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        if (isLegacy(file)) {
+            List<Book> books = readLegacy(file);
+            migrate(fileName, encodeBooks(books));
+            return books;
+        }
+        Reader in = new Reader(Files.readAllBytes(file.toPath()));
+        int count = in.header(BOOKS, fileName);
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(in.book());
+        }
+        return books;
+    }
+
+    public static List<BorrowRecord> readBorrowRecords(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        if (isLegacy(file)) {
+            List<BorrowRecord> records = readLegacy(file);
+            migrate(fileName, encodeBorrowRecords(records));
+            return records;
+        }
+        Reader in = new Reader(Files.readAllBytes(file.toPath()));
+        int count = in.header(BORROW_RECORDS, fileName);
+        List<BorrowRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(in.borrowRecord());
+        }
+        return records;
+    }
+
+    public static byte[] encodeBooks(List<Book> books) {
+        Writer out = new Writer(64 + books.size() * 64);
+        out.header(BOOKS, books.size());
+        for (Book book : books) {
+            out.book(book);
+        }
+        out.dictionary(0);
+        return out.toByteArray();
+    }
+
+    public static byte[] encodeBorrowRecords(List<BorrowRecord> records) {
+        Writer out = new Writer(64 + records.size() * 80);
+        out.header(BORROW_RECORDS, records.size());
+        for (BorrowRecord record : records) {
+            out.borrowRecord(record);
+        }
+        return out.toByteArray();
+    }
+
+    // ✅ Where each record of an encoded books or borrow-records file starts, then where the
+    // last one ends (for books, where the dictionary starts); LibrarySnapshot copies the
+    // records and indexes them by these
+    static int[] recordOffsets(byte[] data) throws IOException {
+        byte kind = data.length > MAGIC.length + 2 ? data[MAGIC.length + 2] : 0;
+        if (kind != BOOKS && kind != BORROW_RECORDS) {
+            throw new IOException("Not a books or borrow records file");
+        }
+        Reader in = new Reader(data);
+        int count = in.header(kind, "Snapshot data");
+        if (in.version < SCHEMA_VERSION) {
+            throw new IOException("Snapshot data is in schema version " + in.version + ", re-encode it first");
+        }
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.pos;
+            if (kind == BOOKS) {
+                in.skipBook();
+            } else {
+                in.skipBorrowRecord();
+            }
+        }
+        offsets[count] = in.pos;
+        return offsets;
+    }
+
+    // ✅ Whether an encoded file is in this build's schema version (older ones are still read)
+    static boolean isCurrent(byte[] data) {
+        return data.length > MAGIC.length + 2 && ((data[MAGIC.length] & 0xFF) << 8 | (data[MAGIC.length + 1] & 0xFF)) == SCHEMA_VERSION;
+    }
+
+    // ✅ Write a books file record by record, for callers that can't hold the whole list
+    public static StreamWriter streamBooks(Path file, int count) throws IOException {
+        return new StreamWriter(file, BOOKS, count);
+    }
+
+    public static StreamWriter streamBorrowRecords(Path file, int count) throws IOException {
+        return new StreamWriter(file, BORROW_RECORDS, count);
+    }
+
+    // The header carries the record count, so it must be known up front; close() checks it
+    public static class StreamWriter implements Closeable {
+        private static final int FLUSH_THRESHOLD = 1 << 16;
+
+        private final OutputStream out;
+        private final Writer buffer = new Writer(FLUSH_THRESHOLD + 1024);
+        private final byte kind;
+        private final int expected;
+        private int written;
+        private long flushed;
+
+        private StreamWriter(Path file, byte kind, int count) throws IOException {
+            this.out = Files.newOutputStream(file);
+            this.kind = kind;
+            this.expected = count;
+            buffer.header(kind, count);
+        }
+
+        public void write(Book book) throws IOException {
+            buffer.book(book);
+            recordWritten();
+        }
+
+        public void write(BorrowRecord record) throws IOException {
+            buffer.borrowRecord(record);
+            recordWritten();
+        }
+
+        private void recordWritten() throws IOException {
+            written++;
+            if (buffer.pos >= FLUSH_THRESHOLD) {
+                out.write(buffer.buf, 0, buffer.pos);
+                flushed += buffer.pos;
+                buffer.pos = 0;
+            }
+        }
+
+        public void close() throws IOException {
+            try {
+                if (kind == BOOKS) {
+                    if (flushed + buffer.pos > Integer.MAX_VALUE) {
+                        throw new IOException("Books file too large for its dictionary position");
+                    }
+                    buffer.dictionary(flushed);
+                }
+                out.write(buffer.buf, 0, buffer.pos);
+            } finally {
+                out.close();
+            }
+            if (written != expected) {
+                throw new IOException("Header promised " + expected + " records but " + written + " were written");
+            }
+        }
+    }
+
+    private static boolean isLegacy(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= 2 && in.readUnsignedShort() == 0xACED; // ObjectStreamConstants.STREAM_MAGIC
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (List<T>) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unreadable legacy data in " + file, e);
+        }
+    }
+
+    // Keep the legacy file as <name>.legacy and swap the converted one in
+    private static void migrate(String fileName, byte[] data) throws IOException {
+        Files.copy(Paths.get(fileName), Paths.get(fileName + ".legacy"), StandardCopyOption.REPLACE_EXISTING);
+        LibraryJournal.writeSnapshot(fileName, data);
+    }
+
+    // Growable big-endian byte buffer (ByteArrayOutputStream synchronizes on every byte)
+    static class Writer {
+        byte[] buf;
+        int pos;
+        private int[][] fileNumbers; // per field: symbol code -> number in this file (0 = not used yet)
+        private int[][] symbols;     // per field: number - 1 -> symbol code
+        private int[] symbolCounts;
+
+        Writer(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void header(byte kind, int count) {
+            ensure(MAGIC.length + 7);
+            System.arraycopy(MAGIC, 0, buf, pos, MAGIC.length);
+            pos += MAGIC.length;
+            buf[pos++] = (byte) (SCHEMA_VERSION >>> 8);
+            buf[pos++] = (byte) SCHEMA_VERSION;
+            buf[pos++] = kind;
+            int32(count);
+        }
+
+        void book(Book book) {
+            string(book.getId());
+            string(book.getTitle());
+            symbol(AUTHOR, book.getAuthorCode());
+            symbol(GENRE, book.getGenreCode());
+            int32(book.getPublicationYear());
+            u8(book.isAvailable() ? 1 : 0);
+            symbol(LOCATION, book.getLocationCode());
+        }
+
+        // A symbol's number in this file, numbering it on first use
+        private void symbol(int field, int code) {
+            if (code == SymbolTable.NONE) {
+                varInt(0);
+                return;
+            }
+            if (fileNumbers == null) {
+                fileNumbers = new int[SYMBOL_TABLES.length][];
+                symbols = new int[SYMBOL_TABLES.length][];
+                symbolCounts = new int[SYMBOL_TABLES.length];
+                for (int f = 0; f < SYMBOL_TABLES.length; f++) {
+                    fileNumbers[f] = new int[Math.max(16, SYMBOL_TABLES[f].size())];
+                    symbols[f] = new int[16];
+                }
+            }
+            int[] numbers = fileNumbers[field];
+            if (code >= numbers.length) {
+                numbers = fileNumbers[field] = Arrays.copyOf(numbers, Math.max(code + 1, numbers.length * 2));
+            }
+            if (numbers[code] == 0) {
+                int count = symbolCounts[field]++;
+                if (count == symbols[field].length) {
+                    symbols[field] = Arrays.copyOf(symbols[field], count * 2);
+                }
+                symbols[field][count] = code;
+                numbers[code] = count + 1;
+            }
+            varInt(numbers[code]);
+        }
+
+        // ✅ End a books file whose first byte went out start bytes before this buffer's:
+        // the symbols its books used, then where they start
+        void dictionary(long start) {
+            long at = start + pos;
+            for (int f = 0; f < SYMBOL_TABLES.length; f++) {
+                int count = symbolCounts != null ? symbolCounts[f] : 0;
+                varInt(count);
+                for (int i = 0; i < count; i++) {
+                    string(SYMBOL_TABLES[f].symbol(symbols[f][i]));
+                }
+            }
+            int32((int) at);
+        }
+
+        void borrowRecord(BorrowRecord record) {
+            string(record.getId());
+            string(record.getBookId());
+            string(record.getUserId());
+            int32(record.getRequestDay());
+            int32(record.getBorrowDay());
+            int32(record.getDueDay());
+            int32(record.getReturnDay());
+            u8(record.getStatus().ordinal());
+        }
+
+        void user(User user) {
+            string(user.getUsername());
+            string(user.getPassword());
+            string(user.getFullName());
+            string(user.getContact());
+            string(user.getRole());
+            string(user.getMembershipId());
+        }
+
+        void u8(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        void int32(int value) {
+            ensure(4);
+            buf[pos++] = (byte) (value >>> 24);
+            buf[pos++] = (byte) (value >>> 16);
+            buf[pos++] = (byte) (value >>> 8);
+            buf[pos++] = (byte) value;
+        }
+
+        void varInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void bytes(byte[] data, int from, int to) {
+            ensure(to - from);
+            System.arraycopy(data, from, buf, pos, to - from);
+            pos += to - from;
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varInt(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varInt(utf8.length + 1);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buf, pos, utf8.length);
+            pos += utf8.length;
+        }
+
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+    }
+
+    static class Reader {
+        private final byte[] buf;
+        int pos;
+        int version = SCHEMA_VERSION; // of the file, once header() has read it
+        private Dictionary dictionary; // what a books file's symbol numbers stand for
+        private Map<String, String> shared; // book and user ids seen so far, one String each
+
+        Reader(byte[] buf) {
+            this(buf, 0);
+        }
+
+        Reader(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        // Books records cut out of a file with this dictionary (LibrarySnapshot's)
+        Reader(byte[] buf, Dictionary dictionary) {
+            this(buf, 0);
+            this.dictionary = dictionary;
+        }
+
+        int header(byte kind, String fileName) throws IOException {
+            if (buf.length < MAGIC.length + 7
+                    || !Arrays.equals(buf, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                throw new IOException(fileName + " is not a library data file");
+            }
+            pos = MAGIC.length;
+            int version = (u8() << 8) | u8();
+            if (version > SCHEMA_VERSION) {
+                throw new IOException(fileName + " uses schema version " + version
+                        + ", newer than this build supports (" + SCHEMA_VERSION + ")");
+            }
+            if (buf[pos++] != kind) {
+                throw new IOException(fileName + " holds the wrong kind of records");
+            }
+            this.version = version;
+            int count = int32();
+            if (count < 0 || count > buf.length - pos) { // every record takes at least a byte
+                throw new IOException(fileName + " has a bad record count: " + count);
+            }
+            if (kind == BOOKS && version >= 2) {
+                if (buf.length < pos + 4) {
+                    throw new EOFException(fileName + " is truncated");
+                }
+                int at = pos;
+                pos = buf.length - 4;
+                int dictionaryAt = int32();
+                pos = at;
+                dictionary = new Dictionary(buf, dictionaryAt, buf.length - 4);
+            }
+            return count;
+        }
+
+        Book book() throws IOException {
+            if (version < 2) {
+                return stringBook();
+            }
+            if (dictionary == null) {
+                throw new IOException("Books without their dictionary");
+            }
+            String id = string();
+            String title = string();
+            int author = dictionary.code(AUTHOR, varInt());
+            int genre = dictionary.code(GENRE, varInt());
+            int year = int32();
+            boolean available = u8() != 0;
+            int location = dictionary.code(LOCATION, varInt());
+            Book book = new Book(id, title, author, genre, year, location);
+            book.setAvailable(available);
+            return book;
+        }
+
+        // Schema version 1: author, genre and location as strings
+        private Book stringBook() throws IOException {
+            String id = string();
+            String title = string();
+            String author = string();
+            String genre = string();
+            int year = int32();
+            boolean available = u8() != 0;
+            String location = string();
+            Book book = new Book(id, title, author, genre, year, location);
+            book.setAvailable(available);
+            return book;
+        }
+
+        // A reader hands every record with the same book or user the same id String: a
+        // popular book or an active borrower appears in thousands of loans
+        BorrowRecord borrowRecord() throws IOException {
+            String id = string();
+            String bookId = shared(string());
+            String userId = shared(string());
+            int requestDay = int32();
+            int borrowDay = int32();
+            int dueDay = int32();
+            int returnDay = int32();
+            int status = u8();
+            if (status >= STATUSES.length) {
+                throw new IOException("Unknown borrow status code: " + status);
+            }
+            return new BorrowRecord(id, bookId, userId, requestDay, borrowDay, dueDay, returnDay, STATUSES[status]);
+        }
+
+        private String shared(String value) {
+            if (value == null) {
+                return null;
+            }
+            if (shared == null) {
+                shared = new HashMap<>();
+            }
+            String existing = shared.putIfAbsent(value, value);
+            return existing != null ? existing : value;
+        }
+
+        User user() throws IOException {
+            return new User(string(), string(), string(), string(), string(), string());
+        }
+
+        void skipBook() throws IOException {
+            skipString();
+            skipString();
+            varInt();
+            varInt();
+            skip(5); // year, available
+            varInt();
+        }
+
+        void skipBorrowRecord() throws IOException {
+            skipString();
+            skipString();
+            skipString();
+            skip(17); // four dates, status
+        }
+
+        int u8() throws IOException {
+            if (pos >= buf.length) {
+                throw new EOFException("Library data file is truncated");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        int int32() throws IOException {
+            return (u8() << 24) | (u8() << 16) | (u8() << 8) | u8();
+        }
+
+        // Lengths, counts and symbol numbers are never negative, so one that decodes to a
+        // negative int is corruption rather than something for the caller to index with
+        int varInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = u8();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Malformed length prefix");
+        }
+
+        String string() throws IOException {
+            int length = varInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > buf.length - pos) {
+                throw new EOFException("Library data file is truncated");
+            }
+            String value = new String(buf, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        // ✅ Compare the next string with utf8 in place, without decoding it
+        boolean stringEquals(byte[] utf8) throws IOException {
+            return varInt() - 1 == utf8.length && utf8.length <= buf.length - pos
+                    && Arrays.equals(buf, pos, pos + utf8.length, utf8, 0, utf8.length);
+        }
+
+        void skipString() throws IOException {
+            skip(Math.max(0, varInt() - 1));
+        }
+
+        void skip(int bytes) throws IOException {
+            if (bytes < 0 || bytes > buf.length - pos) {
+                throw new EOFException("Library data file is truncated");
+            }
+            pos += bytes;
+        }
+    }
+
+    // ✅ A books file's dictionary, read from [from, to) of its bytes: turns the file's symbol
+    // numbers into Book's codes, looking each one up the first time it is used
+    static class Dictionary {
+        private final byte[] buf;
+        private final int[][] at = new int[SYMBOL_TABLES.length][];    // per field: number - 1 -> string position
+        private final int[][] codes = new int[SYMBOL_TABLES.length][]; // per field: number - 1 -> code + 1 (0 = not yet)
+
+        Dictionary(byte[] buf, int from, int to) throws IOException {
+            if (from < 0 || from > to || to > buf.length) {
+                throw new IOException("Books dictionary out of bounds");
+            }
+            this.buf = buf;
+            Reader in = new Reader(buf, from);
+            for (int f = 0; f < SYMBOL_TABLES.length; f++) {
+                int count = in.varInt();
+                if (count > to - in.pos) {
+                    throw new IOException("Malformed books dictionary");
+                }
+                at[f] = new int[count];
+                codes[f] = new int[count];
+                for (int i = 0; i < count; i++) {
+                    at[f][i] = in.pos;
+                    in.skipString();
+                }
+            }
+            if (in.pos > to) {
+                throw new IOException("Malformed books dictionary");
+            }
+        }
+
+        // Unsynchronized: two threads resolving the same number store the same code
+        int code(int field, int number) throws IOException {
+            if (number == 0) {
+                return SymbolTable.NONE;
+            }
+            int[] resolved = codes[field];
+            if (number > resolved.length) {
+                throw new IOException("Symbol " + number + " is not in the books dictionary");
+            }
+            int code = resolved[number - 1];
+            if (code == 0) {
+                code = SYMBOL_TABLES[field].code(new Reader(buf, at[field][number - 1]).string()) + 1;
+                resolved[number - 1] = code;
+            }
+            return code - 1;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// All writes to LibraryData.txt go through here. The file holds a USER section, a BOOK
+// section and then older event lines (new BORROW / RETURN events go to LibraryAuditLog).
+//
+// Edits never rewrite the file: a new row is appended at the end, and a delete appends a
+// tombstone (DELETED_USER|<username>, DELETED_BOOK|<book id>), so readers apply the lines
+// in order. Appends are queued and written on the PersistenceExecutor thread, everything
+// queued since the last write in one go. Compaction regroups the sections and drops
+// tombstoned rows in the background, once enough loose lines have piled up or whenever
+// tombstones are waiting at the periodic check.
+public class LibraryDataFile {
+    private static final String DATA_FILE = "LibraryData.txt";
+    public static final String DELETED_USER = "DELETED_USER|";
+    public static final String DELETED_BOOK = "DELETED_BOOK|";
+    private static final byte[] USER = LineTokenizer.ascii("USER|");
+    private static final byte[] BOOK = LineTokenizer.ascii("BOOK|");
+    private static final byte[] DELETED_USER_BYTES = LineTokenizer.ascii(DELETED_USER);
+    private static final byte[] DELETED_BOOK_BYTES = LineTokenizer.ascii(DELETED_BOOK);
+
+    private static final int COMPACT_THRESHOLD = 1_000;
+    private static final long COMPACT_INTERVAL_SECONDS = 60;
+
+    private static final Queue<String> appends = new ConcurrentLinkedQueue<>();
+    // Set by the periodic check and cleared by the write that honours it. It lives here rather
+    // than in the submitted write because the executor keeps only the latest queued write per key.
+    private static final AtomicBoolean tombstoneCheckRequested = new AtomicBoolean();
+
+    // Lines outside their section (appended rows and tombstones), touched only on the writer
+    // thread; -1 until the file has been scanned once
+    private static int looseLines = -1;
+    private static int tombstones;
+
+    static {
+        ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-data-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            tombstoneCheckRequested.set(true);
+            PersistenceExecutor.submit(DATA_FILE, LibraryDataFile::write);
+        }, COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static void insertUser(String userLine) {
+        enqueue(userLine);
+    }
+
+    public static void removeUser(String username) {
+        enqueue(DELETED_USER + username);
+    }
+
+    public static void insertBook(String bookLine) {
+        enqueue(bookLine);
+    }
+
+    public static void removeBook(String bookId) {
+        enqueue(DELETED_BOOK + bookId);
+    }
+
+    private static void enqueue(String line) {
+        appends.add(line);
+        PersistenceExecutor.submit(DATA_FILE, LibraryDataFile::write);
+    }
+
+    // Runs on the persistence thread. A queued compaction and a queued append share the
+    // file's key, so whichever is left in the queue also does the other's work.
+    private static void write() throws IOException {
+        boolean tombstoneCheck = tombstoneCheckRequested.getAndSet(false);
+        File file = new File(DATA_FILE);
+        if (looseLines < 0) {
+            countLooseLines(file);
+        }
+        long modifiedBefore = file.lastModified();
+        long lengthBefore = file.length();
+
+        List<String> batch = new ArrayList<>();
+        String line;
+        while ((line = appends.poll()) != null) {
+            batch.add(line);
+            looseLines++;
+            if (line.startsWith(DELETED_USER) || line.startsWith(DELETED_BOOK)) {
+                tombstones++;
+            }
+        }
+
+        if (looseLines >= COMPACT_THRESHOLD || (tombstoneCheck && tombstones > 0)) {
+            // Write beside the file and swap it in, so readers never see a half-written file
+            Path temp = Paths.get(DATA_FILE + ".tmp");
+            Files.write(temp, compact(file, batch));
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            looseLines = 0;
+            tombstones = 0;
+        } else if (!batch.isEmpty()) {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(file, true))) {
+                if (!endsWithNewline(file)) {
+                    bw.newLine();
+                }
+                for (String row : batch) {
+                    bw.write(row);
+                    bw.newLine();
+                }
+            }
+        } else {
+            return;
+        }
+
+        UserDirectory.fileWritten(modifiedBefore, lengthBefore);
+    }
+
+    // ✅ USER rows, blank line, BOOK rows, blank line, everything else; deleted rows dropped.
+    // For a username listed twice the first live row wins, as in UserDirectory.
+    private static List<String> compact(File file, List<String> batch) throws IOException {
+        Map<String, String> users = new LinkedHashMap<>();
+        Map<String, String> books = new LinkedHashMap<>();
+        List<String> rest = new ArrayList<>();
+        if (file.exists()) {
+            try (LineTokenizer existing = new LineTokenizer(new FileInputStream(file))) {
+                while (existing.next()) {
+                    compact(existing, users, books, rest);
+                }
+            }
+        }
+        byte[] appended = String.join("\n", batch).getBytes(StandardCharsets.UTF_8);
+        LineTokenizer lines = new LineTokenizer(appended, 0, appended.length);
+        while (lines.next()) {
+            compact(lines, users, books, rest);
+        }
+
+        List<String> compacted = new ArrayList<>(users.size() + books.size() + rest.size() + 2);
+        compacted.addAll(users.values());
+        compacted.add("");
+        compacted.addAll(books.values());
+        compacted.add("");
+        compacted.addAll(rest);
+        return compacted;
+    }
+
+    private static void compact(LineTokenizer line, Map<String, String> users, Map<String, String> books,
+                                List<String> rest) {
+        if (line.startsWith(USER)) {
+            String row = line.line();
+            users.putIfAbsent(line.split('|') > 1 ? fold(line.field(1)) : row, row);
+        } else if (line.startsWith(DELETED_USER_BYTES)) {
+            users.remove(fold(line.rest(DELETED_USER_BYTES.length)));
+        } else if (line.startsWith(BOOK)) {
+            String row = line.line();
+            books.put(line.split('|') > 3 ? line.field(3) : row, row);
+        } else if (line.startsWith(DELETED_BOOK_BYTES)) {
+            books.remove(line.rest(DELETED_BOOK_BYTES.length));
+        } else if (!line.isBlank()) {
+            rest.add(line.line());
+        }
+    }
+
+    // A row is loose if it sits after a later section: a USER row after a BOOK or event line,
+    // a BOOK row after an event line. Tombstones are always loose.
+    private static void countLooseLines(File file) throws IOException {
+        looseLines = 0;
+        tombstones = 0;
+        if (!file.exists()) {
+            return;
+        }
+        int section = 0; // 0 users, 1 books, 2 events
+        try (LineTokenizer lines = new LineTokenizer(new FileInputStream(file))) {
+            while (lines.next()) {
+                if (lines.startsWith(USER)) {
+                    looseLines += section > 0 ? 1 : 0;
+                } else if (lines.startsWith(BOOK)) {
+                    looseLines += section > 1 ? 1 : 0;
+                    section = Math.max(section, 1);
+                } else if (lines.startsWith(DELETED_USER_BYTES) || lines.startsWith(DELETED_BOOK_BYTES)) {
+                    looseLines++;
+                    tombstones++;
+                } else if (!lines.isBlank()) {
+                    section = 2;
+                }
+            }
+        }
+    }
+
+    private static boolean endsWithNewline(File file) throws IOException {
+        if (file.length() == 0) {
+            return true;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(file.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    private static String fold(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}
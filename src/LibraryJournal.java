@@ -0,0 +1,315 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead log for BookManager. Every mutation is written here as one
+// small framed entry ([length][crc32][payload]) instead of re-serializing the full lists;
+// a background compactor periodically folds the log into the books.dat/borrow_records.dat
+// snapshots and starts a fresh log.
+public class LibraryJournal {
+    private static final byte PUT_BOOK = 1;
+    private static final byte DELETE_BOOK = 2;
+    private static final byte SET_AVAILABLE = 3;
+    private static final byte PUT_BORROW_RECORD = 4;
+
+    private static final long COMPACT_INTERVAL_SECONDS = 30;
+    private static final int COMPACT_THRESHOLD = 10_000;
+
+    // Callbacks used while replaying the log on startup. Entries are idempotent upserts,
+    // so replaying a log that is already partly contained in the snapshot is harmless.
+    public interface Handler {
+        void putBook(Book book);
+        void deleteBook(String bookId);
+        void setAvailable(String bookId, boolean available);
+        void putBorrowRecord(BorrowRecord record);
+    }
+
+    private final File file;
+    private final File rotatedFile;
+    private FileOutputStream out;
+    private final ByteArrayOutputStream unwritten = new ByteArrayOutputStream(); // framed, not yet on disk
+    private int pendingEntries;
+    private ScheduledExecutorService compactor;
+    private Runnable compaction;
+
+    public LibraryJournal(String fileName) {
+        this.file = new File(fileName);
+        this.rotatedFile = new File(fileName + ".old");
+    }
+
+    // ✅ Replay the rotated log (left behind by an interrupted compaction) and then the live log
+    public synchronized void replay(Handler handler) {
+        replayFile(rotatedFile, handler);
+        long validLength = replayFile(file, handler);
+        try {
+            if (file.exists() && file.length() > validLength) {
+                // Drop a torn tail entry so new appends don't land behind garbage
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+            }
+            out = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long replayFile(File source, Handler handler) {
+        if (!source.exists()) {
+            return 0;
+        }
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                long expectedCrc = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > source.length()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != expectedCrc) {
+                    break;
+                }
+                apply(payload, handler);
+                offset += 8 + length;
+                pendingEntries++;
+            }
+        } catch (EOFException e) {
+            // Truncated entry at the end of the log: everything before it is still valid
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return offset;
+    }
+
+    private void apply(byte[] payload, Handler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        switch (op) {
+            case PUT_BOOK:
+                handler.putBook(readBook(in));
+                break;
+            case DELETE_BOOK:
+                handler.deleteBook(in.readUTF());
+                break;
+            case SET_AVAILABLE:
+                handler.setAvailable(in.readUTF(), in.readBoolean());
+                break;
+            case PUT_BORROW_RECORD:
+                handler.putBorrowRecord(readBorrowRecord(in));
+                break;
+            default:
+                throw new IOException("Unknown journal entry type: " + op);
+        }
+    }
+
+    public void putBook(Book book) {
+        append(PUT_BOOK, out -> writeBook(out, book));
+    }
+
+    public void deleteBook(String bookId) {
+        append(DELETE_BOOK, out -> out.writeUTF(bookId));
+    }
+
+    public void setAvailable(String bookId, boolean available) {
+        append(SET_AVAILABLE, out -> {
+            out.writeUTF(bookId);
+            out.writeBoolean(available);
+        });
+    }
+
+    public void putBorrowRecord(BorrowRecord record) {
+        append(PUT_BORROW_RECORD, out -> writeBorrowRecord(out, record));
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte op, EntryWriter writer) {
+        boolean compactNow;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream payload = new DataOutputStream(bytes);
+            payload.writeByte(op);
+            writer.write(payload);
+            byte[] data = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(data);
+
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(data.length + 8);
+            DataOutputStream frameOut = new DataOutputStream(frame);
+            frameOut.writeInt(data.length);
+            frameOut.writeInt((int) crc.getValue());
+            frameOut.write(data);
+
+            synchronized (this) {
+                frame.writeTo(unwritten);
+                pendingEntries++;
+                compactNow = pendingEntries == COMPACT_THRESHOLD && compactor != null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        // Entries queued while a write is pending go out together in one append
+        PersistenceExecutor.submit(file.getPath(), this::writeUnwritten);
+
+        if (compactNow) {
+            compactor.execute(compaction);
+        }
+    }
+
+    // Runs on the persistence thread
+    private synchronized void writeUnwritten() throws IOException {
+        if (unwritten.size() == 0) {
+            return;
+        }
+        if (out == null) {
+            out = new FileOutputStream(file, true);
+        }
+        unwritten.writeTo(out);
+        unwritten.reset();
+    }
+
+    public synchronized boolean hasPendingEntries() {
+        return pendingEntries > 0;
+    }
+
+    // ✅ Start a new, empty log. Called under the owner's lock right after it has captured
+    // a snapshot, so every entry in the rotated log is already covered by that snapshot.
+    public synchronized void rotate() throws IOException {
+        writeUnwritten();
+        if (out != null) {
+            out.close();
+        }
+        if (rotatedFile.exists() && file.exists()) {
+            // A previous compaction never finished: keep its entries by folding them in front
+            try (FileOutputStream old = new FileOutputStream(rotatedFile, true)) {
+                Files.copy(file.toPath(), old);
+            }
+            Files.delete(file.toPath());
+        } else if (file.exists()) {
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        out = new FileOutputStream(file, true);
+        pendingEntries = 0;
+    }
+
+    // ✅ The snapshot is safely on disk, so the rotated log is no longer needed
+    public synchronized void discardRotated() {
+        try {
+            Files.deleteIfExists(rotatedFile.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void startCompactor(Runnable compaction) {
+        if (compactor != null) {
+            return;
+        }
+        this.compaction = compaction;
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-journal-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(compaction,
+                COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // ✅ Write a snapshot file next to its final name and swap it in atomically
+    public static void writeSnapshot(String fileName, byte[] data) throws IOException {
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + ".tmp");
+        Files.write(temp, data);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeBook(DataOutputStream out, Book book) throws IOException {
+        out.writeUTF(book.getId());
+        out.writeUTF(book.getTitle());
+        out.writeUTF(book.getAuthor());
+        writeNullableString(out, book.getGenre());
+        out.writeInt(book.getPublicationYear());
+        out.writeBoolean(book.isAvailable());
+        writeNullableString(out, book.getLibraryLocation());
+    }
+
+    private static Book readBook(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String title = in.readUTF();
+        String author = in.readUTF();
+        String genre = readNullableString(in);
+        int year = in.readInt();
+        boolean available = in.readBoolean();
+        String location = readNullableString(in);
+        Book book = new Book(id, title, author, genre, year, location);
+        book.setAvailable(available);
+        return book;
+    }
+
+    private static void writeBorrowRecord(DataOutputStream out, BorrowRecord record) throws IOException {
+        out.writeUTF(record.getId());
+        out.writeUTF(record.getBookId());
+        out.writeUTF(record.getUserId());
+        writeDate(out, record.getRequestDay());
+        writeDate(out, record.getBorrowDay());
+        writeDate(out, record.getDueDay());
+        writeDate(out, record.getReturnDay());
+        out.writeUTF(record.getStatus().name());
+    }
+
+    private static BorrowRecord readBorrowRecord(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String bookId = in.readUTF();
+        String userId = in.readUTF();
+        int requestDay = readDate(in);
+        int borrowDay = readDate(in);
+        int dueDay = readDate(in);
+        int returnDay = readDate(in);
+        String status = in.readUTF();
+        try {
+            return new BorrowRecord(id, bookId, userId, requestDay, borrowDay, dueDay, returnDay,
+                    BorrowRecord.Status.valueOf(status));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown borrow status: " + status);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // Epoch days, written as longs with Long.MIN_VALUE for "no date"
+    private static void writeDate(DataOutputStream out, int epochDay) throws IOException {
+        out.writeLong(epochDay != BorrowRecord.NO_DATE ? epochDay : Long.MIN_VALUE);
+    }
+
+    private static int readDate(DataInputStream in) throws IOException {
+        long epochDay = in.readLong();
+        return epochDay == Long.MIN_VALUE ? BorrowRecord.NO_DATE : (int) epochDay;
+    }
+}
@@ -0,0 +1,385 @@
+import java.time.LocalDate;
+import java.util.*;
+
+// Minimal JSON for the catalog server protocol (the project has no third-party libraries).
+// Values map to Map<String, Object>, List<Object>, String, Double/Long, Boolean and null;
+// the book, borrow record and user conversions live here so client and server agree.
+public class LibraryJson {
+
+    // ---------------------------------------------------------------- entities
+
+    public static Map<String, Object> book(Book book) {
+        if (book == null) return null;
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", book.getId());
+        json.put("title", book.getTitle());
+        json.put("author", book.getAuthor());
+        json.put("genre", book.getGenre());
+        json.put("year", book.getPublicationYear());
+        json.put("available", book.isAvailable());
+        json.put("location", book.getLibraryLocation());
+        return json;
+    }
+
+    public static Book toBook(Object value) {
+        if (value == null) return null;
+        Map<?, ?> json = (Map<?, ?>) value;
+        Book book = new Book((String) json.get("id"), (String) json.get("title"), (String) json.get("author"),
+                (String) json.get("genre"), ((Number) json.get("year")).intValue(), (String) json.get("location"));
+        book.setAvailable(Boolean.TRUE.equals(json.get("available")));
+        return book;
+    }
+
+    public static Map<String, Object> borrowRecord(BorrowRecord record) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", record.getId());
+        json.put("bookId", record.getBookId());
+        json.put("userId", record.getUserId());
+        json.put("requestDate", date(record.getRequestDate()));
+        json.put("borrowDate", date(record.getBorrowDate()));
+        json.put("dueDate", date(record.getDueDate()));
+        json.put("returnDate", date(record.getReturnDate()));
+        json.put("status", record.getStatus().name());
+        return json;
+    }
+
+    public static BorrowRecord toBorrowRecord(Object value) {
+        Map<?, ?> json = (Map<?, ?>) value;
+        return new BorrowRecord((String) json.get("id"), (String) json.get("bookId"), (String) json.get("userId"),
+                toDay(json.get("requestDate")), toDay(json.get("borrowDate")), toDay(json.get("dueDate")),
+                toDay(json.get("returnDate")), BorrowRecord.Status.valueOf((String) json.get("status")));
+    }
+
+    public static Map<String, Object> borrowRecordView(BorrowRecordView view) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("record", borrowRecord(view.getRecord()));
+        json.put("book", book(view.getBook()));
+        return json;
+    }
+
+    public static BorrowRecordView toBorrowRecordView(Object value) {
+        Map<?, ?> json = (Map<?, ?>) value;
+        return new BorrowRecordView(toBorrowRecord(json.get("record")), toBook(json.get("book")));
+    }
+
+    // Passwords only ever travel from client to server (registration), never back
+    public static Map<String, Object> user(User user, boolean withPassword) {
+        if (user == null) return null;
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("username", user.getUsername());
+        if (withPassword) {
+            json.put("password", user.getPassword());
+        }
+        json.put("fullName", user.getFullName());
+        json.put("contact", user.getContact());
+        json.put("role", user.getRole());
+        json.put("membershipId", user.getMembershipId());
+        return json;
+    }
+
+    public static User toUser(Object value) {
+        if (value == null) return null;
+        Map<?, ?> json = (Map<?, ?>) value;
+        Object password = json.get("password");
+        return new User((String) json.get("username"), password != null ? (String) password : "",
+                (String) json.get("fullName"), (String) json.get("contact"), (String) json.get("role"),
+                (String) json.get("membershipId"));
+    }
+
+    public static Map<String, Object> selection(CatalogFacets.Selection selection) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("genres", new ArrayList<>(selection.genres));
+        json.put("locations", new ArrayList<>(selection.locations));
+        json.put("fromYear", selection.fromYear);
+        json.put("toYear", selection.toYear);
+        json.put("availableOnly", selection.availableOnly);
+        return json;
+    }
+
+    public static CatalogFacets.Selection toSelection(Object value) {
+        Map<?, ?> json = (Map<?, ?>) value;
+        return new CatalogFacets.Selection(strings(json.get("genres")), strings(json.get("locations")),
+                ((Number) json.get("fromYear")).intValue(), ((Number) json.get("toYear")).intValue(),
+                Boolean.TRUE.equals(json.get("availableOnly")));
+    }
+
+    // Facet values can be null (no genre), which a JSON object key can't be, so each facet
+    // is a list of [value, count] pairs
+    public static Map<String, Object> facetCounts(CatalogFacets.Counts counts) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("genres", pairs(counts.genres));
+        json.put("locations", pairs(counts.locations));
+        json.put("years", pairs(counts.years));
+        json.put("available", counts.available);
+        json.put("matching", counts.matching);
+        return json;
+    }
+
+    public static CatalogFacets.Counts toFacetCounts(Object value) {
+        Map<?, ?> json = (Map<?, ?>) value;
+        Map<String, Integer> genres = new LinkedHashMap<>();
+        Map<String, Integer> locations = new LinkedHashMap<>();
+        SortedMap<Integer, Integer> years = new TreeMap<>();
+        for (Object pair : (List<?>) json.get("genres")) {
+            genres.put((String) ((List<?>) pair).get(0), ((Number) ((List<?>) pair).get(1)).intValue());
+        }
+        for (Object pair : (List<?>) json.get("locations")) {
+            locations.put((String) ((List<?>) pair).get(0), ((Number) ((List<?>) pair).get(1)).intValue());
+        }
+        for (Object pair : (List<?>) json.get("years")) {
+            years.put(((Number) ((List<?>) pair).get(0)).intValue(), ((Number) ((List<?>) pair).get(1)).intValue());
+        }
+        return new CatalogFacets.Counts(genres, locations, years, ((Number) json.get("available")).intValue(),
+                ((Number) json.get("matching")).intValue());
+    }
+
+    private static List<Object> pairs(Map<?, Integer> counts) {
+        List<Object> json = new ArrayList<>(counts.size());
+        for (Map.Entry<?, Integer> count : counts.entrySet()) {
+            json.add(Arrays.asList(count.getKey(), count.getValue()));
+        }
+        return json;
+    }
+
+    private static List<String> strings(Object value) {
+        List<String> strings = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            strings.add((String) item);
+        }
+        return strings;
+    }
+
+    public static <T> List<Object> list(Collection<T> values, java.util.function.Function<T, Object> convert) {
+        List<Object> json = new ArrayList<>(values.size());
+        for (T value : values) {
+            json.add(convert.apply(value));
+        }
+        return json;
+    }
+
+    private static String date(LocalDate date) {
+        return date != null ? date.toString() : null;
+    }
+
+    private static int toDay(Object value) {
+        return value != null ? (int) LocalDate.parse((String) value).toEpochDay() : BorrowRecord.NO_DATE;
+    }
+
+    // ---------------------------------------------------------------- writing
+
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+        write(out, value);
+        return out.toString();
+    }
+
+    private static void write(StringBuilder out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) out.append(',');
+                first = false;
+                writeString(out, String.valueOf(entry.getKey()));
+                out.append(':');
+                write(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) out.append(',');
+                first = false;
+                write(out, item);
+            }
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Not a JSON value: " + value.getClass());
+        }
+    }
+
+    private static void writeString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    // ---------------------------------------------------------------- parsing
+
+    public static Object parse(String text) {
+        Parser parser = new Parser(text);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected trailing characters");
+        }
+        return value;
+    }
+
+    private static class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default: return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++; // {
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                map.put(key, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++; // [
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder out = new StringBuilder();
+            while (true) {
+                if (pos >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return out.toString();
+                }
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char escape = text.charAt(pos++);
+                switch (escape) {
+                    case 'n': out.append('\n'); break;
+                    case 'r': out.append('\r'); break;
+                    case 't': out.append('\t'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'u':
+                        out.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: out.append(escape); // " \ /
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String number = text.substring(start, pos);
+            if (number.isEmpty()) {
+                throw error("Unexpected character");
+            }
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return Double.parseDouble(number);
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw error("Unexpected token");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos + " of JSON input");
+        }
+    }
+}
@@ -0,0 +1,570 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Rebuilds users, books and loans from LibraryData.txt (USER/BOOK rows, their tombstones and
+// older event lines) plus the LibraryHistory segments, for when books.dat or
+// borrow_records.dat can't be read.
+//
+// The logs are cut into chunks at line boundaries and parsed in parallel, straight from the
+// bytes: the record type is matched by prefix and fields are located by scanning for '|',
+// so only the user and book ids become Strings. Every row is routed to a partition by book
+// id; the partitions then apply their rows in log order, also in parallel, which keeps each
+// book's history in sequence.
+//
+// What the log doesn't record can't come back: pending or rejected requests, rejected
+// return requests, and (without a books.dat) genre, year and location. Loans are due two
+// weeks after the borrow, as when BorrowRecord.moveTo() approves one.
+//
+//   java -cp out LibraryReplay [--threads 4] [--rebuild]
+public class LibraryReplay {
+    private static final String DATA_FILE = "LibraryData.txt";
+    private static final int CHUNK_BYTES = 4 << 20;
+
+    private static final byte BOOK = 1;
+    private static final byte DELETED_BOOK = 2;
+    private static final byte BORROW = 3;
+    private static final byte RETURN_REQUEST = 4;
+    private static final byte RETURN = 5;
+
+    private static final byte[] BOOK_PREFIX = LineTokenizer.ascii("BOOK|");
+    private static final byte[] BORROW_PREFIX = LineTokenizer.ascii("BORROW|");
+    private static final byte[] RETURN_PREFIX = LineTokenizer.ascii("RETURN|");
+    private static final byte[] RETURN_REQUEST_PREFIX = LineTokenizer.ascii("RETURN_REQUEST|");
+    private static final byte[] USER_PREFIX = LineTokenizer.ascii("USER|");
+    private static final byte[] DELETED_USER_PREFIX = LineTokenizer.ascii(LibraryDataFile.DELETED_USER);
+    private static final byte[] DELETED_BOOK_PREFIX = LineTokenizer.ascii(LibraryDataFile.DELETED_BOOK);
+
+    private static final DateTimeFormatter LEGACY_TIME = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH);
+    private static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    public static class Result {
+        public final List<User> users;
+        public final List<Book> books;            // catalog order: snapshot order, then new BOOK rows
+        public final List<BorrowRecord> records;  // in borrow order
+        public final long events;                 // BORROW / RETURN_REQUEST / RETURN lines applied
+        public final long orphanEvents;           // returns with no open loan, borrows of a book already out
+
+        Result(List<User> users, List<Book> books, List<BorrowRecord> records, long events, long orphanEvents) {
+            this.users = users;
+            this.books = books;
+            this.records = records;
+            this.events = events;
+            this.orphanEvents = orphanEvents;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean rebuild = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            if (args[i].equals("--rebuild")) rebuild = true;
+        }
+
+        List<Book> snapshot;
+        try {
+            snapshot = LibraryCodec.readBooks("books.dat");
+        } catch (IOException e) {
+            System.err.println("books.dat unreadable, rebuilding without it: " + e.getMessage());
+            snapshot = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        Result result = rebuild(snapshot, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d users, %d books, %d loans from %d events (%d orphaned) in %.2fs on %d threads (%.0f events/s)%n",
+                result.users.size(), result.books.size(), result.records.size(), result.events, result.orphanEvents,
+                seconds, threads, result.events / seconds);
+
+        if (rebuild) {
+            LibraryJournal.writeSnapshot("books.dat", LibraryCodec.encodeBooks(result.books));
+            LibraryJournal.writeSnapshot("borrow_records.dat", LibraryCodec.encodeBorrowRecords(result.records));
+            System.out.println("Wrote books.dat and borrow_records.dat");
+        }
+    }
+
+    // ✅ Replay LibraryData.txt and the event history in the working directory. Book details
+    // come from the snapshot where it has them; pass an empty list if books.dat is gone too.
+    public static Result rebuild(List<Book> snapshot, int threads) throws IOException {
+        List<Path> logs = new ArrayList<>();
+        if (Files.exists(Paths.get(DATA_FILE))) {
+            logs.add(Paths.get(DATA_FILE));
+        }
+        logs.addAll(LibraryAuditLog.segments());
+        return rebuild(logs, snapshot, threads);
+    }
+
+    public static Result rebuild(List<Path> logs, List<Book> snapshot, int threads) throws IOException {
+        int partitions = Math.max(1, threads);
+        List<Chunk> chunks = split(logs);
+        ExecutorService pool = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "library-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // Phase 1: parse every chunk into per-partition row batches
+            List<Future<Batch[]>> parsed = new ArrayList<>();
+            for (int c = 0; c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                long firstSeq = (long) (c + 1) << 32; // sequence numbers below 2^32 are snapshot positions
+                parsed.add(pool.submit(() -> parse(chunk, firstSeq, partitions)));
+            }
+            Batch[][] batches = new Batch[chunks.size()][];
+            for (int c = 0; c < batches.length; c++) {
+                batches[c] = parsed.get(c).get();
+            }
+
+            // Phase 2: each partition applies its rows in log order
+            Map<String, Integer> snapshotIndex = new HashMap<>();
+            for (int i = 0; i < snapshot.size(); i++) {
+                snapshotIndex.putIfAbsent(snapshot.get(i).getId(), i);
+            }
+            List<Future<Partition>> applied = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int partition = p;
+                applied.add(pool.submit(() -> {
+                    Partition state = new Partition(snapshot, snapshotIndex);
+                    for (Batch[] chunk : batches) {
+                        state.apply(chunk[partition]);
+                    }
+                    return state;
+                }));
+            }
+            List<Partition> states = new ArrayList<>();
+            for (Future<Partition> future : applied) {
+                states.add(future.get());
+            }
+            return merge(states, batches, snapshot);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Replay interrupted");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ---------------------------------------------------------------- chunking and parsing
+
+    private static class Chunk {
+        final Path file;
+        final long start;
+        final int length;
+
+        Chunk(Path file, long start, int length) {
+            this.file = file;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    // ✅ Cut each file into ~CHUNK_BYTES pieces that end right after a newline
+    private static List<Chunk> split(List<Path> logs) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        for (Path log : logs) {
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+                long size = channel.size();
+                long start = 0;
+                while (start < size) {
+                    long end = Math.min(size, start + CHUNK_BYTES);
+                    while (end < size) {
+                        probe.clear();
+                        int read = channel.read(probe, end);
+                        int newline = -1;
+                        for (int i = 0; i < read && newline < 0; i++) {
+                            if (probe.get(i) == '\n') newline = i;
+                        }
+                        if (newline >= 0) {
+                            end += newline + 1;
+                            break;
+                        }
+                        end += read;
+                    }
+                    end = Math.min(end, size);
+                    if (end - start > Integer.MAX_VALUE) {
+                        throw new IOException(log + ": line too long at offset " + start);
+                    }
+                    chunks.add(new Chunk(log, start, (int) (end - start)));
+                    start = end;
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static Batch[] parse(Chunk chunk, long firstSeq, int partitions) throws IOException {
+        byte[] data = new byte[chunk.length];
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunk.start + buffer.position()) < 0) break;
+            }
+        }
+
+        Batch[] batches = new Batch[partitions];
+        for (int p = 0; p < partitions; p++) {
+            batches[p] = new Batch();
+        }
+        long seq = firstSeq;
+        LineTokenizer lines = new LineTokenizer(data, 0, data.length);
+        while (lines.next()) {
+            parseLine(lines, seq++, batches);
+        }
+        batches[0].lines = (int) (seq - firstSeq);
+        return batches;
+    }
+
+    private static void parseLine(LineTokenizer line, long seq, Batch[] batches) {
+        byte type;
+        if (line.length() < 5) {
+            return;
+        } else if (line.startsWith(BORROW_PREFIX)) {
+            type = BORROW;
+        } else if (line.startsWith(RETURN_PREFIX)) {
+            type = RETURN;
+        } else if (line.startsWith(RETURN_REQUEST_PREFIX)) {
+            type = RETURN_REQUEST;
+        } else if (line.startsWith(BOOK_PREFIX)) {
+            type = BOOK;
+        } else if (line.startsWith(DELETED_BOOK_PREFIX)) {
+            type = DELETED_BOOK;
+        } else if (line.startsWith(USER_PREFIX)) {
+            parseUser(line, seq, batches[0], '|', 1);
+            return;
+        } else if (line.startsWith(DELETED_USER_PREFIX)) {
+            batches[0].user(seq, null, line.rest(DELETED_USER_PREFIX.length));
+            return;
+        } else {
+            parseUser(line, seq, batches[0], ',', 0); // old comma-separated user row
+            return;
+        }
+
+        int count = line.split('|');
+        switch (type) {
+            case BOOK: {
+                // BOOK|title|author|id|status
+                if (count < 4) return;
+                String bookId = line.field(3);
+                batches[partition(bookId, batches.length)].row(type, seq, bookId, line.field(1), line.field(2), UNKNOWN_TIME);
+                return;
+            }
+            case DELETED_BOOK: {
+                String bookId = line.rest(DELETED_BOOK_PREFIX.length);
+                batches[partition(bookId, batches.length)].row(type, seq, bookId, null, null, UNKNOWN_TIME);
+                return;
+            }
+            default: {
+                // <TYPE>|user|book|time[|epoch millis]
+                if (count < 3) return;
+                String bookId = line.field(2);
+                long millis = count >= 5 ? line.longField(4) : count == 4 ? legacyTime(line.field(3)) : UNKNOWN_TIME;
+                batches[partition(bookId, batches.length)].row(type, seq, bookId, line.field(1), null,
+                        millis >= 0 ? millis : UNKNOWN_TIME);
+            }
+        }
+    }
+
+    private static void parseUser(LineTokenizer line, long seq, Batch users, char separator, int first) {
+        if (line.split(separator) < first + 6) {
+            return;
+        }
+        User user = new User(line.trimmedField(first), line.trimmedField(first + 1), line.trimmedField(first + 2),
+                line.trimmedField(first + 3), line.trimmedField(first + 4), line.trimmedField(first + 5));
+        users.user(seq, user, first == 0 ? "legacy" : null);
+    }
+
+    private static long legacyTime(String text) {
+        try {
+            return ZonedDateTime.parse(text.trim(), LEGACY_TIME).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return UNKNOWN_TIME;
+        }
+    }
+
+    private static int partition(String bookId, int partitions) {
+        return Math.floorMod(bookId.hashCode(), partitions);
+    }
+
+    // Rows of one chunk for one partition, as parallel arrays. Partition 0 also carries the
+    // chunk's user rows, which are applied in order on the calling thread.
+    private static class Batch {
+        int size;
+        byte[] types = new byte[64];
+        long[] seqs = new long[64];
+        String[] bookIds = new String[64];
+        String[] values = new String[64];  // user id, or the title of a BOOK row
+        String[] authors = new String[64];
+        long[] millis = new long[64];
+        List<Object[]> users = new ArrayList<>(); // {seq, User or null, username / "legacy"}
+        int lines; // lines in the chunk (set on partition 0)
+
+        void row(byte type, long seq, String bookId, String value, String author, long time) {
+            if (size == types.length) {
+                int capacity = size * 2;
+                types = Arrays.copyOf(types, capacity);
+                seqs = Arrays.copyOf(seqs, capacity);
+                bookIds = Arrays.copyOf(bookIds, capacity);
+                values = Arrays.copyOf(values, capacity);
+                authors = Arrays.copyOf(authors, capacity);
+                millis = Arrays.copyOf(millis, capacity);
+            }
+            types[size] = type;
+            seqs[size] = seq;
+            bookIds[size] = bookId;
+            values[size] = value;
+            authors[size] = author;
+            millis[size] = time;
+            size++;
+        }
+
+        void user(long seq, User user, String name) {
+            users.add(new Object[]{seq, user, name});
+        }
+    }
+
+    // ---------------------------------------------------------------- applying
+
+    private static class BookState {
+        final String id;
+        Book book;       // null until a BOOK row or the snapshot names it
+        long seq = Long.MAX_VALUE;
+        boolean deleted;
+        boolean touched; // availability is decided by the log
+
+        // The loan currently out, kept as plain fields until it is closed
+        String borrower;
+        long borrowMillis;
+        long borrowSeq;
+        boolean returnRequested;
+
+        BookState(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class Partition {
+        final List<Book> snapshot;
+        final Map<String, Integer> snapshotIndex;
+        final Map<String, BookState> books = new HashMap<>();
+        final List<BorrowRecord> records = new ArrayList<>();
+        long[] recordSeqs = new long[64];
+        long events;
+        long orphans;
+        final ZoneId zone = ZoneId.systemDefault();
+        int day; // epoch day of the last event time seen
+        long dayStart = Long.MAX_VALUE;
+        long dayEnd = Long.MIN_VALUE;
+
+        Partition(List<Book> snapshot, Map<String, Integer> snapshotIndex) {
+            this.snapshot = snapshot;
+            this.snapshotIndex = snapshotIndex;
+        }
+
+        BookState state(String bookId) {
+            BookState state = books.get(bookId);
+            if (state == null) {
+                state = new BookState(bookId);
+                Integer index = snapshotIndex.get(bookId);
+                if (index != null) {
+                    Book known = snapshot.get(index);
+                    state.book = copy(known, known.getTitle(), known.getAuthor());
+                    state.book.setAvailable(known.isAvailable());
+                    state.seq = index;
+                }
+                books.put(bookId, state);
+            }
+            return state;
+        }
+
+        void apply(Batch batch) {
+            for (int i = 0; i < batch.size; i++) {
+                String bookId = batch.bookIds[i];
+                BookState state = state(bookId);
+                switch (batch.types[i]) {
+                    case BOOK:
+                        if (state.book == null || state.deleted) {
+                            Integer index = snapshotIndex.get(bookId);
+                            Book details = index != null ? snapshot.get(index) : null;
+                            state.book = details != null ? copy(details, batch.values[i], batch.authors[i])
+                                    : new Book(bookId, batch.values[i], batch.authors[i], null, 0, null);
+                        }
+                        state.seq = Math.min(state.seq, batch.seqs[i]);
+                        state.deleted = false;
+                        break;
+                    case DELETED_BOOK:
+                        state.deleted = true;
+                        break;
+                    case BORROW:
+                        events++;
+                        state.touched = true;
+                        if (state.borrower != null) {
+                            orphans++; // its RETURN never made it to the log
+                            close(state, batch.millis[i]);
+                        }
+                        state.borrower = batch.values[i];
+                        state.borrowMillis = batch.millis[i];
+                        state.borrowSeq = batch.seqs[i];
+                        state.returnRequested = false;
+                        break;
+                    case RETURN_REQUEST:
+                        events++;
+                        if (state.borrower != null) {
+                            state.returnRequested = true;
+                        } else {
+                            orphans++;
+                        }
+                        break;
+                    case RETURN:
+                        events++;
+                        state.touched = true;
+                        if (state.borrower != null) {
+                            close(state, batch.millis[i]);
+                        } else {
+                            orphans++;
+                        }
+                        break;
+                }
+            }
+        }
+
+        void close(BookState state, long returnMillis) {
+            add(record(state, day(returnMillis), BorrowRecord.Status.RETURNED), state.borrowSeq);
+            state.borrower = null;
+        }
+
+        // ✅ The loan as a BorrowRecord; its id is derived from book, borrower and time, so
+        // replaying the same log twice gives the same ids
+        BorrowRecord record(BookState state, int returnDay, BorrowRecord.Status status) {
+            int borrowed = day(state.borrowMillis);
+            long idLow = state.borrowMillis != UNKNOWN_TIME ? state.borrowMillis : state.borrowSeq;
+            long idHigh = (long) state.id.hashCode() << 32 | (state.borrower.hashCode() & 0xFFFFFFFFL);
+            return new BorrowRecord(idHigh, idLow, state.id, state.borrower, borrowed, borrowed,
+                    borrowed != BorrowRecord.NO_DATE ? borrowed + BorrowRecord.LOAN_DAYS : BorrowRecord.NO_DATE, returnDay, status);
+        }
+
+        void add(BorrowRecord record, long seq) {
+            if (records.size() == recordSeqs.length) {
+                recordSeqs = Arrays.copyOf(recordSeqs, recordSeqs.length * 2);
+            }
+            recordSeqs[records.size()] = seq;
+            records.add(record);
+        }
+
+        // Events come roughly in time order, so the last day's bounds usually answer
+        int day(long millis) {
+            if (millis == UNKNOWN_TIME) {
+                return BorrowRecord.NO_DATE;
+            }
+            if (millis < dayStart || millis >= dayEnd) {
+                LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+                day = (int) date.toEpochDay();
+                dayStart = date.atStartOfDay(zone).toInstant().toEpochMilli();
+                dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            return day;
+        }
+    }
+
+    private static Book copy(Book book, String title, String author) {
+        return new Book(book.getId(), title, author, book.getGenre(), book.getPublicationYear(), book.getLibraryLocation());
+    }
+
+    private static Result merge(List<Partition> partitions, Batch[][] batches, List<Book> snapshot) {
+        // Users: rows in log order, first live row per name wins (as in UserDirectory)
+        Map<String, User> users = new LinkedHashMap<>();
+        Map<String, User> legacyUsers = new LinkedHashMap<>();
+        for (Batch[] chunk : batches) {
+            for (Object[] row : chunk[0].users) {
+                User user = (User) row[1];
+                if (user == null) {
+                    users.remove(fold((String) row[2]));
+                } else if (row[2] != null) {
+                    legacyUsers.putIfAbsent(fold(user.getUsername()), user);
+                } else {
+                    users.putIfAbsent(fold(user.getUsername()), user);
+                }
+            }
+        }
+        legacyUsers.forEach(users::putIfAbsent);
+
+        // Sequence numbers become global positions: snapshot index, then line number across the logs
+        long[] lineBase = new long[batches.length];
+        long position = snapshot.size();
+        for (int c = 0; c < batches.length; c++) {
+            lineBase[c] = position;
+            position += batches[c][0].lines;
+        }
+
+        List<BookState> states = new ArrayList<>();
+        List<BorrowRecord> records = new ArrayList<>();
+        long[] recordKeys = new long[0];
+        long events = 0;
+        long orphans = 0;
+        Set<String> seen = new HashSet<>();
+        for (Partition partition : partitions) {
+            events += partition.events;
+            orphans += partition.orphans;
+            for (BookState state : partition.books.values()) {
+                if (state.borrower != null) {
+                    // Still out, or waiting for its return to be approved
+                    partition.add(partition.record(state, BorrowRecord.NO_DATE,
+                            state.returnRequested ? BorrowRecord.Status.RETURN_PENDING : BorrowRecord.Status.APPROVED),
+                            state.borrowSeq);
+                }
+                if (state.book != null) {
+                    seen.add(state.book.getId());
+                    if (!state.deleted) {
+                        if (state.touched) {
+                            state.book.setAvailable(state.borrower == null);
+                        }
+                        states.add(state);
+                    }
+                }
+            }
+            recordKeys = Arrays.copyOf(recordKeys, records.size() + partition.records.size());
+            for (int i = 0; i < partition.records.size(); i++) {
+                recordKeys[records.size() + i] = position(partition.recordSeqs[i], lineBase) << 32 | (records.size() + i);
+            }
+            records.addAll(partition.records);
+        }
+
+        // (position << 32 | index) keys sort in log order without boxing
+        long[] bookKeys = new long[states.size()];
+        for (int i = 0; i < bookKeys.length; i++) {
+            bookKeys[i] = position(states.get(i).seq, lineBase) << 32 | i;
+        }
+        Arrays.sort(bookKeys);
+        List<Book> books = new ArrayList<>(states.size());
+        for (long key : bookKeys) {
+            books.add(states.get((int) key).book);
+        }
+        for (Book book : snapshot) {
+            if (!seen.contains(book.getId())) {
+                books.add(book); // never mentioned in the log
+            }
+        }
+
+        Arrays.sort(recordKeys);
+        List<BorrowRecord> ordered = new ArrayList<>(recordKeys.length);
+        for (long key : recordKeys) {
+            ordered.add(records.get((int) key));
+        }
+        return new Result(new ArrayList<>(users.values()), books, ordered, events, orphans);
+    }
+
+    private static long position(long seq, long[] lineBase) {
+        return seq < (1L << 32) ? seq : lineBase[(int) (seq >>> 32) - 1] + (seq & 0xFFFFFFFFL);
+    }
+
+    private static String fold(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+}
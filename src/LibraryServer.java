@@ -0,0 +1,332 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Headless catalog server: one JVM owns BookManager, AuthManager and UserFileManager (and
+// so the data files), and desktops connect to it with RemoteLibraryService. Every request
+// runs on its own virtual thread.
+//
+// Protocol: POST /api/<method> with a JSON object of arguments; the reply is
+// {"result": ...} or {"error": "..."}. authenticate returns a session token that later
+// calls send in the X-Library-Session header. Patrons can only act on their own loans;
+// catalog and user administration need an admin session. A session no request has used for
+// SESSION_IDLE_MINUTES is dropped (an open window keeps its session by polling).
+//
+//   java -cp out Main --server [--port 8085]
+public class LibraryServer {
+    public static final int DEFAULT_PORT = 8085;
+    public static final String SESSION_HEADER = "X-Library-Session";
+
+    private static final Set<String> OPEN_METHODS = Set.of("authenticate", "userExists", "registerUser");
+    private static final int MAX_CHANGES = 4096;
+    private static final long SESSION_IDLE_MINUTES = 30;
+    private static final Set<String> ADMIN_METHODS = Set.of("loadUsers", "deleteUser", "addBook", "deleteBook",
+            "approveBorrow", "rejectBorrow", "approveReturn", "rejectReturn",
+            "approveBorrows", "rejectBorrows", "approveReturns", "rejectReturns");
+
+    private final HttpServer server;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Catalog changes for the clients' pollers, oldest first: {version, index, book}, where
+    // the book is null for an add or delete (the rows after it moved, so clients re-read)
+    private final ArrayDeque<Object[]> changes = new ArrayDeque<>();
+    private long catalogVersion;
+    private final SecureRandom random = new SecureRandom();
+    private ScheduledExecutorService sweeper;
+
+    private LibraryServer(HttpServer server) {
+        this.server = server;
+    }
+
+    // ✅ Load the library and start serving; the returned server keeps the JVM alive
+    public static LibraryServer start(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(port), 1024);
+        LibraryServer library = new LibraryServer(http);
+        http.createContext("/api/", library::handle);
+        http.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+
+        library.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "library-session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        library.sweeper.scheduleWithFixedDelay(library::expireSessions, 1, 1, TimeUnit.MINUTES);
+
+        // Clients poll these to notice catalog changes made by other desktops
+        BookManager.addCatalogListener(new BookManager.CatalogListener() {
+            public void bookAdded(int index, Book book) { library.recordChange(index, null); }
+            public void bookRemoved(int index, Book book) { library.recordChange(index, null); }
+            public void bookChanged(int index, Book book) { library.recordChange(index, book); }
+        });
+        BookManager.getBookCount(); // load the data files before taking requests
+
+        http.start();
+        System.out.println("Library server listening on port " + http.getAddress().getPort());
+        return library;
+    }
+
+    // ✅ Drop sessions whose clients went away without logging out
+    private void expireSessions() {
+        long idleSince = System.nanoTime() - TimeUnit.MINUTES.toNanos(SESSION_IDLE_MINUTES);
+        sessions.values().removeIf(session -> session.lastUsed - idleSince < 0);
+    }
+
+    private synchronized void recordChange(int index, Book book) {
+        changes.addLast(new Object[] { ++catalogVersion, index, book });
+        if (changes.size() > MAX_CHANGES) {
+            changes.removeFirst();
+        }
+    }
+
+    // ✅ What changed after the client's version: the rows whose availability flipped (each
+    // once, in its latest state), or reload when rows were added or deleted, the log no
+    // longer reaches back that far, or the server restarted. A client without a version
+    // (-1) only gets the current one.
+    private synchronized Map<String, Object> catalogChanges(long since) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", catalogVersion);
+        boolean reload = since > catalogVersion // the server restarted
+                || (since >= 0 && since < catalogVersion && (long) changes.getFirst()[0] > since + 1);
+        Map<Integer, Book> changed = new LinkedHashMap<>();
+        if (since >= 0 && !reload) {
+            for (Iterator<Object[]> it = changes.descendingIterator(); it.hasNext(); ) {
+                Object[] change = it.next();
+                if ((long) change[0] <= since) {
+                    break;
+                }
+                if (change[2] == null) {
+                    reload = true;
+                    break;
+                }
+                changed.putIfAbsent((Integer) change[1], (Book) change[2]);
+            }
+        }
+        result.put("reload", reload);
+        List<Object> books = new ArrayList<>();
+        if (!reload) {
+            for (Map.Entry<Integer, Book> row : changed.entrySet()) {
+                books.add(Arrays.asList(row.getKey(), LibraryJson.book(row.getValue())));
+            }
+        }
+        result.put("changed", books);
+        return result;
+    }
+
+    public void stop() {
+        sweeper.shutdownNow();
+        server.stop(1);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        Map<String, Object> reply = new LinkedHashMap<>();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                throw new ApiException(405, "Use POST");
+            }
+            String method = exchange.getRequestURI().getPath().substring("/api/".length());
+            Map<?, ?> args;
+            try (InputStream in = exchange.getRequestBody()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                args = body.isBlank() ? Collections.emptyMap() : (Map<?, ?>) LibraryJson.parse(body);
+            }
+            String session = String.valueOf(exchange.getRequestHeaders().getFirst(SESSION_HEADER));
+            Session open = sessions.get(session);
+            User caller = null;
+            if (open != null) {
+                open.lastUsed = System.nanoTime();
+                caller = open.user;
+            }
+            if (!OPEN_METHODS.contains(method) && caller == null) {
+                throw new ApiException(401, "Log in first");
+            }
+            if (ADMIN_METHODS.contains(method) && !isAdmin(caller)) {
+                throw new ApiException(403, "Admins only");
+            }
+            reply.put("result", call(method, args, caller, session));
+        } catch (ApiException e) {
+            status = e.status;
+            reply.put("error", e.getMessage());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            status = 400;
+            reply.put("error", String.valueOf(e.getMessage()));
+        }
+
+        byte[] body = LibraryJson.write(reply).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Object call(String method, Map<?, ?> args, User caller, String session) {
+        switch (method) {
+            case "authenticate": {
+                User user = AuthManager.authenticate(string(args, "username"), string(args, "password"));
+                if (user == null) {
+                    return null;
+                }
+                byte[] token = new byte[24];
+                random.nextBytes(token);
+                String newSession = Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+                sessions.put(newSession, new Session(user));
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("session", newSession);
+                result.put("user", LibraryJson.user(user, false));
+                return result;
+            }
+            case "logout":
+                sessions.remove(session);
+                return true;
+            case "userExists":
+                return AuthManager.userExists(string(args, "username"));
+            case "registerUser": {
+                User user = LibraryJson.toUser(args.get("user"));
+                // Self-service registration always creates a patron account
+                return AuthManager.registerUser(new User(user.getUsername(), user.getPassword(), user.getFullName(),
+                        user.getContact(), "user", user.getMembershipId()));
+            }
+            case "loadUsers":
+                return LibraryJson.list(UserFileManager.loadUsers(), user -> LibraryJson.user(user, false));
+            case "deleteUser":
+                UserFileManager.deleteUser(string(args, "username"));
+                return true;
+
+            case "catalogChanges":
+                return catalogChanges(args.get("since") instanceof Number ? ((Number) args.get("since")).longValue() : -1);
+            case "getBookCount":
+                return BookManager.getBookCount();
+            case "getAvailableBookCount":
+                return BookManager.getAvailableBookCount();
+            case "getBooks": {
+                int offset = integer(args, "offset", 0);
+                int limit = Math.min(integer(args, "limit", 100), 1000);
+                List<Object> page = new ArrayList<>();
+                for (int i = offset; i < offset + limit; i++) {
+                    Book book = BookManager.getBookAt(i);
+                    if (book == null) break;
+                    page.add(LibraryJson.book(book));
+                }
+                return page;
+            }
+            case "searchByTitleOrAuthor":
+                return LibraryJson.list(BookManager.searchByTitleOrAuthor(string(args, "query"),
+                        integer(args, "limit", Integer.MAX_VALUE)), LibraryJson::book);
+            case "search": {
+                int offset = Math.max(0, integer(args, "offset", 0));
+                int limit = integer(args, "limit", Integer.MAX_VALUE);
+                List<Book> found = BookManager.query(new BookQuery().text(string(args, "text"))
+                        .within(LibraryJson.toSelection(args.get("selection")))
+                        .limit((int) Math.min(Integer.MAX_VALUE, (long) offset + limit)));
+                return LibraryJson.list(found.subList(Math.min(offset, found.size()), found.size()), LibraryJson::book);
+            }
+            case "browse":
+                return LibraryJson.list(BookManager.browse(LibraryJson.toSelection(args.get("selection")),
+                        integer(args, "limit", Integer.MAX_VALUE)), LibraryJson::book);
+            case "getFacetCounts":
+                return LibraryJson.facetCounts(BookManager.getFacetCounts(LibraryJson.toSelection(args.get("selection"))));
+            case "addBook":
+                BookManager.addBook(LibraryJson.toBook(args.get("book")));
+                return true;
+            case "deleteBook":
+                return BookManager.deleteBook(string(args, "bookId"));
+
+            case "requestBorrow":
+                return BookManager.requestBorrow(string(args, "bookId"), caller.getUsername());
+            case "requestReturn":
+                return ownsRecord(caller, string(args, "borrowId")) && BookManager.requestReturn(string(args, "borrowId"));
+            case "approveBorrow":
+                return BookManager.approveBorrow(string(args, "borrowId"));
+            case "rejectBorrow":
+                return BookManager.rejectBorrow(string(args, "borrowId"));
+            case "approveReturn":
+                return BookManager.approveReturn(string(args, "borrowId"));
+            case "rejectReturn":
+                return BookManager.rejectReturn(string(args, "borrowId"));
+            case "approveBorrows":
+                return BookManager.approveBorrows(strings(args, "borrowIds"));
+            case "rejectBorrows":
+                return BookManager.rejectBorrows(strings(args, "borrowIds"));
+            case "approveReturns":
+                return BookManager.approveReturns(strings(args, "borrowIds"));
+            case "rejectReturns":
+                return BookManager.rejectReturns(strings(args, "borrowIds"));
+            case "getBorrowRecordViews": {
+                // Patrons only ever see their own history
+                String userId = isAdmin(caller) ? string(args, "userId") : caller.getUsername();
+                List<String> statuses = args.get("statuses") != null ? strings(args, "statuses") : null;
+                return LibraryJson.list(BookManager.getBorrowRecordViews(userId, statuses,
+                        integer(args, "offset", 0), integer(args, "limit", Integer.MAX_VALUE)),
+                        LibraryJson::borrowRecordView);
+            }
+            case "countBorrowRecords": {
+                String userId = isAdmin(caller) ? string(args, "userId") : caller.getUsername();
+                List<String> statuses = args.get("statuses") != null ? strings(args, "statuses") : null;
+                return BookManager.countBorrowRecords(userId, statuses);
+            }
+            default:
+                throw new ApiException(404, "Unknown method: " + method);
+        }
+    }
+
+    private static boolean isAdmin(User user) {
+        return user != null && "admin".equalsIgnoreCase(user.getRole());
+    }
+
+    private static boolean ownsRecord(User caller, String borrowId) {
+        BorrowRecord record = BookManager.getBorrowRecord(borrowId);
+        return record != null && (isAdmin(caller) || caller.getUsername().equals(record.getUserId()));
+    }
+
+    private static String string(Map<?, ?> args, String name) {
+        Object value = args.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static List<String> strings(Map<?, ?> args, String name) {
+        List<String> values = new ArrayList<>();
+        Object list = args.get(name);
+        if (list instanceof List) {
+            for (Object value : (List<?>) list) {
+                values.add(String.valueOf(value));
+            }
+        }
+        return values;
+    }
+
+    private static int integer(Map<?, ?> args, String name, int fallback) {
+        Object value = args.get(name);
+        return value instanceof Number ? (int) Math.min(Integer.MAX_VALUE, ((Number) value).longValue()) : fallback;
+    }
+
+    private static class Session {
+        final User user;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(User user) {
+            this.user = user;
+        }
+    }
+
+    private static class ApiException extends RuntimeException {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
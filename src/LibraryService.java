@@ -0,0 +1,83 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Everything the Swing screens need from the library. LocalLibraryService runs it in this
+// JVM on top of BookManager, AuthManager and UserFileManager; RemoteLibraryService talks
+// to a LibraryServer, so several desktops can share one catalog as thin clients.
+public interface LibraryService {
+
+    // ✅ The service the screens use: local unless Main was started with --connect
+    static LibraryService get() {
+        return Current.service;
+    }
+
+    static void use(LibraryService service) {
+        Current.service = service;
+    }
+
+    final class Current {
+        private static volatile LibraryService service = new LocalLibraryService();
+    }
+
+    // Users
+    User authenticate(String username, String password);
+    boolean userExists(String username);
+    boolean registerUser(User user);
+    List<User> loadUsers();
+    void deleteUser(String username);
+
+    // Ends the signed-in session (remote only; a local library has no sessions)
+    default void logout() {}
+
+    // Catalog
+    int getBookCount();
+    int getAvailableBookCount();
+    Book getBookAt(int index);
+    List<Book> searchByTitleOrAuthor(String query, int limit);
+    List<Book> browse(CatalogFacets.Selection selection, int limit);
+    CatalogFacets.Counts getFacetCounts(CatalogFacets.Selection selection);
+
+    // Books whose title or author contains the text (blank: any) within the facet selection,
+    // in catalog order. When there are at least firstPageSize of them, the first
+    // firstPageSize also go to firstPage as soon as they are found. An interrupted search
+    // returns early with what it has.
+    List<Book> search(String text, CatalogFacets.Selection selection, int firstPageSize,
+            Consumer<List<Book>> firstPage);
+    void addBook(Book book);
+    boolean deleteBook(String bookId);
+    void addCatalogListener(BookManager.CatalogListener listener);
+    void removeCatalogListener(BookManager.CatalogListener listener);
+
+    // Borrowing
+    String requestBorrow(String bookId, String userId);
+    boolean approveBorrow(String borrowId);
+    boolean rejectBorrow(String borrowId);
+    boolean requestReturn(String borrowId);
+    boolean approveReturn(String borrowId);
+    boolean rejectReturn(String borrowId);
+
+    // Bulk versions: applied together and saved in one write; each borrow id maps to
+    // whether its request was still open and the change went through
+    Map<String, Boolean> approveBorrows(Collection<String> borrowIds);
+    Map<String, Boolean> rejectBorrows(Collection<String> borrowIds);
+    Map<String, Boolean> approveReturns(Collection<String> borrowIds);
+    Map<String, Boolean> rejectReturns(Collection<String> borrowIds);
+
+    List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses, int offset, int limit);
+    // Same filters as getBorrowRecordViews, for callers that only need the number of rows
+    int countBorrowRecords(String userId, Collection<String> statuses);
+
+    default List<Book> searchByTitleOrAuthor(String query) {
+        return searchByTitleOrAuthor(query, Integer.MAX_VALUE);
+    }
+
+    default List<Book> browse(CatalogFacets.Selection selection) {
+        return browse(selection, Integer.MAX_VALUE);
+    }
+
+    default List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses) {
+        return getBorrowRecordViews(userId, statuses, 0, Integer.MAX_VALUE);
+    }
+}
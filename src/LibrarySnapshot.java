@@ -0,0 +1,439 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// library.snapshot: users, books and loans in one file that startup memory-maps instead of
+// reading and decoding books.dat and borrow_records.dat. Written at each compaction.
+//
+//   header  : magic "LSNP" | u16 version | u16 0
+//             | i64 length, i64 modified (ns) of books.dat, then of borrow_records.dat
+//             | i64 length of LibraryData.txt | i32 position of the users, books, loans sections
+//             | string file key of LibraryData.txt | books.dat's symbol dictionary
+//   section : i32 count | i32 hash slots | i32 record offset[count + 1] | i32 hash[slots] | records
+//   records : LibraryCodec's encoding (users: u8 legacy flag + six strings)
+//
+// Record offsets are relative to the section's first record (the last one is where the
+// records end), so any record can be copied out and decoded without touching the others;
+// the background load copies a whole section out at once instead. Books have an
+// open-addressing table on the id (slot = index + 1, 0 = empty), so a lookup by id reads
+// one record. Each book is decoded
+// the first time it is asked for and the same object is returned after that.
+//
+// Every write goes to a new generation, library.snapshot.<n>, renamed into place under a
+// name nothing has open, and readers take the highest one. The file is never replaced while
+// it may be mapped, which Windows refuses as long as any mapping of it is alive. Older
+// generations are deleted after each write; where one is still mapped the delete fails and
+// a later write tries again. A plain library.snapshot from an older build is generation 0.
+//
+// The snapshot only counts if books.dat and borrow_records.dat are still the files it was
+// written with (same length and modification time); otherwise they have moved on without
+// it (a crash between the writes, a replay --rebuild) and it is ignored. The users count
+// while LibraryData.txt is the same file and has only been appended to since.
+//
+//   java -cp out LibrarySnapshot     (write one from the files in the working directory)
+public class LibrarySnapshot {
+    private static final String FILE_NAME = "library.snapshot";
+    private static final String BOOKS_FILE = "books.dat";
+    private static final String BORROW_RECORDS_FILE = "borrow_records.dat";
+
+    private static final byte[] MAGIC = {'L', 'S', 'N', 'P'};
+    private static final int VERSION = 2;
+    private static final int FIXED_HEADER = 60;
+
+    private final ByteBuffer buffer;
+    private final long booksLength;
+    private final long booksModified;
+    private final long recordsLength;
+    private final long recordsModified;
+    private final long dataFileLength;
+    private final String dataFileKey;
+    private final LibraryCodec.Dictionary dictionary; // for the books' author, genre and location
+    private final Section users;
+    private final Section books;
+    private final Section records;
+    private final AtomicReferenceArray<Book> decodedBooks;
+
+    private static class Section {
+        final int count;
+        final int slots;
+        final int offsets; // positions in the buffer
+        final int hash;
+        final int data;
+
+        Section(ByteBuffer buffer, int position) throws IOException {
+            if (position < FIXED_HEADER || position > buffer.limit() - 8) {
+                throw new IOException("Snapshot section out of bounds");
+            }
+            count = buffer.getInt(position);
+            slots = buffer.getInt(position + 4);
+            offsets = position + 8;
+            hash = offsets + 4 * (count + 1);
+            data = hash + 4 * slots;
+            if (count < 0 || slots < 0 || (long) position + 8 + 4L * (count + 1) + 4L * slots > buffer.limit()
+                    || (long) data + offset(buffer, count) > buffer.limit()) {
+                throw new IOException("Snapshot section out of bounds");
+            }
+        }
+
+        int offset(ByteBuffer buffer, int index) {
+            return buffer.getInt(offsets + 4 * index);
+        }
+
+        // Records [from, to) copied out of the mapping; decoding from a heap array is much
+        // cheaper than reading the mapped buffer a byte at a time
+        byte[] copy(ByteBuffer buffer, int from, int to) {
+            int start = offset(buffer, from);
+            byte[] bytes = new byte[offset(buffer, to) - start];
+            buffer.get(data + start, bytes);
+            return bytes;
+        }
+    }
+
+    private LibrarySnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < FIXED_HEADER || buffer.getInt(0) != ByteBuffer.wrap(MAGIC).getInt()) {
+            throw new IOException(FILE_NAME + " is not a library snapshot");
+        }
+        int version = buffer.getShort(4) & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException(FILE_NAME + " has version " + version + ", this build reads " + VERSION);
+        }
+        booksLength = buffer.getLong(8);
+        booksModified = buffer.getLong(16);
+        recordsLength = buffer.getLong(24);
+        recordsModified = buffer.getLong(32);
+        dataFileLength = buffer.getLong(40);
+        users = new Section(buffer, buffer.getInt(48));
+        books = new Section(buffer, buffer.getInt(52));
+        records = new Section(buffer, buffer.getInt(56));
+        byte[] header = new byte[buffer.getInt(48) - FIXED_HEADER];
+        buffer.get(FIXED_HEADER, header);
+        LibraryCodec.Reader in = new LibraryCodec.Reader(header);
+        dataFileKey = in.string();
+        dictionary = new LibraryCodec.Dictionary(header, in.pos, header.length);
+        decodedBooks = new AtomicReferenceArray<>(books.count);
+    }
+
+    // ✅ Map the newest snapshot in the working directory; null if there is none or it can't be used
+    public static LibrarySnapshot open() {
+        Path file;
+        try {
+            file = newest();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (file == null) {
+            return null;
+        }
+        // A write that lands in between may delete this generation before it is opened; the
+        // caller then loads the slow way, which is still correct
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new LibrarySnapshot(buffer);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // The highest generation on disk, or null if there is none
+    private static Path newest() throws IOException {
+        Path newest = null;
+        long newestGeneration = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("."), FILE_NAME + "*")) {
+            for (Path file : files) {
+                long generation = generation(file);
+                if (generation > newestGeneration) {
+                    newest = file;
+                    newestGeneration = generation;
+                }
+            }
+        }
+        return newest;
+    }
+
+    // 0 for the plain file, -1 for anything that isn't a finished snapshot (a .tmp being written)
+    private static long generation(Path file) {
+        String name = file.getFileName().toString();
+        if (name.equals(FILE_NAME)) {
+            return 0;
+        }
+        if (!name.startsWith(FILE_NAME + ".")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_NAME.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ✅ Delete every generation below the given one. One that is still mapped can't be
+    // deleted on Windows; it stays until a later write, after the mapping has been collected.
+    private static void deleteBelow(long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("."), FILE_NAME + "*")) {
+            for (Path file : files) {
+                long older = generation(file);
+                if (older >= 0 && older < generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // still mapped: retried after the next write
+                    }
+                }
+            }
+        }
+    }
+
+    // ✅ books.dat and borrow_records.dat are still the files this snapshot was written with
+    public boolean matchesDatFiles() {
+        try {
+            return booksLength == length(BOOKS_FILE) && booksModified == modified(BOOKS_FILE)
+                    && recordsLength == length(BORROW_RECORDS_FILE) && recordsModified == modified(BORROW_RECORDS_FILE);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // The users section describes LibraryData.txt up to this length, for this file key
+    public long dataFileLength() {
+        return dataFileLength;
+    }
+
+    public String dataFileKey() {
+        return dataFileKey;
+    }
+
+    public int bookCount() {
+        return books.count;
+    }
+
+    // ✅ Book at a snapshot position, decoded on first use
+    public Book book(int index) {
+        Book book = decodedBooks.get(index);
+        if (book == null) {
+            try {
+                book = new LibraryCodec.Reader(books.copy(buffer, index, index + 1), dictionary).book();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (!decodedBooks.compareAndSet(index, null, book)) {
+                book = decodedBooks.get(index); // another thread got there first
+            }
+        }
+        return book;
+    }
+
+    // ✅ Snapshot position of the book with this id, or -1; only the ids are compared, not decoded
+    public int bookIndex(String bookId) {
+        if (books.slots == 0) {
+            return -1;
+        }
+        byte[] key = bookId.getBytes(StandardCharsets.UTF_8);
+        int mask = books.slots - 1;
+        for (int slot = slot(bookId, books.slots); ; slot = (slot + 1) & mask) {
+            int entry = buffer.getInt(books.hash + 4 * slot);
+            if (entry == 0) {
+                return -1;
+            }
+            try {
+                if (new LibraryCodec.Reader(books.copy(buffer, entry - 1, entry)).stringEquals(key)) {
+                    return entry - 1;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // ✅ Every book in snapshot order, decoding the ones not asked for yet in one pass
+    public List<Book> books() {
+        byte[] bytes = books.copy(buffer, 0, books.count);
+        List<Book> all = new ArrayList<>(books.count);
+        try {
+            LibraryCodec.Reader in = new LibraryCodec.Reader(bytes, dictionary);
+            for (int i = 0; i < books.count; i++) {
+                Book book = decodedBooks.get(i);
+                if (book == null) {
+                    in.pos = books.offset(buffer, i) - books.offset(buffer, 0);
+                    decodedBooks.compareAndSet(i, null, in.book());
+                    book = decodedBooks.get(i);
+                }
+                all.add(book);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return all;
+    }
+
+    // ✅ Every borrow record in creation order (not cached: the background load reads them once)
+    public List<BorrowRecord> borrowRecords() {
+        List<BorrowRecord> all = new ArrayList<>(records.count);
+        try {
+            LibraryCodec.Reader in = new LibraryCodec.Reader(records.copy(buffer, 0, records.count));
+            for (int i = 0; i < records.count; i++) {
+                all.add(in.borrowRecord());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return all;
+    }
+
+    // ✅ Users in directory order, then the legacy comma-row users
+    public void readUsers(List<User> regular, List<User> legacy) throws IOException {
+        LibraryCodec.Reader in = new LibraryCodec.Reader(users.copy(buffer, 0, users.count));
+        for (int i = 0; i < users.count; i++) {
+            boolean isLegacy = in.u8() != 0;
+            (isLegacy ? legacy : regular).add(in.user());
+        }
+    }
+
+    // ---------------------------------------------------------------- writing
+
+    // ✅ Write a snapshot from encoded books.dat / borrow_records.dat contents, which must be
+    // what those files hold right now (their stamps are recorded) in the current schema
+    // version, and the user directory. Returns the file written.
+    public static Path write(byte[] booksData, byte[] borrowRecordsData, UserDirectory.State directory)
+            throws IOException {
+        int[] bookOffsets = LibraryCodec.recordOffsets(booksData);
+        int[] recordOffsets = LibraryCodec.recordOffsets(borrowRecordsData);
+
+        LibraryCodec.Writer userData = new LibraryCodec.Writer(64 + 96 * (directory.users.size() + directory.legacyUsers.size()));
+        List<Integer> userOffsets = new ArrayList<>();
+        for (int legacy = 0; legacy < 2; legacy++) {
+            for (User user : legacy == 0 ? directory.users : directory.legacyUsers) {
+                userOffsets.add(userData.pos);
+                userData.u8(legacy);
+                userData.user(user);
+            }
+        }
+        int[] userStarts = new int[userOffsets.size() + 1];
+        for (int i = 0; i < userOffsets.size(); i++) {
+            userStarts[i] = userOffsets.get(i);
+        }
+        userStarts[userOffsets.size()] = userData.pos;
+
+        int[] bookHash = bookHash(booksData, bookOffsets);
+
+        LibraryCodec.Writer header = new LibraryCodec.Writer(FIXED_HEADER + 64);
+        header.pos = FIXED_HEADER;
+        header.string(directory.dataFileKey);
+        header.bytes(booksData, bookOffsets[bookOffsets.length - 1], booksData.length - 4); // the dictionary
+        long usersAt = header.pos;
+        long booksAt = usersAt + sectionSize(userStarts, 0);
+        long recordsAt = booksAt + sectionSize(bookOffsets, bookHash.length);
+        long end = recordsAt + sectionSize(recordOffsets, 0);
+        if (end > Integer.MAX_VALUE) {
+            // Too big for one mapping: drop the old snapshots so startup reads the .dat files
+            deleteBelow(Long.MAX_VALUE);
+            throw new IOException("Library too large for " + FILE_NAME + " (" + end + " bytes)");
+        }
+
+        ByteBuffer fixed = ByteBuffer.wrap(header.buf, 0, FIXED_HEADER);
+        fixed.put(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                .putLong(length(BOOKS_FILE)).putLong(modified(BOOKS_FILE))
+                .putLong(length(BORROW_RECORDS_FILE)).putLong(modified(BORROW_RECORDS_FILE))
+                .putLong(directory.dataFileLength)
+                .putInt((int) usersAt).putInt((int) booksAt).putInt((int) recordsAt);
+
+        // Written beside its final name and renamed to it; that name is new, so nothing has it open
+        Path newest = newest();
+        long generation = newest != null ? generation(newest) + 1 : 1;
+        Path file = Paths.get(FILE_NAME + "." + generation);
+        Path temp = Paths.get(file + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.wrap(header.buf, 0, header.pos));
+            writeSection(out, userData.buf, userStarts, new int[0]);
+            writeSection(out, booksData, bookOffsets, bookHash);
+            writeSection(out, borrowRecordsData, recordOffsets, new int[0]);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        deleteBelow(generation);
+        return file;
+    }
+
+    private static int[] bookHash(byte[] booksData, int[] offsets) throws IOException {
+        int count = offsets.length - 1;
+        int slots = Integer.highestOneBit(Math.max(2, count * 2 - 1)) << 1; // at most half full
+        int[] table = new int[slots];
+        for (int i = 0; i < count; i++) {
+            String id = new LibraryCodec.Reader(booksData, offsets[i]).string();
+            int slot = slot(id, slots);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            table[slot] = i + 1;
+        }
+        return table;
+    }
+
+    private static int slot(String key, int slots) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (slots - 1);
+    }
+
+    private static long sectionSize(int[] starts, int slots) {
+        int count = starts.length - 1;
+        return 8 + 4L * (count + 1) + 4L * slots + (starts[count] - starts[0]);
+    }
+
+    private static void writeSection(FileChannel out, byte[] data, int[] starts, int[] hash) throws IOException {
+        int count = starts.length - 1;
+        ByteBuffer index = ByteBuffer.allocate(8 + 4 * (count + 1) + 4 * hash.length);
+        index.putInt(count).putInt(hash.length);
+        for (int i = 0; i <= count; i++) {
+            index.putInt(starts[i] - starts[0]);
+        }
+        for (int entry : hash) {
+            index.putInt(entry);
+        }
+        index.flip();
+        writeFully(out, index);
+        writeFully(out, ByteBuffer.wrap(data, starts[0], starts[count] - starts[0]));
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long length(String fileName) throws IOException {
+        return Files.size(Paths.get(fileName));
+    }
+
+    private static long modified(String fileName) throws IOException {
+        return Files.getLastModifiedTime(Paths.get(fileName)).to(TimeUnit.NANOSECONDS);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        byte[] booksData = Files.readAllBytes(Paths.get(BOOKS_FILE));
+        byte[] recordsData = Files.readAllBytes(Paths.get(BORROW_RECORDS_FILE));
+        if (!LibraryCodec.isCurrent(booksData) || !LibraryCodec.isCurrent(recordsData)) {
+            // Written by an older build: bring the files up to date first, as compaction would
+            booksData = LibraryCodec.encodeBooks(LibraryCodec.readBooks(BOOKS_FILE));
+            recordsData = LibraryCodec.encodeBorrowRecords(LibraryCodec.readBorrowRecords(BORROW_RECORDS_FILE));
+            LibraryJournal.writeSnapshot(BOOKS_FILE, booksData);
+            LibraryJournal.writeSnapshot(BORROW_RECORDS_FILE, recordsData);
+        }
+        Path file = write(booksData, recordsData, UserDirectory.state());
+        System.out.printf("Wrote %s (%.1f MB) in %.2fs%n", file, Files.size(file) / 1e6,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
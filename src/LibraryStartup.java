@@ -0,0 +1,101 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+
+// Desktop startup work, run side by side on background threads while SplashWindow shows
+// progress: the user directory, the catalog (BookManager's class initialization, which maps
+// library.snapshot or reads the .dat files), the loans and search index it finishes behind
+// the first page, and the window images. begin() completes once users and images are in,
+// which is all the login screen needs; the catalog keeps loading after that.
+//
+// Against a server (--connect) the library lives there, so only the images are loaded.
+public class LibraryStartup {
+    public static final String BACKGROUND_IMAGE = "Background/background.jpg"; // class path resource
+    public static final String PROFILE_IMAGE = "src/resources/user-profile.jpg"; // file, from the working directory
+
+    public enum Step {
+        USERS("Reading users"),
+        CATALOG("Opening the catalog"),
+        LOANS("Loading loans and search"),
+        IMAGES("Loading images");
+
+        private final String label;
+
+        Step(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final ExecutorService pool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "library-startup");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Map<String, CompletableFuture<BufferedImage>> images = new ConcurrentHashMap<>();
+
+    // ✅ The steps begin() runs for this kind of library, in the order they are shown
+    public static List<Step> steps(boolean local) {
+        return local ? Arrays.asList(Step.values()) : Collections.singletonList(Step.IMAGES);
+    }
+
+    // ✅ Start every step at once; done hears about each one as it finishes (on the thread that
+    // ran it, failed or not). The result completes when the login screen can be shown.
+    public static CompletableFuture<Void> begin(boolean local, Consumer<Step> done) {
+        CompletableFuture<Void> imagesLoaded = CompletableFuture.allOf(decode(BACKGROUND_IMAGE), decode(PROFILE_IMAGE));
+        imagesLoaded.whenComplete((v, e) -> done.accept(Step.IMAGES));
+        if (!local) {
+            return imagesLoaded;
+        }
+
+        CompletableFuture<Void> users = run(Step.USERS, UserDirectory::preload, done);
+        // Loans follow the catalog: BookManager's class initialization has to finish first
+        run(Step.CATALOG, BookManager::getBookCount, done)
+                .whenCompleteAsync((v, e) -> run(Step.LOANS, BookManager::awaitLoaded, done), pool);
+        return CompletableFuture.allOf(users, imagesLoaded);
+    }
+
+    private static CompletableFuture<Void> run(Step step, Runnable work, Consumer<Step> done) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                work.run();
+            } catch (RuntimeException | Error e) {
+                e.printStackTrace(); // the screens hit the same problem again and report it there
+            } finally {
+                done.accept(step);
+            }
+        }, pool);
+    }
+
+    // ✅ A decoded image, waiting for startup to finish it if it is still being read; null if
+    // it can't be read. Decoded once and shared by every window that shows it.
+    public static BufferedImage image(String name) {
+        return decode(name).join();
+    }
+
+    // A class path resource, else a file relative to the working directory
+    private static CompletableFuture<BufferedImage> decode(String name) {
+        return images.computeIfAbsent(name, n -> CompletableFuture.supplyAsync(() -> {
+            try {
+                URL url = LibraryStartup.class.getResource(n);
+                if (url == null && new File(n).exists()) {
+                    url = new File(n).toURI().toURL();
+                }
+                return url != null ? ImageIO.read(url) : null;
+            } catch (Exception e) {
+                System.out.println("Image not readable: " + n);
+                return null;
+            }
+        }, pool));
+    }
+}
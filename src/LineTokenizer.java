@@ -0,0 +1,201 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Reads text lines straight from bytes, without making a String per line. The caller checks
+// the record type with startsWith(), splits only the lines it wants (the field boundaries
+// are offsets into the buffer) and turns just the fields it keeps into Strings:
+//
+//   LineTokenizer lines = new LineTokenizer(new FileInputStream("LibraryData.txt"));
+//   while (lines.next()) {
+//       if (lines.startsWith(USER) && lines.split('|') >= 7) { ... lines.trimmedField(1) ... }
+//   }
+//
+// Bytes are decoded as UTF-8; '\r' before '\n' is dropped. A line's offsets are only good
+// until the next call to next().
+public class LineTokenizer implements Closeable {
+    private static final int MAX_FIELDS = 16; // the last field keeps any further separators
+
+    private final InputStream in; // null when reading a byte range
+    private byte[] buffer;
+    private int limit;            // end of the valid bytes in buffer
+    private int position;         // start of the next line
+    private boolean eof;
+
+    private int lineStart;
+    private int lineEnd;
+    private final int[] fields = new int[MAX_FIELDS + 1]; // field i spans fields[i] .. fields[i + 1] - 1
+    private int fieldCount;
+
+    public LineTokenizer(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[64 * 1024];
+    }
+
+    // ✅ Lines of data[start, end), e.g. one chunk of a file read by the caller
+    public LineTokenizer(byte[] data, int start, int end) {
+        this.in = null;
+        this.buffer = data;
+        this.position = start;
+        this.limit = end;
+        this.eof = true;
+    }
+
+    // ✅ Move to the next line; false at the end of the input
+    public boolean next() throws IOException {
+        int scan = position;
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    setLine(position, i);
+                    position = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (position < limit) {
+                    setLine(position, limit);
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan = fill();
+        }
+    }
+
+    // Keeps the unfinished line, moved to the front (and the buffer grown if it fills it),
+    // and reads more after it; returns where the newline search should resume
+    private int fill() throws IOException {
+        int pending = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, pending);
+            position = 0;
+            limit = pending;
+        }
+        if (limit == buffer.length) {
+            byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+        return pending;
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+        fieldCount = 0;
+    }
+
+    public int length() {
+        return lineEnd - lineStart;
+    }
+
+    // ✅ Empty or only whitespace
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if ((buffer[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ✅ The line begins with prefix (ASCII, see ascii()); compared in place
+    public boolean startsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[lineStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ✅ Find the separators in place; returns the number of fields (at least 1)
+    public int split(char separator) {
+        int count = 0;
+        fields[0] = lineStart;
+        for (int i = lineStart; i < lineEnd && count < MAX_FIELDS - 1; i++) {
+            if (buffer[i] == separator) {
+                fields[++count] = i + 1;
+            }
+        }
+        fields[++count] = lineEnd + 1;
+        fieldCount = count;
+        return count;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String field(int index) {
+        return string(fieldStart(index), fieldEnd(index));
+    }
+
+    // ✅ Same as field(index).trim(), without the untrimmed copy
+    public String trimmedField(int index) {
+        int start = fieldStart(index);
+        int end = fieldEnd(index);
+        while (start < end && (buffer[start] & 0xFF) <= ' ') start++;
+        while (end > start && (buffer[end - 1] & 0xFF) <= ' ') end--;
+        return string(start, end);
+    }
+
+    // ✅ A field of plain decimal digits, or -1 if it is empty or anything else
+    public long longField(int index) {
+        int start = fieldStart(index);
+        int end = fieldEnd(index);
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return end > start ? value : -1;
+    }
+
+    // ✅ The text after the first offset bytes, e.g. the id after a "DELETED_BOOK|" prefix
+    public String rest(int offset) {
+        return string(Math.min(lineStart + offset, lineEnd), lineEnd);
+    }
+
+    public String line() {
+        return string(lineStart, lineEnd);
+    }
+
+    private int fieldStart(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+        }
+        return fields[index];
+    }
+
+    private int fieldEnd(int index) {
+        return fields[index + 1] - 1;
+    }
+
+    private String string(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// The library in this JVM: straight calls into the static managers
+public class LocalLibraryService implements LibraryService {
+    public User authenticate(String username, String password) {
+        return AuthManager.authenticate(username, password);
+    }
+
+    public boolean userExists(String username) {
+        return UserFileManager.userExists(username);
+    }
+
+    public boolean registerUser(User user) {
+        return AuthManager.registerUser(user);
+    }
+
+    public List<User> loadUsers() {
+        return UserFileManager.loadUsers();
+    }
+
+    public void deleteUser(String username) {
+        UserFileManager.deleteUser(username);
+    }
+
+    public int getBookCount() {
+        return BookManager.getBookCount();
+    }
+
+    public int getAvailableBookCount() {
+        return BookManager.getAvailableBookCount();
+    }
+
+    public Book getBookAt(int index) {
+        return BookManager.getBookAt(index);
+    }
+
+    public List<Book> search(String text, CatalogFacets.Selection selection, int firstPageSize,
+            Consumer<List<Book>> firstPage) {
+        return BookManager.search(text, selection, firstPageSize, firstPage);
+    }
+
+    public List<Book> searchByTitleOrAuthor(String query, int limit) {
+        return BookManager.searchByTitleOrAuthor(query, limit);
+    }
+
+    public List<Book> browse(CatalogFacets.Selection selection, int limit) {
+        return BookManager.browse(selection, limit);
+    }
+
+    public CatalogFacets.Counts getFacetCounts(CatalogFacets.Selection selection) {
+        return BookManager.getFacetCounts(selection);
+    }
+
+    public void addBook(Book book) {
+        BookManager.addBook(book);
+    }
+
+    public boolean deleteBook(String bookId) {
+        return BookManager.deleteBook(bookId);
+    }
+
+    public void addCatalogListener(BookManager.CatalogListener listener) {
+        BookManager.addCatalogListener(listener);
+    }
+
+    public void removeCatalogListener(BookManager.CatalogListener listener) {
+        BookManager.removeCatalogListener(listener);
+    }
+
+    public String requestBorrow(String bookId, String userId) {
+        return BookManager.requestBorrow(bookId, userId);
+    }
+
+    public boolean approveBorrow(String borrowId) {
+        return BookManager.approveBorrow(borrowId);
+    }
+
+    public boolean rejectBorrow(String borrowId) {
+        return BookManager.rejectBorrow(borrowId);
+    }
+
+    public boolean requestReturn(String borrowId) {
+        return BookManager.requestReturn(borrowId);
+    }
+
+    public boolean approveReturn(String borrowId) {
+        return BookManager.approveReturn(borrowId);
+    }
+
+    public boolean rejectReturn(String borrowId) {
+        return BookManager.rejectReturn(borrowId);
+    }
+
+    public Map<String, Boolean> approveBorrows(Collection<String> borrowIds) {
+        return BookManager.approveBorrows(borrowIds);
+    }
+
+    public Map<String, Boolean> rejectBorrows(Collection<String> borrowIds) {
+        return BookManager.rejectBorrows(borrowIds);
+    }
+
+    public Map<String, Boolean> approveReturns(Collection<String> borrowIds) {
+        return BookManager.approveReturns(borrowIds);
+    }
+
+    public Map<String, Boolean> rejectReturns(Collection<String> borrowIds) {
+        return BookManager.rejectReturns(borrowIds);
+    }
+
+    public List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses, int offset, int limit) {
+        return BookManager.getBorrowRecordViews(userId, statuses, offset, limit);
+    }
+
+    public int countBorrowRecords(String userId, Collection<String> statuses) {
+        return BookManager.countBorrowRecords(userId, statuses);
+    }
+}
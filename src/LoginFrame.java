@@ -1,7 +1,6 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 
@@ -20,11 +19,7 @@ public class LoginFrame extends JFrame {
         setLocationRelativeTo(null);
         setResizable(true);
 
-        try {
-            bgImage = ImageIO.read(getClass().getResource("Background/background.jpg"));
-        } catch (Exception e) {
-            System.out.println("Background image not found");
-        }
+        bgImage = LibraryStartup.image(LibraryStartup.BACKGROUND_IMAGE); // usually decoded during startup
 
         JPanel backgroundPanel = new JPanel() {
             protected void paintComponent(Graphics g) {
@@ -187,8 +182,13 @@ public class LoginFrame extends JFrame {
             return;
         }
 
-        User user = AuthManager.authenticate(username, password);
+        // ✅ A remote library can take seconds to answer; keep the window responsive meanwhile
+        loginBtn.setEnabled(false);
+        UIUtils.inBackground(() -> LibraryService.get().authenticate(username, password),
+                this::loggedIn, () -> loginBtn.setEnabled(true));
+    }
 
+    private void loggedIn(User user) {
         if (user == null) {
             JOptionPane.showMessageDialog(this, "Invalid username or password.",
                     "Login Failed", JOptionPane.ERROR_MESSAGE);
@@ -211,6 +211,7 @@ public class LoginFrame extends JFrame {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception ignored) {}
 
+        UIUtils.reportPersistenceFailures();
         SwingUtilities.invokeLater(() -> new LoginFrame().setVisible(true));
     }
 }
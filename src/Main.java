@@ -1,6 +1,35 @@
+import javax.swing.SwingUtilities;
+
 public class Main {
-    public static void main(String[] args) {
-        // Start with login screen
-        new LoginFrame();
+    public static void main(String[] args) throws Exception {
+        // --server [--port N]: headless catalog server for thin clients
+        // --connect http://host:port: run the screens against such a server
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--server")) {
+                int port = LibraryServer.DEFAULT_PORT;
+                for (int j = 0; j + 1 < args.length; j++) {
+                    if (args[j].equals("--port")) port = Integer.parseInt(args[j + 1]);
+                }
+                LibraryServer.start(port);
+                return;
+            }
+            if (args[i].equals("--connect") && i + 1 < args.length) {
+                LibraryService.use(new RemoteLibraryService(args[i + 1]));
+            }
+        }
+
+        UIUtils.reportPersistenceFailures();
+        // Load users, catalog, loans and images in the background behind a splash; the login
+        // screen opens as soon as users and images are ready, the catalog finishes later
+        boolean local = LibraryService.get() instanceof LocalLibraryService;
+        SwingUtilities.invokeLater(() -> {
+            SplashWindow splash = new SplashWindow(LibraryStartup.steps(local));
+            splash.setVisible(true);
+            LibraryStartup.begin(local, step -> SwingUtilities.invokeLater(() -> splash.stepDone(step)))
+                    .whenComplete((v, e) -> SwingUtilities.invokeLater(() -> {
+                        splash.dispose();
+                        new LoginFrame().setVisible(true);
+                    }));
+        });
     }
 }
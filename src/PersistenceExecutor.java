@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Single background writer for every file the app persists, so the Swing event thread
+// never waits on disk. Callers update their in-memory state first and then submit the
+// write. Writes submitted under the same key (normally the file name) coalesce: if one
+// is still queued, the new submission replaces it instead of queuing another, so every
+// write for a key must do the same job from the current state. Anything a particular
+// submission asks for on top of that has to be recorded where the write will read it.
+public class PersistenceExecutor {
+    private static final int QUEUE_CAPACITY = 256;
+
+    public interface Write {
+        void run() throws IOException;
+    }
+
+    private static class Task {
+        final String key;
+        Write write;
+
+        Task(String key, Write write) {
+            this.key = key;
+            this.write = write;
+        }
+    }
+
+    private static final BlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Map<String, Task> queuedByKey = new HashMap<>();
+    private static final List<Consumer<String>> failureListeners = new CopyOnWriteArrayList<>();
+    private static final Object lock = new Object();
+    private static int outstanding; // submitted but not yet finished, guarded by lock
+    private static final ThreadLocal<Map<String, Write>> deferred = new ThreadLocal<>(); // see batch()
+
+    static {
+        Thread writer = new Thread(PersistenceExecutor::drain, "library-persistence");
+        writer.setDaemon(true);
+        writer.start();
+
+        // Don't lose queued writes when the window closes via System.exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(10, TimeUnit.SECONDS)));
+    }
+
+    // ✅ Queue a write; a queued write with the same key absorbs this one
+    public static void submit(String key, Write write) {
+        Map<String, Write> batch = deferred.get();
+        if (batch != null) {
+            batch.put(key, write);
+            return;
+        }
+        Task task;
+        synchronized (lock) {
+            Task queued = queuedByKey.get(key);
+            if (queued != null) {
+                queued.write = write; // latest wins: the task reads current state when it runs
+                return;
+            }
+            task = new Task(key, write);
+            queuedByKey.put(key, task);
+            outstanding++;
+        }
+        try {
+            queue.put(task); // blocks only if the writer is more than QUEUE_CAPACITY files behind
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (lock) {
+                queuedByKey.remove(key);
+            }
+            finished();
+        }
+    }
+
+    // ✅ Run work, holding back the writes it submits until it is done, then queue each key
+    // once. Bulk operations use this so a batch of changes reaches each file in one write.
+    public static void batch(Runnable work) {
+        if (deferred.get() != null) {
+            work.run(); // already inside a batch
+            return;
+        }
+        Map<String, Write> writes = new LinkedHashMap<>();
+        deferred.set(writes);
+        try {
+            work.run();
+        } finally {
+            deferred.remove();
+            writes.forEach(PersistenceExecutor::submit);
+        }
+    }
+
+    // ✅ Wait until every write submitted so far has reached the disk
+    public static boolean flush(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (outstanding > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                try {
+                    lock.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Listeners are called on the writer thread with a short description of the failure
+    public static void addFailureListener(Consumer<String> listener) {
+        failureListeners.add(listener);
+    }
+
+    public static void removeFailureListener(Consumer<String> listener) {
+        failureListeners.remove(listener);
+    }
+
+    private static void drain() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Write write;
+            synchronized (lock) {
+                queuedByKey.remove(task.key); // later submissions for this key queue a new task
+                write = task.write;
+            }
+
+            try {
+                write.run();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                String message = "Could not save " + task.key + ": " + e.getMessage();
+                for (Consumer<String> listener : failureListeners) {
+                    listener.accept(message);
+                }
+            } finally {
+                finished();
+            }
+        }
+    }
+
+    private static void finished() {
+        synchronized (lock) {
+            outstanding--;
+            lock.notifyAll();
+        }
+    }
+}
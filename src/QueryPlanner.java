@@ -0,0 +1,329 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+// Cost-based planning for BookQuery over the catalog's indexes. Each condition a query sets
+// has an index, and the index gives an estimate of the rows it yields:
+//
+//   genre, location, years, available   CatalogFacets' bitmaps (exact counts)
+//   a facet selection                   its bitmap from CatalogFacets.select (exact count)
+//   text, title, author                 BookSearchIndex's trigrams (the shortest posting list
+//                                       among the needle's trigrams; none under three chars)
+//
+// The plan reads the rows of the condition with the fewest estimated rows and tests the
+// others on each row against ColumnarCatalog's columns, most selective first. It scans every
+// slot only when no condition has an index or none would read fewer rows. Rows come out in
+// catalog order, so a limit without a sort stops as soon as it is reached.
+//
+// Planning and running need the catalog's shared lock, held across both. A run checks its
+// thread's interrupt flag as it goes and stops early (with what it has) when it is set.
+//
+//   java -cp out QueryPlanner [--text s] [--title s] [--author s] [--genre s] [--location s]
+//       [--from year] [--to year] [--available] [--sort newest] [--limit n]
+public class QueryPlanner {
+    private final ColumnarCatalog catalog;
+    private final BookSearchIndex index;
+
+    private static final int INTERRUPT_CHECK_MASK = 1023; // look at the interrupt flag every 1024 rows
+
+    private enum Condition { GENRE, LOCATION, YEARS, AVAILABLE, SELECTION, TEXT, TITLE, AUTHOR }
+
+    public static class Plan {
+        public final BookQuery query;
+        public final boolean fullScan;
+        public final int estimatedRows;   // rows read before the filters
+        private final Condition access;   // null for a full scan
+        private final List<Condition> filters;
+        private final RoaringBitmap selected; // the facet selection's slots, null without one
+        private final List<String> explained;
+
+        Plan(BookQuery query, Condition access, int estimatedRows, List<Condition> filters, RoaringBitmap selected,
+                List<String> explained) {
+            this.query = query;
+            this.fullScan = access == null;
+            this.access = access;
+            this.estimatedRows = estimatedRows;
+            this.filters = filters;
+            this.selected = selected;
+            this.explained = explained;
+        }
+
+        // ✅ One line per step: the rows read, each filter, the order, then the access paths
+        // that lost with their estimates
+        public String explain() {
+            return String.join("\n", explained);
+        }
+
+        @Override
+        public String toString() {
+            return explain();
+        }
+    }
+
+    public QueryPlanner(ColumnarCatalog catalog, BookSearchIndex index) {
+        this.catalog = catalog;
+        this.index = index;
+    }
+
+    // ✅ Pick the cheapest access path: the index with the fewest estimated rows (bitmaps win
+    // ties, their counts are exact), unless scanning every slot reads no more
+    public Plan plan(BookQuery query) {
+        List<Condition> conditions = conditions(query);
+        RoaringBitmap selected = query.selection != null ? catalog.facets().select(query.selection) : null;
+        int scanRows = catalog.slotCount();
+        Condition access = null;
+        int accessRows = scanRows;
+        Map<Condition, Integer> estimates = new LinkedHashMap<>();
+        for (Condition condition : conditions) {
+            int rows = condition == Condition.SELECTION ? selected.size() : estimate(query, condition);
+            if (rows >= 0) {
+                estimates.put(condition, rows);
+                if (rows < accessRows) {
+                    access = condition;
+                    accessRows = rows;
+                }
+            }
+        }
+
+        // A trigram index only narrows the candidates, so its own condition is tested again.
+        // The most selective filters go first, so most rows are turned away by the first test.
+        List<Condition> filters = new ArrayList<>();
+        for (Condition condition : conditions) {
+            if (condition != access || isTrigram(condition)) {
+                filters.add(condition);
+            }
+        }
+        filters.sort(Comparator.comparingInt(condition -> estimates.getOrDefault(condition, Integer.MAX_VALUE)));
+
+        List<String> explained = new ArrayList<>();
+        explained.add(line("query", query.toString()));
+        explained.add(line("access", access == null
+                ? String.format("full scan of %,d slots", scanRows)
+                : String.format("%s, about %,d rows", indexName(query, access), accessRows)));
+        for (Condition filter : filters) {
+            explained.add(line("filter", filterName(query, filter) + (filter == access ? " (recheck)" : "")));
+        }
+        if (query.sort.order == null) {
+            explained.add(line("order", "catalog" + (query.limit != Integer.MAX_VALUE ? ", stop after " + query.limit : "")));
+        } else {
+            explained.add(line("order", "sort by " + query.sort.name().toLowerCase()
+                    + (query.limit != Integer.MAX_VALUE ? ", keep " + query.limit : "")));
+        }
+        List<String> rejected = new ArrayList<>();
+        for (Map.Entry<Condition, Integer> estimate : estimates.entrySet()) {
+            if (estimate.getKey() != access) {
+                rejected.add(String.format("%s (%,d rows)", indexName(query, estimate.getKey()), estimate.getValue()));
+            }
+        }
+        if (access != null) {
+            rejected.add(String.format("full scan (%,d slots)", scanRows));
+        }
+        if (!rejected.isEmpty()) {
+            explained.add(line("rejected", String.join("; ", rejected)));
+        }
+        return new Plan(query, access, accessRows, filters, selected, explained);
+    }
+
+    public List<Book> run(Plan plan) {
+        return run(plan, Integer.MAX_VALUE, null);
+    }
+
+    // ✅ The same, handing the first firstPageSize books to firstPage as soon as they are found
+    // (catalog order only: a sorted result isn't known until the end), so one pass serves both
+    public List<Book> run(Plan plan, int firstPageSize, Consumer<List<Book>> firstPage) {
+        BookQuery query = plan.query;
+        Filters filters = new Filters(query, plan.filters, plan.selected);
+        int limit = query.sort.order == null ? query.limit : Integer.MAX_VALUE;
+        int pageAt = query.sort.order == null && firstPage != null ? firstPageSize : -1;
+        List<Book> found = new ArrayList<>();
+        if (filters.matchesNothing || limit <= 0) {
+            return found;
+        }
+        int[] slots = plan.access != null ? slots(plan, plan.access) : null;
+        int rows = slots != null ? slots.length : catalog.slotCount();
+        for (int i = 0; i < rows && found.size() < limit; i++) {
+            if ((i & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            int slot = slots != null ? slots[i] : i;
+            if (filters.test(slot)) {
+                found.add(catalog.book(slot));
+                if (found.size() == pageAt) {
+                    firstPage.accept(new ArrayList<>(found));
+                }
+            }
+        }
+        if (query.sort.order != null) {
+            found.sort(query.sort.order);
+            if (found.size() > query.limit) {
+                found = new ArrayList<>(found.subList(0, Math.max(0, query.limit)));
+            }
+        }
+        return found;
+    }
+
+    private static List<Condition> conditions(BookQuery query) {
+        List<Condition> conditions = new ArrayList<>();
+        if (!query.anyGenre) conditions.add(Condition.GENRE);
+        if (!query.anyLocation) conditions.add(Condition.LOCATION);
+        if (query.hasYearRange()) conditions.add(Condition.YEARS);
+        if (query.availableOnly) conditions.add(Condition.AVAILABLE);
+        if (query.selection != null) conditions.add(Condition.SELECTION);
+        if (query.text != null) conditions.add(Condition.TEXT);
+        if (query.title != null) conditions.add(Condition.TITLE);
+        if (query.author != null) conditions.add(Condition.AUTHOR);
+        return conditions;
+    }
+
+    private static boolean isTrigram(Condition condition) {
+        return condition == Condition.TEXT || condition == Condition.TITLE || condition == Condition.AUTHOR;
+    }
+
+    // Rows the condition's index yields, or -1 when it has none for this query
+    private int estimate(BookQuery query, Condition condition) {
+        CatalogFacets facets = catalog.facets();
+        switch (condition) {
+            case GENRE: return facets.genreCount(query.genre);
+            case LOCATION: return facets.locationCount(query.location);
+            case YEARS: return facets.yearCount(query.fromYear, query.toYear);
+            case AVAILABLE: return facets.availableCount();
+            case SELECTION: return -1; // plan() has its bitmap
+            case TEXT: return index.estimate(query.text, true, true);
+            case TITLE: return index.estimate(query.title, true, false);
+            default: return index.estimate(query.author, false, true);
+        }
+    }
+
+    private int[] slots(Plan plan, Condition condition) {
+        BookQuery query = plan.query;
+        CatalogFacets facets = catalog.facets();
+        switch (condition) {
+            case SELECTION: return plan.selected.toArray();
+            case GENRE: return facets.genreSlots(query.genre).toArray();
+            case LOCATION: return facets.locationSlots(query.location).toArray();
+            case YEARS: return facets.yearSlots(query.fromYear, query.toYear).toArray();
+            case AVAILABLE: return facets.availableSlots().toArray();
+            case TEXT: return index.candidateSlots(query.text, true, true);
+            case TITLE: return index.candidateSlots(query.title, true, false);
+            default: return index.candidateSlots(query.author, false, true);
+        }
+    }
+
+    private static String indexName(BookQuery query, Condition condition) {
+        switch (condition) {
+            case GENRE: return "genre bitmap " + BookQuery.quoted(query.genre);
+            case LOCATION: return "location bitmap " + BookQuery.quoted(query.location);
+            case YEARS: return "year bitmaps " + years(query);
+            case AVAILABLE: return "available bitmap";
+            case SELECTION: return "selection bitmap " + BookQuery.describe(query.selection);
+            case TEXT: return "title+author trigrams \"" + query.text + '"';
+            case TITLE: return "title trigrams \"" + query.title + '"';
+            default: return "author trigrams \"" + query.author + '"';
+        }
+    }
+
+    private static String filterName(BookQuery query, Condition condition) {
+        switch (condition) {
+            case GENRE: return "genre = " + BookQuery.quoted(query.genre);
+            case LOCATION: return "location = " + BookQuery.quoted(query.location);
+            case YEARS: return "year in " + years(query);
+            case AVAILABLE: return "available";
+            case SELECTION: return "in selection " + BookQuery.describe(query.selection);
+            case TEXT: return "title or author contains \"" + query.text + '"';
+            case TITLE: return "title contains \"" + query.title + '"';
+            default: return "author contains \"" + query.author + '"';
+        }
+    }
+
+    private static String line(String label, String text) {
+        return String.format("%-9s %s", label + ":", text);
+    }
+
+    private static String years(BookQuery query) {
+        return (query.fromYear != Integer.MIN_VALUE ? String.valueOf(query.fromYear) : "")
+                + ".." + (query.toYear != Integer.MAX_VALUE ? String.valueOf(query.toYear) : "");
+    }
+
+    // The plan's filters with their values looked up once: symbol codes and lower-cased needles
+    private class Filters {
+        final Condition[] conditions;
+        final int genre;
+        final int location;
+        final int fromYear;
+        final int toYear;
+        final char[] text;
+        final char[] title;
+        final char[] author;
+        final RoaringBitmap selected;
+        boolean matchesNothing; // a genre or location no book has ever had
+
+        Filters(BookQuery query, List<Condition> conditions, RoaringBitmap selected) {
+            this.conditions = conditions.toArray(new Condition[0]);
+            this.selected = selected;
+            genre = Book.GENRES.find(query.genre);
+            location = Book.LOCATIONS.find(query.location);
+            matchesNothing = (!query.anyGenre && query.genre != null && genre == SymbolTable.NONE)
+                    || (!query.anyLocation && query.location != null && location == SymbolTable.NONE);
+            fromYear = query.fromYear;
+            toYear = query.toYear;
+            text = needle(query.text);
+            title = needle(query.title);
+            author = needle(query.author);
+        }
+
+        boolean test(int slot) {
+            Book book = catalog.book(slot);
+            if (book == null) {
+                return false; // deleted
+            }
+            for (Condition condition : conditions) {
+                boolean match;
+                switch (condition) {
+                    case GENRE: match = catalog.genre(slot) == genre; break;
+                    case LOCATION: match = catalog.location(slot) == location; break;
+                    case YEARS: match = catalog.year(slot) >= fromYear && catalog.year(slot) <= toYear; break;
+                    case AVAILABLE: match = book.isAvailable(); break;
+                    case SELECTION: match = selected.contains(slot); break;
+                    case TEXT: match = catalog.matches(slot, text, true, true); break;
+                    case TITLE: match = catalog.matches(slot, title, true, false); break;
+                    default: match = catalog.matches(slot, author, false, true); break;
+                }
+                if (!match) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private char[] needle(String value) {
+            return value != null ? ColumnarCatalog.normalize(value).toCharArray() : null;
+        }
+    }
+
+    public static void main(String[] args) {
+        BookQuery query = new BookQuery();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--text": query.text(args[++i]); break;
+                case "--title": query.title(args[++i]); break;
+                case "--author": query.author(args[++i]); break;
+                case "--genre": query.genre(args[++i]); break;
+                case "--location": query.location(args[++i]); break;
+                case "--from": query.publishedBetween(Integer.parseInt(args[++i]), query.toYear); break;
+                case "--to": query.publishedBetween(query.fromYear, Integer.parseInt(args[++i])); break;
+                case "--available": query.availableOnly(); break;
+                case "--sort": query.sortBy(BookQuery.Sort.valueOf(args[++i].toUpperCase())); break;
+                case "--limit": query.limit(Integer.parseInt(args[++i])); break;
+                default: System.err.println("Ignoring " + args[i]);
+            }
+        }
+        System.out.println(BookManager.explain(query).explain());
+        long start = System.nanoTime();
+        List<Book> books = BookManager.query(query);
+        System.out.printf("%,d books in %.2f ms%n", books.size(), (System.nanoTime() - start) / 1e6);
+        for (Book book : books.subList(0, Math.min(10, books.size()))) {
+            System.out.println("  " + book.getId() + " | " + book.getTitle() + " | " + book.getAuthor() + " | "
+                    + book.getGenre() + " | " + book.getPublicationYear() + " | " + book.getLibraryLocation()
+                    + (book.isAvailable() ? "" : " | out"));
+        }
+    }
+}
@@ -1,8 +1,4 @@
 import java.awt.*;
-import java.io.*;
-import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.List;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 
@@ -19,12 +15,8 @@ public class RegisterFrame extends JFrame {
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        // Load background image
-        try {
-            bgImage = javax.imageio.ImageIO.read(getClass().getResource("Background/background.jpg"));
-        } catch (Exception e) {
-            bgImage = null;
-        }
+        // Background image, decoded once at startup
+        bgImage = LibraryStartup.image(LibraryStartup.BACKGROUND_IMAGE);
 
         JPanel backgroundPanel = new JPanel() {
             protected void paintComponent(Graphics g) {
@@ -197,42 +189,30 @@ public class RegisterFrame extends JFrame {
             return;
         }
 
-        if (UserFileManager.userExists(username)) {
-            JOptionPane.showMessageDialog(this, "Username already exists!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        String userLine = String.format("USER|%s|%s|%s|%s|%s|%s", username, password, fullName, contact, role, id);
-
-        try {
-            File file = new File("LibraryData.txt");
-            List<String> lines = new ArrayList<>(Files.readAllLines(file.toPath()));
-            List<String> updatedLines = new ArrayList<>();
-            boolean inserted = false;
-
-            for (String line : lines) {
-                if (!line.startsWith("USER|") && !inserted) {
-                    updatedLines.add(userLine); // Insert new user before non-user data
-                    inserted = true;
-                }
-                updatedLines.add(line);
+        // ✅ Both checks go to the library off the event thread; the answer is the error to
+        // show, or null once the user is saved
+        setButtonsEnabled(false);
+        UIUtils.inBackground(() -> {
+            if (LibraryService.get().userExists(username)) {
+                return "Username already exists!";
             }
-
-            if (!inserted) {
-                updatedLines.add(userLine); // Append to top if no USER lines found
+            return LibraryService.get().registerUser(new User(username, password, fullName, contact, role, id))
+                    ? null : "Error saving user!";
+        }, error -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, error, "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
 
-            Files.write(file.toPath(), updatedLines);
-
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error saving user!", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
+            JOptionPane.showMessageDialog(this, "Registered successfully!\nYour password: " + password,
+                    "Success", JOptionPane.INFORMATION_MESSAGE);
+            dispose();
+            new LoginFrame().setVisible(true);
+        }, () -> setButtonsEnabled(true));
+    }
 
-        JOptionPane.showMessageDialog(this, "Registered successfully!\nYour password: " + password,
-                "Success", JOptionPane.INFORMATION_MESSAGE);
-        dispose();
-        new LoginFrame().setVisible(true);
+    private void setButtonsEnabled(boolean enabled) {
+        registerBtn.setEnabled(enabled);
+        backBtn.setEnabled(enabled);
     }
 }
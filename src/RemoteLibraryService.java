@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Thin-client side of LibraryServer. Catalog rows are fetched a page at a time as the
+// table asks for them and cached. While a table is listening the server's catalog changes
+// are polled, so changes made on other desktops show up too: availability flips update
+// their rows in place, adds and deletes drop the cached pages.
+// Pages load on a background thread, so painting a table never waits for the server.
+//
+// A failed call is logged and answered with an empty result (null / false / 0), the same
+// as an operation the server refused, so the screens show their usual failure messages.
+public class RemoteLibraryService implements LibraryService {
+    private static final int PAGE_SIZE = 256;
+    private static final long POLL_SECONDS = 2;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private volatile String session;
+    private final AtomicLong failedCalls = new AtomicLong();
+
+    private final Map<Integer, List<Book>> pages = new ConcurrentHashMap<>();
+    private final Set<Integer> loadingPages = ConcurrentHashMap.newKeySet();
+    private final AtomicLong pagesVersion = new AtomicLong(); // bumped whenever the cached pages are dropped
+    private final ExecutorService pageLoader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-page-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile int bookCount = -1; // unknown until loadBookCount has an answer
+    private final AtomicBoolean countLoading = new AtomicBoolean();
+    private volatile long catalogVersion = -1;
+    private final List<BookManager.CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService poller;
+
+    public RemoteLibraryService(String baseUrl) {
+        this(baseUrl, HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build());
+    }
+
+    // Many sessions can share one client (and its connection pool), as the load test does
+    public RemoteLibraryService(String baseUrl, HttpClient client) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = client;
+    }
+
+    // Calls that failed or were refused by the server
+    public long getFailedCalls() {
+        return failedCalls.get();
+    }
+
+    // ---------------------------------------------------------------- users
+
+    public User authenticate(String username, String password) {
+        Object result = call("authenticate", args("username", username, "password", password));
+        if (!(result instanceof Map)) {
+            return null;
+        }
+        session = (String) ((Map<?, ?>) result).get("session");
+        return LibraryJson.toUser(((Map<?, ?>) result).get("user"));
+    }
+
+    public void logout() {
+        if (session != null) {
+            call("logout", args());
+            session = null;
+        }
+    }
+
+    public boolean userExists(String username) {
+        return Boolean.TRUE.equals(call("userExists", args("username", username)));
+    }
+
+    public boolean registerUser(User user) {
+        return Boolean.TRUE.equals(call("registerUser", args("user", LibraryJson.user(user, true))));
+    }
+
+    public List<User> loadUsers() {
+        List<User> users = new ArrayList<>();
+        for (Object user : list(call("loadUsers", args()))) {
+            users.add(LibraryJson.toUser(user));
+        }
+        return users;
+    }
+
+    public void deleteUser(String username) {
+        call("deleteUser", args("username", username));
+    }
+
+    // ---------------------------------------------------------------- catalog
+
+    // ✅ Never waits for the server: the count is fetched on the page loader and reads 0
+    // until the first answer arrives
+    public int getBookCount() {
+        if (bookCount < 0) {
+            requestBookCount();
+        }
+        return Math.max(bookCount, 0);
+    }
+
+    private void requestBookCount() {
+        if (countLoading.compareAndSet(false, true)) {
+            pageLoader.execute(this::loadBookCount);
+        }
+    }
+
+    // The only writer of bookCount. A failed call keeps the last count (or leaves it unknown
+    // for the next poll to retry); either way the tables re-read what they show.
+    private void loadBookCount() {
+        countLoading.set(false); // a change from here on queues another load
+        Object count = call("getBookCount", args());
+        if (count instanceof Number) {
+            bookCount = ((Number) count).intValue();
+        }
+        for (BookManager.CatalogListener listener : listeners) {
+            listener.catalogReloaded();
+        }
+    }
+
+    public int getAvailableBookCount() {
+        Object count = call("getAvailableBookCount", args());
+        return count instanceof Number ? ((Number) count).intValue() : 0;
+    }
+
+    // ✅ One request per page of PAGE_SIZE rows, the first time any row of it is painted.
+    // Until the page arrives its rows come back null; the listeners then hear rowsLoaded.
+    public Book getBookAt(int index) {
+        int number = index / PAGE_SIZE;
+        List<Book> page = pages.get(number);
+        if (page == null) {
+            if (loadingPages.add(number)) {
+                pageLoader.execute(() -> loadPage(number));
+            }
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    // A page read while the catalog changed is dropped; the listeners still hear about it,
+    // so the rows are asked for (and fetched) again
+    private void loadPage(int number) {
+        long version = pagesVersion.get();
+        List<Book> books = new ArrayList<>();
+        for (Object book : list(call("getBooks", args("offset", number * PAGE_SIZE, "limit", PAGE_SIZE)))) {
+            books.add(LibraryJson.toBook(book));
+        }
+        pages.put(number, books);
+        if (version != pagesVersion.get()) {
+            pages.remove(number, books);
+        }
+        loadingPages.remove(number);
+        for (BookManager.CatalogListener listener : listeners) {
+            listener.rowsLoaded(number * PAGE_SIZE, number * PAGE_SIZE + PAGE_SIZE - 1);
+        }
+    }
+
+    public List<Book> searchByTitleOrAuthor(String query, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (Object book : list(call("searchByTitleOrAuthor", args("query", query, "limit", limit)))) {
+            books.add(LibraryJson.toBook(book));
+        }
+        return books;
+    }
+
+    // Two requests: the first page, then the rest from where it ended
+    public List<Book> search(String text, CatalogFacets.Selection selection, int firstPageSize,
+            Consumer<List<Book>> firstPage) {
+        List<Book> books = searchPage(text, selection, 0, firstPageSize);
+        if (books.size() < firstPageSize || Thread.currentThread().isInterrupted()) {
+            return books;
+        }
+        firstPage.accept(books);
+        List<Book> all = new ArrayList<>(books);
+        all.addAll(searchPage(text, selection, firstPageSize, Integer.MAX_VALUE));
+        return all;
+    }
+
+    private List<Book> searchPage(String text, CatalogFacets.Selection selection, int offset, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (Object book : list(call("search", args("text", text, "selection", LibraryJson.selection(selection),
+                "offset", offset, "limit", limit)))) {
+            books.add(LibraryJson.toBook(book));
+        }
+        return books;
+    }
+
+    public List<Book> browse(CatalogFacets.Selection selection, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (Object book : list(call("browse", args("selection", LibraryJson.selection(selection), "limit", limit)))) {
+            books.add(LibraryJson.toBook(book));
+        }
+        return books;
+    }
+
+    public CatalogFacets.Counts getFacetCounts(CatalogFacets.Selection selection) {
+        Object counts = call("getFacetCounts", args("selection", LibraryJson.selection(selection)));
+        return counts != null ? LibraryJson.toFacetCounts(counts)
+                : new CatalogFacets.Counts(new LinkedHashMap<>(), new LinkedHashMap<>(), new TreeMap<>(), 0, 0);
+    }
+
+    public void addBook(Book book) {
+        call("addBook", args("book", LibraryJson.book(book)));
+        pollNow();
+    }
+
+    public boolean deleteBook(String bookId) {
+        return changed(call("deleteBook", args("bookId", bookId)));
+    }
+
+    public synchronized void addCatalogListener(BookManager.CatalogListener listener) {
+        listeners.add(listener);
+        if (bookCount < 0) {
+            requestBookCount();
+        }
+        if (poller == null) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "library-catalog-poller");
+                t.setDaemon(true);
+                return t;
+            });
+            poller.scheduleWithFixedDelay(this::pollCatalogChanges, POLL_SECONDS, POLL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void removeCatalogListener(BookManager.CatalogListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private void pollCatalogChanges() {
+        if (bookCount < 0) {
+            requestBookCount();
+        }
+        Object result = call("catalogChanges", args("since", catalogVersion));
+        if (!(result instanceof Map)) {
+            return;
+        }
+        Map<?, ?> changes = (Map<?, ?>) result;
+        catalogVersion = ((Number) changes.get("version")).longValue();
+        if (Boolean.TRUE.equals(changes.get("reload"))) {
+            catalogChanged();
+            return;
+        }
+        for (Object change : list(changes.get("changed"))) {
+            bookChanged(((Number) ((List<?>) change).get(0)).intValue(), LibraryJson.toBook(((List<?>) change).get(1)));
+        }
+    }
+
+    // ✅ One row changed: swap it into its cached page (if that page is loaded) and tell
+    // the tables about that row alone
+    private void bookChanged(int index, Book book) {
+        List<Book> page = pages.get(index / PAGE_SIZE);
+        int offset = index % PAGE_SIZE;
+        if (page != null && offset < page.size() && page.get(offset).getId().equals(book.getId())) {
+            page.set(offset, book);
+        }
+        if (loadingPages.contains(index / PAGE_SIZE)) {
+            pagesVersion.incrementAndGet(); // that page may have been read before the change
+        }
+        for (BookManager.CatalogListener listener : listeners) {
+            listener.bookChanged(index, book);
+        }
+    }
+
+    // After a change made from here, poll at once rather than on the next tick. Without a
+    // listening table there is no poller, and nothing to keep but the count.
+    private synchronized void pollNow() {
+        if (poller != null) {
+            poller.execute(this::pollCatalogChanges);
+        } else {
+            catalogChanged();
+        }
+    }
+
+    // ✅ Drop the cached pages; the tables hear catalogReloaded once the page loader has
+    // the new count. The old count stays readable meanwhile.
+    private void catalogChanged() {
+        pagesVersion.incrementAndGet();
+        pages.clear();
+        requestBookCount();
+    }
+
+    // ---------------------------------------------------------------- borrowing
+
+    public String requestBorrow(String bookId, String userId) {
+        Object result = call("requestBorrow", args("bookId", bookId)); // the server borrows for the session's user
+        return result instanceof String ? (String) result : null;
+    }
+
+    public boolean approveBorrow(String borrowId) {
+        return changed(call("approveBorrow", args("borrowId", borrowId)));
+    }
+
+    public boolean rejectBorrow(String borrowId) {
+        return Boolean.TRUE.equals(call("rejectBorrow", args("borrowId", borrowId)));
+    }
+
+    public boolean requestReturn(String borrowId) {
+        return Boolean.TRUE.equals(call("requestReturn", args("borrowId", borrowId)));
+    }
+
+    public boolean approveReturn(String borrowId) {
+        return changed(call("approveReturn", args("borrowId", borrowId)));
+    }
+
+    public boolean rejectReturn(String borrowId) {
+        return Boolean.TRUE.equals(call("rejectReturn", args("borrowId", borrowId)));
+    }
+
+    public Map<String, Boolean> approveBorrows(Collection<String> borrowIds) {
+        return outcomes("approveBorrows", borrowIds);
+    }
+
+    public Map<String, Boolean> rejectBorrows(Collection<String> borrowIds) {
+        return outcomes("rejectBorrows", borrowIds);
+    }
+
+    public Map<String, Boolean> approveReturns(Collection<String> borrowIds) {
+        return outcomes("approveReturns", borrowIds);
+    }
+
+    public Map<String, Boolean> rejectReturns(Collection<String> borrowIds) {
+        return outcomes("rejectReturns", borrowIds);
+    }
+
+    // ✅ A failed call reports every request as not applied
+    private Map<String, Boolean> outcomes(String method, Collection<String> borrowIds) {
+        Object result = call(method, args("borrowIds", new ArrayList<>(borrowIds)));
+        Map<String, Boolean> outcomes = new LinkedHashMap<>();
+        for (String borrowId : borrowIds) {
+            outcomes.put(borrowId, result instanceof Map && Boolean.TRUE.equals(((Map<?, ?>) result).get(borrowId)));
+        }
+        if (outcomes.containsValue(true)) {
+            pollNow();
+        }
+        return outcomes;
+    }
+
+    public List<BorrowRecordView> getBorrowRecordViews(String userId, Collection<String> statuses, int offset, int limit) {
+        List<BorrowRecordView> views = new ArrayList<>();
+        Object result = call("getBorrowRecordViews", args("userId", userId,
+                "statuses", statuses != null ? new ArrayList<>(statuses) : null, "offset", offset, "limit", limit));
+        for (Object view : list(result)) {
+            views.add(LibraryJson.toBorrowRecordView(view));
+        }
+        return views;
+    }
+
+    public int countBorrowRecords(String userId, Collection<String> statuses) {
+        Object count = call("countBorrowRecords", args("userId", userId,
+                "statuses", statuses != null ? new ArrayList<>(statuses) : null));
+        return count instanceof Number ? ((Number) count).intValue() : 0;
+    }
+
+    // ---------------------------------------------------------------- transport
+
+    private boolean changed(Object result) {
+        boolean ok = Boolean.TRUE.equals(result);
+        if (ok) {
+            pollNow();
+        }
+        return ok;
+    }
+
+    private Object call(String method, Map<String, Object> args) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/" + method))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(LibraryJson.write(args)));
+            if (session != null) {
+                request.header(LibraryServer.SESSION_HEADER, session);
+            }
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            Map<?, ?> reply = (Map<?, ?>) LibraryJson.parse(response.body());
+            if (response.statusCode() != 200) {
+                failedCalls.incrementAndGet();
+                System.err.println("Library server refused " + method + ": " + reply.get("error"));
+                return null;
+            }
+            return reply.get("result");
+        } catch (IOException | RuntimeException e) {
+            failedCalls.incrementAndGet();
+            e.printStackTrace();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static Map<String, Object> args(Object... keysAndValues) {
+        Map<String, Object> args = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            args.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return args;
+    }
+
+    private static List<?> list(Object result) {
+        return result instanceof List ? (List<?>) result : Collections.emptyList();
+    }
+}
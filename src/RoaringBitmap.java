@@ -0,0 +1,373 @@
+import java.util.Arrays;
+
+// A compressed set of non-negative ints in the Roaring layout: values are grouped by their
+// high 16 bits, and each group of up to 65536 low halves is stored in whichever container is
+// smaller for it:
+//
+//   array    sorted char[] of the low halves, for groups of up to ARRAY_MAX values
+//   bitmap   long[1024], one bit per low half, for fuller groups
+//
+// A group changes container as it crosses ARRAY_MAX, so AND, OR and their cardinalities
+// combine two groups word by word or by walking a sorted array. Cardinalities are kept per
+// group and in total, so size() is O(1). Not thread-safe: callers lock around changes.
+public class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096; // 4096 chars = 8 KB, the size of a bitmap container
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4]; // char[] or long[]
+    private int[] counts = new int[4];
+    private int groups;
+    private int cardinality;
+
+    public boolean add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertGroup(i, key, new char[] { low, 0, 0, 0 }, 1);
+            cardinality++;
+            return true;
+        }
+        if (containers[i] instanceof long[]) {
+            long[] words = (long[]) containers[i];
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return false;
+            }
+            words[low >>> 6] |= bit;
+        } else {
+            char[] values = (char[]) containers[i];
+            int count = counts[i];
+            int at = Arrays.binarySearch(values, 0, count, low);
+            if (at >= 0) {
+                return false;
+            }
+            if (count == ARRAY_MAX) {
+                long[] words = toWords(values, count);
+                words[low >>> 6] |= 1L << low;
+                containers[i] = words;
+            } else {
+                at = -at - 1;
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, count * 2));
+                    containers[i] = values;
+                }
+                System.arraycopy(values, at, values, at + 1, count - at);
+                values[at] = low;
+            }
+        }
+        counts[i]++;
+        cardinality++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int i = find(key);
+        if (i < 0) {
+            return false;
+        }
+        if (containers[i] instanceof long[]) {
+            long[] words = (long[]) containers[i];
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return false;
+            }
+            words[low >>> 6] &= ~bit;
+            if (counts[i] - 1 == ARRAY_MAX) {
+                containers[i] = toValues(words, ARRAY_MAX);
+            }
+        } else {
+            char[] values = (char[]) containers[i];
+            int at = Arrays.binarySearch(values, 0, counts[i], low);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(values, at + 1, values, at, counts[i] - at - 1);
+        }
+        cardinality--;
+        if (--counts[i] == 0) {
+            removeGroup(i);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int i = find((char) (value >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (containers[i] instanceof long[]) {
+            return (((long[]) containers[i])[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) containers[i], 0, counts[i], low) >= 0;
+    }
+
+    public int size() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    // ✅ The values in ascending order
+    public int[] toArray() {
+        int[] values = new int[cardinality];
+        int n = 0;
+        for (int i = 0; i < groups; i++) {
+            int high = keys[i] << 16;
+            if (containers[i] instanceof long[]) {
+                long[] words = (long[]) containers[i];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    for (long word = words[w]; word != 0; word &= word - 1) {
+                        values[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            } else {
+                char[] lows = (char[]) containers[i];
+                for (int j = 0, count = counts[i]; j < count; j++) {
+                    values[n++] = high | lows[j];
+                }
+            }
+        }
+        return values;
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, groups));
+        copy.containers = new Object[copy.keys.length];
+        copy.counts = Arrays.copyOf(counts, copy.keys.length);
+        for (int i = 0; i < groups; i++) {
+            copy.containers[i] = copyOf(containers[i], counts[i]);
+        }
+        copy.groups = groups;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    // ---------------------------------------------------------------- set operations
+
+    // ✅ Only groups present in both are looked at, container against container
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.groups && j < b.groups) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object x = a.containers[i], y = b.containers[j];
+                if (x instanceof long[] && y instanceof long[]) {
+                    long[] words = new long[BITMAP_WORDS];
+                    int count = 0;
+                    long[] xw = (long[]) x, yw = (long[]) y;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        words[w] = xw[w] & yw[w];
+                        count += Long.bitCount(words[w]);
+                    }
+                    result.append(a.keys[i], count > ARRAY_MAX ? words : toValues(words, count), count);
+                } else {
+                    char[] values = new char[Math.min(a.counts[i], b.counts[j])];
+                    int count = x instanceof long[]
+                            ? filter((char[]) y, b.counts[j], (long[]) x, values)
+                            : y instanceof long[]
+                            ? filter((char[]) x, a.counts[i], (long[]) y, values)
+                            : intersect((char[]) x, a.counts[i], (char[]) y, b.counts[j], values);
+                    result.append(a.keys[i], values, count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.groups || j < b.groups) {
+            if (j == b.groups || (i < a.groups && a.keys[i] < b.keys[j])) {
+                result.append(a.keys[i], copyOf(a.containers[i], a.counts[i]), a.counts[i]);
+                i++;
+            } else if (i == a.groups || a.keys[i] > b.keys[j]) {
+                result.append(b.keys[j], copyOf(b.containers[j], b.counts[j]), b.counts[j]);
+                j++;
+            } else {
+                Object x = a.containers[i], y = b.containers[j];
+                if (x instanceof char[] && y instanceof char[] && a.counts[i] + b.counts[j] <= ARRAY_MAX) {
+                    char[] values = new char[a.counts[i] + b.counts[j]];
+                    int count = union((char[]) x, a.counts[i], (char[]) y, b.counts[j], values);
+                    result.append(a.keys[i], values, count);
+                } else {
+                    long[] words = x instanceof long[] ? ((long[]) x).clone() : toWords((char[]) x, a.counts[i]);
+                    int count = 0;
+                    if (y instanceof long[]) {
+                        long[] yw = (long[]) y;
+                        for (int w = 0; w < BITMAP_WORDS; w++) {
+                            words[w] |= yw[w];
+                            count += Long.bitCount(words[w]);
+                        }
+                    } else {
+                        char[] lows = (char[]) y;
+                        for (int k = 0; k < b.counts[j]; k++) {
+                            words[lows[k] >>> 6] |= 1L << lows[k];
+                        }
+                        for (int w = 0; w < BITMAP_WORDS; w++) {
+                            count += Long.bitCount(words[w]);
+                        }
+                    }
+                    result.append(a.keys[i], count > ARRAY_MAX ? words : toValues(words, count), count);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // ✅ |a AND b| without building the intersection, for facet counts
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < a.groups && j < b.groups) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Object x = a.containers[i], y = b.containers[j];
+                if (x instanceof long[] && y instanceof long[]) {
+                    long[] xw = (long[]) x, yw = (long[]) y;
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        total += Long.bitCount(xw[w] & yw[w]);
+                    }
+                } else if (x instanceof long[]) {
+                    total += filter((char[]) y, b.counts[j], (long[]) x, null);
+                } else if (y instanceof long[]) {
+                    total += filter((char[]) x, a.counts[i], (long[]) y, null);
+                } else {
+                    total += intersect((char[]) x, a.counts[i], (char[]) y, b.counts[j], null);
+                }
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    // ---------------------------------------------------------------- containers
+
+    // Array values also in a bitmap container, written to out (when not null); returns how many
+    private static int filter(char[] values, int count, long[] words, char[] out) {
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            char low = values[k];
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                if (out != null) out[n] = low;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static int intersect(char[] x, int xCount, char[] y, int yCount, char[] out) {
+        int n = 0;
+        for (int i = 0, j = 0; i < xCount && j < yCount; ) {
+            if (x[i] < y[j]) {
+                i++;
+            } else if (x[i] > y[j]) {
+                j++;
+            } else {
+                if (out != null) out[n] = x[i];
+                n++;
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private static int union(char[] x, int xCount, char[] y, int yCount, char[] out) {
+        int n = 0, i = 0, j = 0;
+        while (i < xCount && j < yCount) {
+            if (x[i] < y[j]) {
+                out[n++] = x[i++];
+            } else if (x[i] > y[j]) {
+                out[n++] = y[j++];
+            } else {
+                out[n++] = x[i++];
+                j++;
+            }
+        }
+        while (i < xCount) out[n++] = x[i++];
+        while (j < yCount) out[n++] = y[j++];
+        return n;
+    }
+
+    private static long[] toWords(char[] values, int count) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int k = 0; k < count; k++) {
+            words[values[k] >>> 6] |= 1L << values[k];
+        }
+        return words;
+    }
+
+    private static char[] toValues(long[] words, int count) {
+        char[] values = new char[Math.max(1, count)];
+        int n = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return values;
+    }
+
+    private static Object copyOf(Object container, int count) {
+        return container instanceof long[] ? ((long[]) container).clone()
+                : Arrays.copyOf((char[]) container, Math.max(1, count));
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, groups, key);
+    }
+
+    // Adds a group after the last one (set operations build results in key order); empty
+    // groups are dropped
+    private void append(char key, Object container, int count) {
+        if (count > 0) {
+            insertGroup(groups, key, container, count);
+            cardinality += count;
+        }
+    }
+
+    private void insertGroup(int at, char key, Object container, int count) {
+        if (groups == keys.length) {
+            keys = Arrays.copyOf(keys, groups * 2);
+            containers = Arrays.copyOf(containers, groups * 2);
+            counts = Arrays.copyOf(counts, groups * 2);
+        }
+        System.arraycopy(keys, at, keys, at + 1, groups - at);
+        System.arraycopy(containers, at, containers, at + 1, groups - at);
+        System.arraycopy(counts, at, counts, at + 1, groups - at);
+        keys[at] = key;
+        containers[at] = container;
+        counts[at] = count;
+        groups++;
+    }
+
+    private void removeGroup(int at) {
+        System.arraycopy(keys, at + 1, keys, at, groups - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, groups - at - 1);
+        System.arraycopy(counts, at + 1, counts, at, groups - at - 1);
+        groups--;
+        containers[groups] = null;
+    }
+}
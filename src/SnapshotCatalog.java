@@ -0,0 +1,134 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+// The catalog as of library.snapshot plus the journal, readable while BookManager builds its
+// collections in the background. Rows are in BookManager's order: the snapshot's books
+// minus the ones deleted since, then the books added since. A book is decoded from the
+// mapped file the first time a row or id asks for it, and the same object goes into the
+// catalog once it is loaded.
+//
+// Filled in by the journal replay during class initialization and only read after that.
+public class SnapshotCatalog implements LibraryJournal.Handler {
+    private final LibrarySnapshot snapshot;
+    private final BitSet deleted = new BitSet();                  // snapshot positions deleted since
+    private final Map<Integer, Book> replaced = new HashMap<>();  // snapshot positions put again since
+    private final List<Book> added = new ArrayList<>();           // books the snapshot doesn't have
+    private final Map<String, Book> touched = new HashMap<>();    // ids the journal changed (null = deleted)
+    private final Map<Object, BorrowRecord> journalRecords = new LinkedHashMap<>(); // by BorrowRecord.key()
+    private final List<Consumer<LibraryJournal.Handler>> entries = new ArrayList<>();
+    private int liveSnapshotBooks;
+
+    public SnapshotCatalog(LibrarySnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.liveSnapshotBooks = snapshot.bookCount();
+    }
+
+    // ---------------------------------------------------------------- journal replay
+
+    public void putBook(Book book) {
+        entries.add(handler -> handler.putBook(book));
+        Book existing = getBookById(book.getId());
+        int row = existing != null ? added.indexOf(existing) : -1;
+        if (row >= 0) {
+            added.set(row, book);
+        } else if (existing != null) {
+            replaced.put(snapshot.bookIndex(book.getId()), book);
+        } else {
+            added.add(book);
+        }
+        touched.put(book.getId(), book);
+    }
+
+    public void deleteBook(String bookId) {
+        entries.add(handler -> handler.deleteBook(bookId));
+        Book existing = getBookById(bookId);
+        if (existing == null) {
+            return;
+        }
+        int row = added.indexOf(existing);
+        if (row >= 0) {
+            added.remove(row);
+        } else {
+            int index = snapshot.bookIndex(bookId);
+            deleted.set(index);
+            replaced.remove(index);
+            liveSnapshotBooks--;
+        }
+        touched.put(bookId, null);
+    }
+
+    public void setAvailable(String bookId, boolean available) {
+        entries.add(handler -> handler.setAvailable(bookId, available));
+        Book book = getBookById(bookId);
+        if (book != null) {
+            book.setAvailable(available);
+        }
+    }
+
+    public void putBorrowRecord(BorrowRecord record) {
+        entries.add(handler -> handler.putBorrowRecord(record));
+        journalRecords.put(record.key(), record);
+    }
+
+    // ✅ Hand the journal entries seen so far to another handler (loading from the .dat files instead)
+    public void replayJournal(LibraryJournal.Handler handler) {
+        for (Consumer<LibraryJournal.Handler> entry : entries) {
+            entry.accept(handler);
+        }
+    }
+
+    // ---------------------------------------------------------------- reads
+
+    public int getBookCount() {
+        return liveSnapshotBooks + added.size();
+    }
+
+    public Book getBookAt(int row) {
+        if (row < 0) {
+            return null;
+        }
+        if (row < liveSnapshotBooks) {
+            int index = row;
+            for (int d = deleted.nextSetBit(0); d >= 0 && d <= index; d = deleted.nextSetBit(d + 1)) {
+                index++; // skip each deleted position at or before the one we're on
+            }
+            Book book = replaced.get(index);
+            return book != null ? book : snapshot.book(index);
+        }
+        row -= liveSnapshotBooks;
+        return row < added.size() ? added.get(row) : null;
+    }
+
+    public Book getBookById(String bookId) {
+        if (touched.containsKey(bookId)) {
+            return touched.get(bookId);
+        }
+        int index = snapshot.bookIndex(bookId);
+        return index >= 0 ? snapshot.book(index) : null;
+    }
+
+    // ✅ Every book in row order, decoding the ones not read yet
+    public List<Book> books() {
+        List<Book> all = snapshot.books();
+        List<Book> books = new ArrayList<>(getBookCount());
+        for (int i = 0; i < all.size(); i++) {
+            if (!deleted.get(i)) {
+                Book book = replaced.get(i);
+                books.add(book != null ? book : all.get(i));
+            }
+        }
+        books.addAll(added);
+        return books;
+    }
+
+    // ✅ Every borrow record in creation order, with the journal's versions replacing the snapshot's
+    public Collection<BorrowRecord> borrowRecords() {
+        List<BorrowRecord> all = snapshot.borrowRecords();
+        Map<Object, BorrowRecord> records = new LinkedHashMap<>(all.size() * 4 / 3 + 1);
+        for (BorrowRecord record : all) {
+            records.put(record.key(), record);
+        }
+        records.putAll(journalRecords);
+        return records.values();
+    }
+}
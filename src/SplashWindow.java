@@ -0,0 +1,51 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+
+// Shown while LibraryStartup loads: one tick of the bar per finished step, and the steps
+// still running underneath. Call stepDone() on the event thread.
+public class SplashWindow extends JWindow {
+    private final List<LibraryStartup.Step> pending;
+    private final JProgressBar progress;
+    private final JLabel status;
+
+    public SplashWindow(List<LibraryStartup.Step> steps) {
+        pending = new ArrayList<>(steps);
+
+        JPanel content = new JPanel(new BorderLayout(0, 12));
+        content.setBackground(new Color(33, 71, 153));
+        content.setBorder(new EmptyBorder(24, 30, 24, 30));
+
+        JLabel title = new JLabel("SmartShelf", JLabel.CENTER);
+        title.setFont(new Font("Segoe UI", Font.BOLD, 26));
+        title.setForeground(Color.WHITE);
+        content.add(title, BorderLayout.NORTH);
+
+        progress = new JProgressBar(0, steps.size());
+        progress.setStringPainted(false);
+        content.add(progress, BorderLayout.CENTER);
+
+        status = new JLabel(" ", JLabel.CENTER);
+        status.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        status.setForeground(Color.WHITE);
+        content.add(status, BorderLayout.SOUTH);
+        showPending();
+
+        setContentPane(content);
+        setSize(380, 160);
+        setLocationRelativeTo(null);
+    }
+
+    public void stepDone(LibraryStartup.Step step) {
+        if (pending.remove(step)) {
+            progress.setValue(progress.getMaximum() - pending.size());
+            showPending();
+        }
+    }
+
+    private void showPending() {
+        status.setText(pending.isEmpty() ? "Ready" : pending.get(0).label() + "...");
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+
+// Strings numbered 0, 1, 2, ... in the order they are first seen, each number standing for
+// one String: Book keeps its author, genre and location as these codes, so a catalog holds
+// each distinct value once and a filter compares ints. Codes are never removed or reused.
+//
+// Adding takes the lock; symbol() doesn't: the count is raised after the symbol is stored.
+public class SymbolTable {
+    public static final int NONE = -1; // the code of null
+
+    private volatile String[] symbols = new String[16]; // replaced, never shrunk, when it fills
+    private int[] slots = new int[32]; // open addressing on the hash, code + 1 (0 = empty)
+    private volatile int count;
+
+    // ✅ The code of symbol, numbering it if it is new
+    public int code(String symbol) {
+        if (symbol == null) {
+            return NONE;
+        }
+        synchronized (this) {
+            int slot = slot(symbol);
+            if (slots[slot] != 0) {
+                return slots[slot] - 1;
+            }
+            int code = count;
+            if (code == symbols.length) {
+                symbols = Arrays.copyOf(symbols, code * 2);
+            }
+            symbols[code] = symbol;
+            slots[slot] = code + 1;
+            count = code + 1;
+            if (count * 2 > slots.length) {
+                rehash();
+            }
+            return code;
+        }
+    }
+
+    // ✅ The code of symbol if it has one, else NONE (a filter on it matches nothing)
+    public synchronized int find(String symbol) {
+        if (symbol == null) {
+            return NONE;
+        }
+        int slot = slot(symbol);
+        return slots[slot] - 1;
+    }
+
+    public String symbol(int code) {
+        if (code < 0 || code >= count) {
+            return null;
+        }
+        return symbols[code];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Where symbol is, or the empty slot it would go in
+    private int slot(String symbol) {
+        int h = symbol.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = (h ^ (h >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0 || symbols[entry - 1].equals(symbol)) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int code = 0; code < count; code++) {
+            slots[slot(symbols[code])] = code + 1;
+        }
+    }
+}
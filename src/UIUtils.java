@@ -1,7 +1,20 @@
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class UIUtils {
+    // The dashboards' calls into LibraryService run here, one at a time and in the order they
+    // were made, so a remote library never holds up the event thread
+    private static final ExecutorService serviceCalls = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-service-calls");
+        t.setDaemon(true);
+        return t;
+    });
+
     public static void styleButton(JButton button, String iconPath) {
         button.setBackground(new Color(30, 144, 255));
         button.setForeground(Color.WHITE);
@@ -16,4 +29,34 @@ public class UIUtils {
             button.setIcon(icon);
         }
     }
+
+    // ✅ Show background save failures (see PersistenceExecutor) over whichever window is active
+    public static void reportPersistenceFailures() {
+        PersistenceExecutor.addFailureListener(message -> SwingUtilities.invokeLater(() ->
+                JOptionPane.showMessageDialog(
+                        KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow(),
+                        message, "Save Failed", JOptionPane.ERROR_MESSAGE)));
+    }
+
+    // ✅ Run a service call off the event thread and hand its result to done on it; a call
+    // that throws is reported like the screens report any other error
+    public static <T> void inBackground(Supplier<T> call, Consumer<T> done) {
+        inBackground(call, done, () -> {});
+    }
+
+    // The same, then runs after on the event thread whether or not the call succeeded
+    // (to re-enable the buttons that started it)
+    public static <T> void inBackground(Supplier<T> call, Consumer<T> done, Runnable after) {
+        CompletableFuture.supplyAsync(call, serviceCalls).whenComplete((result, e) -> SwingUtilities.invokeLater(() -> {
+            after.run();
+            if (e == null) {
+                done.accept(result);
+                return;
+            }
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            cause.printStackTrace();
+            JOptionPane.showMessageDialog(KeyboardFocusManager.getCurrentKeyboardFocusManager().getActiveWindow(),
+                    "Error: " + cause.getMessage());
+        }));
+    }
 }
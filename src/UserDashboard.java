@@ -2,8 +2,16 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 
@@ -12,12 +20,36 @@ public class UserDashboard extends JFrame {
     private JTable bookTable;
     private JTable myBooksTable;
     private JTable historyTable;
-    private DefaultTableModel booksModel;
+    private BookTableModel booksModel;
     private DefaultTableModel myBooksModel;
     private DefaultTableModel historyModel;
     private JTextField searchField;
+
+    // Search-as-you-type: the query runs SEARCH_DELAY_MS after the last keystroke, on a
+    // background thread; each new query cancels the one before it
+    private static final int SEARCH_DELAY_MS = 200;
+    private static final int FIRST_PAGE_SIZE = 100;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "book-search");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Timer searchTimer = new Timer(SEARCH_DELAY_MS, e -> startSearch());
+    private Future<?> runningSearch;
+    private int searchGeneration; // only touched on the EDT
     private JComboBox<String> historyFilterCombo;
 
+    // Facet sidebar: a check box per genre and location with its count, a year range and
+    // "available only"; the boxes are rebuilt when the catalog's values change
+    private JPanel genreFacets;
+    private JPanel locationFacets;
+    private final Map<String, JCheckBox> genreBoxes = new LinkedHashMap<>();
+    private final Map<String, JCheckBox> locationBoxes = new LinkedHashMap<>();
+    private JTextField fromYearField;
+    private JTextField toYearField;
+    private JCheckBox availableOnlyBox;
+    private JLabel matchingLabel;
+
     // Define green & white colors for theme
     private final Color PRIMARY_GREEN = new Color(46, 125, 50);        // #2E7D32
     private final Color BUTTON_GREEN = new Color(56, 142, 60);         // Slightly lighter green for hover
@@ -55,9 +87,10 @@ public class UserDashboard extends JFrame {
         profileButton.setBorderPainted(false);
         profileButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
 
-        ImageIcon profileIcon = new ImageIcon("src/resources/user-profile.jpg");
-        Image img = profileIcon.getImage().getScaledInstance(35, 35, Image.SCALE_SMOOTH);
-        profileButton.setIcon(new ImageIcon(img));
+        Image profileImage = LibraryStartup.image(LibraryStartup.PROFILE_IMAGE);
+        if (profileImage != null) {
+            profileButton.setIcon(new ImageIcon(profileImage.getScaledInstance(35, 35, Image.SCALE_SMOOTH)));
+        }
         profileButton.setToolTipText("User Profile");
 
         JPopupMenu profileMenu = new JPopupMenu();
@@ -117,13 +150,25 @@ public class UserDashboard extends JFrame {
 
         searchField = new JTextField();
         searchField.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        searchField.addActionListener(this::performSearch);
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
 
         JButton searchButton = createStyledButton("Search");
         searchButton.addActionListener(this::performSearch);
         JButton clearButton = createStyledButton("Clear");
         clearButton.addActionListener(e -> {
             searchField.setText("");
-            refreshBookTable();
+            fromYearField.setText("");
+            toYearField.setText("");
+            availableOnlyBox.setSelected(false);
+            genreBoxes.values().forEach(box -> box.setSelected(false));
+            locationBoxes.values().forEach(box -> box.setSelected(false));
+            performSearch(e);
         });
 
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -135,23 +180,142 @@ public class UserDashboard extends JFrame {
         searchPanel.add(searchField, BorderLayout.CENTER);
         searchPanel.add(buttons, BorderLayout.EAST);
 
-        String[] columns = { "ID", "Title", "Author", "Available" };
-        booksModel = new DefaultTableModel(columns, 0) {
-            @Override public boolean isCellEditable(int row, int col) { return false; }
-        };
+        booksModel = new BookTableModel(BookTableModel.Column.ID, BookTableModel.Column.TITLE,
+                BookTableModel.Column.AUTHOR, BookTableModel.Column.AVAILABLE);
         bookTable = new JTable(booksModel);
         styleTable(bookTable);
-        refreshBookTable();
 
         JButton borrowButton = createStyledButton("Borrow Book");
         borrowButton.addActionListener(e -> borrowSelectedBook());
 
         panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(createFacetPanel(), BorderLayout.WEST);
         panel.add(new JScrollPane(bookTable), BorderLayout.CENTER);
         panel.add(borrowButton, BorderLayout.SOUTH);
+        startSearch(); // fills in the facet counts
         return panel;
     }
 
+    private JComponent createFacetPanel() {
+        JPanel facets = new JPanel();
+        facets.setLayout(new BoxLayout(facets, BoxLayout.Y_AXIS));
+        facets.setBackground(BG_WHITE);
+        facets.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 10));
+
+        genreFacets = createFacetSection(facets, "Genre");
+        locationFacets = createFacetSection(facets, "Location");
+
+        JPanel years = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        years.setBackground(BG_WHITE);
+        years.setAlignmentX(Component.LEFT_ALIGNMENT);
+        fromYearField = new JTextField(4);
+        toYearField = new JTextField(4);
+        for (JTextField field : new JTextField[] { fromYearField, toYearField }) {
+            field.addActionListener(this::performSearch);
+            field.getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+                public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+                public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+            });
+        }
+        years.add(fromYearField);
+        years.add(new JLabel("to"));
+        years.add(toYearField);
+        facets.add(createFacetHeading("Published"));
+        facets.add(years);
+
+        availableOnlyBox = new JCheckBox("Available only");
+        availableOnlyBox.setBackground(BG_WHITE);
+        availableOnlyBox.addActionListener(this::performSearch);
+        facets.add(Box.createVerticalStrut(10));
+        facets.add(availableOnlyBox);
+
+        matchingLabel = new JLabel(" ");
+        matchingLabel.setForeground(TEXT_DARK);
+        facets.add(Box.createVerticalStrut(10));
+        facets.add(matchingLabel);
+
+        JScrollPane scroll = new JScrollPane(facets);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        scroll.setPreferredSize(new Dimension(210, 0));
+        return scroll;
+    }
+
+    private JPanel createFacetSection(JPanel facets, String title) {
+        JPanel boxes = new JPanel();
+        boxes.setLayout(new BoxLayout(boxes, BoxLayout.Y_AXIS));
+        boxes.setBackground(BG_WHITE);
+        boxes.setAlignmentX(Component.LEFT_ALIGNMENT);
+        facets.add(createFacetHeading(title));
+        facets.add(boxes);
+        facets.add(Box.createVerticalStrut(10));
+        return boxes;
+    }
+
+    private JLabel createFacetHeading(String title) {
+        JLabel heading = new JLabel(title);
+        heading.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        heading.setForeground(PRIMARY_GREEN);
+        heading.setAlignmentX(Component.LEFT_ALIGNMENT);
+        return heading;
+    }
+
+    private CatalogFacets.Selection currentSelection() {
+        return new CatalogFacets.Selection(selected(genreBoxes), selected(locationBoxes),
+                year(fromYearField, Integer.MIN_VALUE), year(toYearField, Integer.MAX_VALUE),
+                availableOnlyBox.isSelected());
+    }
+
+    private static List<String> selected(Map<String, JCheckBox> boxes) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, JCheckBox> box : boxes.entrySet()) {
+            if (box.getValue().isSelected()) {
+                values.add(box.getKey());
+            }
+        }
+        return values;
+    }
+
+    // A blank or unreadable year leaves that end of the range open
+    private static int year(JTextField field, int open) {
+        try {
+            return Integer.parseInt(field.getText().trim());
+        } catch (NumberFormatException e) {
+            return open;
+        }
+    }
+
+    private void updateFacets(CatalogFacets.Counts counts) {
+        updateFacetBoxes(genreFacets, genreBoxes, counts.genres);
+        updateFacetBoxes(locationFacets, locationBoxes, counts.locations);
+        availableOnlyBox.setText(String.format("Available only (%,d)", counts.available));
+        matchingLabel.setText(String.format("%,d books", counts.matching));
+    }
+
+    // ✅ Relabel the boxes in place; rebuild them (keeping what was ticked) only when a value
+    // has appeared or gone
+    private void updateFacetBoxes(JPanel panel, Map<String, JCheckBox> boxes, Map<String, Integer> counts) {
+        if (!boxes.keySet().equals(counts.keySet())) {
+            List<String> ticked = selected(boxes);
+            boxes.clear();
+            panel.removeAll();
+            for (String value : counts.keySet()) {
+                JCheckBox box = new JCheckBox();
+                box.setBackground(BG_WHITE);
+                box.setSelected(ticked.contains(value));
+                box.addActionListener(this::performSearch);
+                boxes.put(value, box);
+                panel.add(box);
+            }
+            panel.revalidate();
+            panel.repaint();
+        }
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            String name = count.getKey() != null ? count.getKey() : "(none)";
+            boxes.get(count.getKey()).setText(String.format("%s (%,d)", name, count.getValue()));
+        }
+    }
+
     private JPanel createMyBooksPanel() {
         JPanel panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(15, 20, 15, 20));
@@ -245,98 +409,121 @@ public class UserDashboard extends JFrame {
     }
 
     private void refreshHistoryTable() {
-        historyModel.setRowCount(0);
-        List<BorrowRecord> records = BookManager.getBorrowHistory(user.getUsername());
         String filter = (String) historyFilterCombo.getSelectedItem();
+        List<String> statuses = "All".equals(filter) ? null : List.of(filter.toUpperCase());
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-        for (BorrowRecord record : records) {
-            // Apply filter
-            if (!"All".equals(filter) && !filter.equalsIgnoreCase(record.getStatus())) {
-                continue;
-            }
-
-            Book book = BookManager.getBookById(record.getBookId());
-            if (book != null) {
+        UIUtils.inBackground(() -> LibraryService.get().getBorrowRecordViews(user.getUsername(), statuses), views -> {
+            historyModel.setRowCount(0);
+            for (BorrowRecordView view : views) {
                 historyModel.addRow(new Object[]{
-                        book.getTitle(),
-                        book.getAuthor(),
-                        record.getStatus(),
-                        record.getBorrowDate() != null ? record.getBorrowDate().format(formatter) : "",
-                        record.getDueDate() != null ? record.getDueDate().format(formatter) : "",
-                        record.getReturnDate() != null ? record.getReturnDate().format(formatter) : ""
+                        view.getTitle(),
+                        view.getAuthor(),
+                        view.getStatus(),
+                        view.getBorrowDate() != null ? view.getBorrowDate().format(formatter) : "",
+                        view.getDueDate() != null ? view.getDueDate().format(formatter) : "",
+                        view.getReturnDate() != null ? view.getReturnDate().format(formatter) : ""
                 });
             }
-        }
+        });
     }
 
     private void performSearch(ActionEvent e) {
+        searchTimer.stop();
+        startSearch();
+    }
+
+    // ✅ Show the first page of matches as soon as it is found, then the full result set,
+    // from one pass over the catalog. The sidebar's counts come first. Free text and facets
+    // are one query; the counts are for the facets alone. A newer query interrupts this
+    // one, which stops inside its scan.
+    private void startSearch() {
+        int generation = ++searchGeneration;
+        if (runningSearch != null) {
+            runningSearch.cancel(true);
+        }
         String query = searchField.getText().trim();
-        if (query.isEmpty()) {
+        CatalogFacets.Selection selection = currentSelection();
+        if (query.isEmpty() && selection.selectsAll()) {
             refreshBookTable();
-        } else {
-            List<Book> results = BookManager.searchByTitleOrAuthor(query);
-            updateBookTable(results);
         }
+        runningSearch = searchExecutor.submit(() -> {
+            LibraryService service = LibraryService.get();
+            CatalogFacets.Counts counts = service.getFacetCounts(selection);
+            SwingUtilities.invokeLater(() -> {
+                if (generation == searchGeneration) {
+                    updateFacets(counts);
+                }
+            });
+            if ((query.isEmpty() && selection.selectsAll()) || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            List<Book> matches = service.search(query, selection, FIRST_PAGE_SIZE,
+                    firstPage -> publishSearchResults(generation, firstPage));
+            if (!Thread.currentThread().isInterrupted()) {
+                publishSearchResults(generation, matches);
+            }
+        });
+    }
+
+    private void publishSearchResults(int generation, List<Book> results) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation == searchGeneration) { // a newer query has started since
+                updateBookTable(results);
+            }
+        });
     }
 
     private void updateBookTable(List<Book> books) {
-        booksModel.setRowCount(0);
-        for (Book book : books) {
-            booksModel.addRow(new Object[]{
-                    book.getId(),
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.isAvailable() ? "Yes" : "No"
-            });
-        }
+        booksModel.showResults(books);
     }
 
     private void refreshBookTable() {
-        updateBookTable(BookManager.getAllBooks());
+        booksModel.showCatalog();
     }
 
     private void refreshMyBooksTable() {
-        myBooksModel.setRowCount(0);
-        List<BorrowRecord> records = BookManager.getUserBorrowedBooks(user.getUsername());
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-        for (BorrowRecord record : records) {
-            Book book = BookManager.getBookById(record.getBookId());
-            if (book != null) {
+        UIUtils.inBackground(() -> LibraryService.get().getBorrowRecordViews(user.getUsername(), List.of("APPROVED", "PENDING")), views -> {
+            myBooksModel.setRowCount(0);
+            for (BorrowRecordView view : views) {
                 myBooksModel.addRow(new Object[]{
-                        record.getId(),
-                        book.getId(),
-                        book.getTitle(),
-                        record.getStatus(),
-                        record.getRequestDate().format(formatter),
-                        record.getDueDate() != null ? record.getDueDate().format(formatter) : ""
+                        view.getId(),
+                        view.getBookId(),
+                        view.getTitle(),
+                        view.getStatus(),
+                        view.getRequestDate().format(formatter),
+                        view.getDueDate() != null ? view.getDueDate().format(formatter) : ""
                 });
             }
-        }
+        });
     }
 
     private void borrowSelectedBook() {
         int row = bookTable.getSelectedRow();
         if (row >= 0) {
-            String bookId = bookTable.getValueAt(row, 0).toString();
-            String status = bookTable.getValueAt(row, 3).toString();
+            Book book = booksModel.getBookAt(row);
+            if (book == null) {
+                JOptionPane.showMessageDialog(this, "This book is still loading; try again in a moment.");
+                return;
+            }
 
-            if ("No".equalsIgnoreCase(status)) {
+            if (!book.isAvailable()) {
                 JOptionPane.showMessageDialog(this, "This book is not available for borrowing.");
                 return;
             }
 
-            String borrowId = BookManager.requestBorrow(bookId, user.getUsername());
-            if (borrowId != null) {
-                JOptionPane.showMessageDialog(this, "Borrow request submitted! Request ID: " + borrowId);
-                refreshBookTable();
-                refreshMyBooksTable();
-                refreshHistoryTable();
-            } else {
-                JOptionPane.showMessageDialog(this, "Failed to borrow book.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            UIUtils.inBackground(() -> LibraryService.get().requestBorrow(book.getId(), user.getUsername()), borrowId -> {
+                if (borrowId != null) {
+                    JOptionPane.showMessageDialog(this, "Borrow request submitted! Request ID: " + borrowId);
+                    refreshMyBooksTable();
+                    refreshHistoryTable();
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to borrow book.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         } else {
             JOptionPane.showMessageDialog(this, "Please select a book to borrow.");
         }
@@ -359,18 +546,19 @@ public class UserDashboard extends JFrame {
                     "Confirm Return Request", JOptionPane.YES_NO_OPTION);
 
             if (confirm == JOptionPane.YES_OPTION) {
-                if (BookManager.requestReturn(borrowId)) {
-                    JOptionPane.showMessageDialog(this,
-                            "Return request submitted!\n" +
-                                    "Please wait for admin approval.");
-                    refreshBookTable();
-                    refreshMyBooksTable();
-                    refreshHistoryTable();
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                            "Failed to submit return request.",
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
+                UIUtils.inBackground(() -> LibraryService.get().requestReturn(borrowId), requested -> {
+                    if (requested) {
+                        JOptionPane.showMessageDialog(this,
+                                "Return request submitted!\n" +
+                                        "Please wait for admin approval.");
+                        refreshMyBooksTable();
+                        refreshHistoryTable();
+                    } else {
+                        JOptionPane.showMessageDialog(this,
+                                "Failed to submit return request.",
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             }
         } else {
             JOptionPane.showMessageDialog(this, "Please select a book to return.");
@@ -382,8 +570,16 @@ public class UserDashboard extends JFrame {
                 "Are you sure you want to logout?",
                 "Logout Confirmation", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            dispose();
-            new LoginFrame().setVisible(true);
+            searchTimer.stop();
+            searchExecutor.shutdownNow();
+            booksModel.detach();
+            UIUtils.inBackground(() -> {
+                LibraryService.get().logout();
+                return null;
+            }, done -> {
+                dispose();
+                new LoginFrame().setVisible(true);
+            });
         }
     }
 
@@ -0,0 +1,174 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// In-memory directory of the USER rows in LibraryData.txt, keyed by case-folded username
+// (rows are applied in file order, so a later DELETED_USER tombstone removes a user).
+// The file is parsed once and re-read only when its modification stamp changes, so a login
+// or "username taken" check is a hash lookup instead of a full file scan. The users in
+// library.snapshot stand in for the part of the file it was written from, when only the
+// tail appended since then has to be parsed.
+public class UserDirectory {
+    private static final String DATA_FILE = "LibraryData.txt";
+    private static final byte[] USER = LineTokenizer.ascii("USER|");
+    private static final byte[] BOOK = LineTokenizer.ascii("BOOK|");
+    private static final byte[] BORROW = LineTokenizer.ascii("BORROW|");
+    private static final byte[] RETURN = LineTokenizer.ascii("RETURN");
+    private static final byte[] DELETED_USER = LineTokenizer.ascii(LibraryDataFile.DELETED_USER);
+    private static final byte[] DELETED_BOOK = LineTokenizer.ascii(LibraryDataFile.DELETED_BOOK);
+
+    private static final Map<String, User> users = new LinkedHashMap<>();
+    private static final Map<String, User> legacyUsers = new HashMap<>(); // old comma-separated rows
+    private static long loadedModified = -1;
+    private static long loadedLength = -1;
+    private static String loadedKey; // file key (inode) of the file as loaded: compaction replaces the file
+
+    // The directory together with the stamp of the file it reflects, for library.snapshot
+    public static class State {
+        final List<User> users;
+        final List<User> legacyUsers;
+        final long dataFileLength;
+        final String dataFileKey;
+
+        State(List<User> users, List<User> legacyUsers, long dataFileLength, String dataFileKey) {
+            this.users = users;
+            this.legacyUsers = legacyUsers;
+            this.dataFileLength = dataFileLength;
+            this.dataFileKey = dataFileKey;
+        }
+    }
+
+    // ✅ Read the file now (at startup, off the event thread) rather than at the first login
+    public static synchronized void preload() {
+        refreshIfChanged();
+    }
+
+    // ✅ Find a user by username (case-insensitive), or null
+    public static synchronized User find(String username) {
+        refreshIfChanged();
+        String key = fold(username);
+        User user = users.get(key);
+        return user != null ? user : legacyUsers.get(key);
+    }
+
+    public static synchronized boolean exists(String username) {
+        return find(username) != null;
+    }
+
+    // ✅ All USER rows, in file order
+    public static synchronized List<User> all() {
+        refreshIfChanged();
+        return new ArrayList<>(users.values());
+    }
+
+    public static synchronized State state() {
+        refreshIfChanged();
+        return new State(new ArrayList<>(users.values()), new ArrayList<>(legacyUsers.values()), loadedLength, loadedKey);
+    }
+
+    // ✅ A USER row has been queued for writing: show it right away
+    public static synchronized void added(User user) {
+        refreshIfChanged();
+        users.putIfAbsent(fold(user.getUsername()), user);
+    }
+
+    // ✅ A USER row has been queued for removal
+    public static synchronized void removed(String username) {
+        refreshIfChanged();
+        users.remove(fold(username));
+    }
+
+    // ✅ LibraryDataFile applied our own queued edits. If the file was exactly as we last
+    // loaded it, the directory already reflects the change and doesn't need a reload.
+    public static synchronized void fileWritten(long modifiedBefore, long lengthBefore) {
+        if (loadedModified == modifiedBefore && loadedLength == lengthBefore) {
+            markCurrent();
+        }
+    }
+
+    private static void refreshIfChanged() {
+        File file = new File(DATA_FILE);
+        if (file.lastModified() == loadedModified && file.length() == loadedLength) {
+            return;
+        }
+        load(file);
+    }
+
+    private static void load(File file) {
+        users.clear();
+        legacyUsers.clear();
+        markCurrent();
+        long covered = loadSnapshot();
+
+        // Only USER rows and tombstones become Strings; book and event lines are skipped by prefix
+        try (FileInputStream in = new FileInputStream(file); LineTokenizer lines = new LineTokenizer(in)) {
+            in.getChannel().position(covered);
+            while (lines.next()) {
+                if (lines.isBlank()) continue;
+
+                if (lines.startsWith(USER)) {
+                    if (lines.split('|') >= 7) {
+                        User user = new User(lines.trimmedField(1), lines.trimmedField(2), lines.trimmedField(3),
+                                lines.trimmedField(4), lines.trimmedField(5), lines.trimmedField(6));
+                        users.putIfAbsent(fold(user.getUsername()), user);
+                    }
+                } else if (lines.startsWith(DELETED_USER)) {
+                    users.remove(fold(lines.rest(DELETED_USER.length)));
+                } else if (!lines.startsWith(BOOK) && !lines.startsWith(BORROW)
+                        && !lines.startsWith(RETURN) && !lines.startsWith(DELETED_BOOK)) {
+                    if (lines.split(',') >= 6) {
+                        User user = new User(lines.trimmedField(0), lines.trimmedField(1), lines.trimmedField(2),
+                                lines.trimmedField(3), lines.trimmedField(4), lines.trimmedField(5));
+                        legacyUsers.putIfAbsent(fold(user.getUsername()), user);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // ✅ Start from the users in library.snapshot if it was written from this same file, which
+    // has only been appended to since; returns how much of the file that already covers
+    private static long loadSnapshot() {
+        LibrarySnapshot snapshot = LibrarySnapshot.open();
+        if (snapshot == null || loadedKey == null || !loadedKey.equals(snapshot.dataFileKey())
+                || loadedLength < snapshot.dataFileLength()) {
+            return 0;
+        }
+        List<User> regular = new ArrayList<>();
+        List<User> legacy = new ArrayList<>();
+        try {
+            snapshot.readUsers(regular, legacy);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        for (User user : regular) {
+            users.putIfAbsent(fold(user.getUsername()), user);
+        }
+        for (User user : legacy) {
+            legacyUsers.putIfAbsent(fold(user.getUsername()), user);
+        }
+        return snapshot.dataFileLength();
+    }
+
+    // Remember the stamp of the file as we last saw (or wrote) it
+    private static void markCurrent() {
+        File file = new File(DATA_FILE);
+        loadedModified = file.lastModified();
+        loadedLength = file.length();
+        loadedKey = null;
+        try {
+            Object key = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            loadedKey = key != null ? key.toString() : null;
+        } catch (IOException e) {
+            // no file yet
+        }
+    }
+
+    private static String fold(String username) {
+        return username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+    }
+}